@@ -0,0 +1,198 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures <code>copyGrammarOutput()</code> for a grammar that generated the
+ * usual set of parser files. With customized sources, the project's source
+ * root contains hand-crafted versions of some of the support classes which
+ * must be skipped.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+public class CopyGrammarOutputBenchmark
+{
+  private static final String PACKAGE = "org.codehaus.mojo.javacc.bench";
+
+  private static final String [] GENERATED_FILES = { "BenchParser.java",
+                                                     "BenchParserConstants.java",
+                                                     "BenchParserTokenManager.java",
+                                                     "ParseException.java",
+                                                     "SimpleCharStream.java",
+                                                     "Token.java",
+                                                     "TokenMgrError.java" };
+
+  @Param ({ "false", "true" })
+  public boolean customized;
+
+  /**
+   * Whether unchanged files are left untouched, see the mojo parameter of the
+   * same name.
+   */
+  @Param ({ "false", "true" })
+  public boolean skipUnchangedOutput;
+
+  private File baseDirectory;
+
+  private File tempDirectory;
+
+  private File outputDirectory;
+
+  private BenchMojo mojo;
+
+  @Setup (Level.Trial)
+  public void setUp () throws Exception
+  {
+    this.baseDirectory = Files.createTempDirectory ("copy-bench").toFile ();
+    this.tempDirectory = new File (this.baseDirectory, "target/javacc-temp");
+    this.outputDirectory = new File (this.baseDirectory, "target/generated-sources/javacc");
+    final File sourceRoot = new File (this.baseDirectory, "src/main/java");
+    final String packagePath = PACKAGE.replace ('.', '/');
+
+    final StringBuilder content = new StringBuilder ();
+    for (int i = 0; i < 2000; i++)
+      content.append ("  // generated line ").append (i).append ('\n');
+    for (final String name : GENERATED_FILES)
+      _write (new File (this.tempDirectory, name), "package " + PACKAGE + ";\n" + content);
+
+    // unrelated hand-crafted sources which populate the source root index
+    for (int i = 0; i < 500; i++)
+      _write (new File (sourceRoot, "org/example/p" + (i % 20) + "/Source" + i + ".java"), "class Source {}");
+    if (this.customized)
+    {
+      _write (new File (sourceRoot, packagePath + "/Token.java"), "class Token {}");
+      _write (new File (sourceRoot, packagePath + "/SimpleCharStream.java"), "class SimpleCharStream {}");
+    }
+
+    final MavenProject project = new MavenProject ();
+    project.setFile (new File (this.baseDirectory, "pom.xml"));
+    final Build build = new Build ();
+    build.setDirectory (new File (this.baseDirectory, "target").getAbsolutePath ());
+    project.setBuild (build);
+    project.addCompileSourceRoot (sourceRoot.getAbsolutePath ());
+    project.addCompileSourceRoot (this.outputDirectory.getAbsolutePath ());
+
+    this.mojo = new BenchMojo ();
+    _setField ("project", project);
+    _setField ("skipUnchangedOutput", Boolean.valueOf (this.skipUnchangedOutput));
+    final Method init = AbstractJavaCCMojo.class.getDeclaredMethod ("_determineNonGeneratedSourceRoots");
+    init.setAccessible (true);
+    init.invoke (this.mojo);
+  }
+
+  private void _setField (final String name, final Object value) throws Exception
+  {
+    final Field field = AbstractJavaCCMojo.class.getDeclaredField (name);
+    field.setAccessible (true);
+    field.set (this.mojo, value);
+  }
+
+  private static void _write (final File file, final String content) throws IOException
+  {
+    file.getParentFile ().mkdirs ();
+    FileUtils.fileWrite (file, StandardCharsets.UTF_8.name (), content);
+  }
+
+  @TearDown (Level.Trial)
+  public void tearDown () throws IOException
+  {
+    FileUtils.deleteDirectory (this.baseDirectory);
+  }
+
+  @Benchmark
+  public void copyGrammarOutput () throws Exception
+  {
+    // the temporary directory is not registered with the mojo, so the files
+    // are copied rather than moved and remain available for the next call
+    this.mojo.copyGrammarOutput (this.outputDirectory, PACKAGE, this.tempDirectory, null);
+  }
+
+  /**
+   * A mojo which only provides access to the copying of generated files.
+   */
+  private static final class BenchMojo extends AbstractJavaCCMojo
+  {
+    @Override
+    protected File getSourceDirectory ()
+    {
+      return null;
+    }
+
+    @Override
+    protected String [] getIncludes ()
+    {
+      return null;
+    }
+
+    @Override
+    protected String [] getExcludes ()
+    {
+      return null;
+    }
+
+    @Override
+    protected File getOutputDirectory ()
+    {
+      return null;
+    }
+
+    @Override
+    protected int getStaleMillis ()
+    {
+      return 0;
+    }
+
+    @Override
+    protected File [] getCompileSourceRoots ()
+    {
+      return null;
+    }
+
+    @Override
+    protected void processGrammar (final GrammarInfo grammarInfo)
+    {
+      // not used
+    }
+  }
+}
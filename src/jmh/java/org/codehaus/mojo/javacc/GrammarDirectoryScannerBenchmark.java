@@ -0,0 +1,154 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures <code>GrammarDirectoryScanner.scan()</code> over a synthetic source
+ * tree whose grammars are all up to date, which is the common case of an
+ * incremental build. The tree spreads the grammars over several packages and
+ * mixes in files that are not matched by the includes.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MILLISECONDS)
+public class GrammarDirectoryScannerBenchmark
+{
+  private static final String VERSION = "bench";
+
+  @Param ({ "10", "1000", "10000" })
+  public int files;
+
+  /**
+   * The stale detection to use: "timestamp" compares the timestamps of the
+   * target files, "index" and "hash" use the grammar index with or without
+   * content digests.
+   */
+  @Param ({ "timestamp", "index", "hash" })
+  public String staleDetection;
+
+  private File baseDirectory;
+
+  private File sourceDirectory;
+
+  private File outputDirectory;
+
+  private GrammarIndex grammarIndex;
+
+  @Setup (Level.Trial)
+  public void setUp () throws IOException
+  {
+    this.baseDirectory = Files.createTempDirectory ("scanner-bench").toFile ();
+    this.sourceDirectory = new File (this.baseDirectory, "src");
+    this.outputDirectory = new File (this.baseDirectory, "out");
+    final long past = System.currentTimeMillis () - 60000;
+    for (int i = 0; i < this.files; i++)
+    {
+      final String pkg = "pkg" + (i % 50);
+      final String name = "Parser" + i;
+      if (i % 10 == 9)
+      {
+        // noise that is excluded by the includes
+        _write (new File (this.sourceDirectory, pkg + "/Readme" + i + ".txt"), "noise");
+        continue;
+      }
+      final File grammarFile = new File (this.sourceDirectory, pkg + "/" + name + ".jj");
+      _write (grammarFile,
+              "PARSER_BEGIN(" + name + ")\npackage " + pkg + ";\npublic class " + name + " {}\nPARSER_END(" + name + ")\n");
+      grammarFile.setLastModified (past);
+      _write (new File (this.outputDirectory, pkg + "/" + name + ".java"), "// generated");
+    }
+
+    if (!"timestamp".equals (this.staleDetection))
+    {
+      // populate the index like a previous build would have done, every
+      // grammar is stale for an empty index
+      final File indexFile = new File (this.baseDirectory, "state/bench.idx");
+      final GrammarIndex index = new GrammarIndex (indexFile, this.baseDirectory);
+      final GrammarDirectoryScanner scanner = _newScanner (index, true);
+      scanner.scan ();
+      for (final GrammarInfo grammarInfo : scanner.getIncludedGrammars ())
+      {
+        final File parserFile = new File (this.outputDirectory, grammarInfo.getParserFile ());
+        index.put (grammarInfo.getRelativeGrammarFile (),
+                   scanner.getContentDigest (grammarInfo),
+                   scanner.getOptionsDigest (grammarInfo),
+                   VERSION,
+                   Collections.singletonList (parserFile),
+                   System.currentTimeMillis ());
+      }
+      index.save ();
+      this.grammarIndex = GrammarIndex.load (indexFile, this.baseDirectory);
+    }
+  }
+
+  private static void _write (final File file, final String content) throws IOException
+  {
+    file.getParentFile ().mkdirs ();
+    FileUtils.fileWrite (file, StandardCharsets.UTF_8.name (), content);
+  }
+
+  @TearDown (Level.Trial)
+  public void tearDown () throws IOException
+  {
+    FileUtils.deleteDirectory (this.baseDirectory);
+  }
+
+  private GrammarDirectoryScanner _newScanner (final GrammarIndex index, final boolean checkContents)
+  {
+    final GrammarDirectoryScanner scanner = new GrammarDirectoryScanner ();
+    scanner.setSourceDirectory (this.sourceDirectory);
+    scanner.setIncludes (new String [] { "**/*.jj" });
+    scanner.setOutputDirectory (this.outputDirectory);
+    if (index != null)
+    {
+      scanner.setGrammarIndex (index, VERSION);
+      scanner.setCheckContents (checkContents);
+    }
+    return scanner;
+  }
+
+  @Benchmark
+  public GrammarInfo [] scan () throws IOException
+  {
+    final GrammarDirectoryScanner scanner = _newScanner (this.grammarIndex, "hash".equals (this.staleDetection));
+    scanner.scan ();
+    return scanner.getIncludedGrammars ();
+  }
+}
@@ -0,0 +1,91 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the construction of <code>GrammarInfo</code>, i.e. the extraction
+ * of the package and parser name from the grammar header. The large grammar
+ * places the declarations behind a long comment and ends with a big body of
+ * productions which must not be read.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+public class GrammarInfoBenchmark
+{
+  @Param ({ "small", "large" })
+  public String grammar;
+
+  private File sourceDirectory;
+
+  @Setup (Level.Trial)
+  public void setUp () throws IOException
+  {
+    this.sourceDirectory = Files.createTempDirectory ("grammar-info-bench").toFile ();
+    final StringBuilder content = new StringBuilder ();
+    if ("large".equals (this.grammar))
+    {
+      content.append ("/*\n");
+      for (int i = 0; i < 2000; i++)
+        content.append (" * License and documentation line ").append (i).append (" PARSER_BEGIN(Fake)\n");
+      content.append (" */\n");
+    }
+    content.append ("options { STATIC = false; }\n");
+    content.append ("PARSER_BEGIN(BenchParser)\n");
+    content.append ("package org.codehaus.mojo.javacc.bench;\n");
+    content.append ("public class BenchParser {}\n");
+    content.append ("PARSER_END(BenchParser)\n");
+    final int productions = "large".equals (this.grammar) ? 20000 : 10;
+    for (int i = 0; i < productions; i++)
+      content.append ("void rule").append (i).append ("() : {} { \"token").append (i).append ("\" }\n");
+    FileUtils.fileWrite (new File (this.sourceDirectory, "Bench.jj"), StandardCharsets.UTF_8.name (), content.toString ());
+  }
+
+  @TearDown (Level.Trial)
+  public void tearDown () throws IOException
+  {
+    FileUtils.deleteDirectory (this.sourceDirectory);
+  }
+
+  @Benchmark
+  public GrammarInfo newGrammarInfo () throws IOException
+  {
+    return new GrammarInfo (this.sourceDirectory, "Bench.jj");
+  }
+}
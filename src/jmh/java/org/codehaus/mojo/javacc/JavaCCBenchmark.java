@@ -0,0 +1,80 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures a complete invocation of JavaCC on the grammars of the integration
+ * tests. The benchmarks must be run from the project base directory.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MILLISECONDS)
+public class JavaCCBenchmark
+{
+  @Param ({ "src/it/javacc-basic/src/main/javacc/BasicParser.jj",
+            "src/it/javacc-custom-parser-files/src/main/javacc/org/codehaus/javacc/simple/BasicParser.jj" })
+  public String grammar;
+
+  private File outputDirectory;
+
+  @Setup (Level.Trial)
+  public void setUp () throws IOException
+  {
+    if (!new File (this.grammar).isFile ())
+      throw new IllegalStateException ("grammar not found, run the benchmarks from the project base directory: " +
+                                       this.grammar);
+    this.outputDirectory = Files.createTempDirectory ("javacc-bench").toFile ();
+  }
+
+  @TearDown (Level.Trial)
+  public void tearDown () throws IOException
+  {
+    FileUtils.deleteDirectory (this.outputDirectory);
+  }
+
+  @Benchmark
+  public void run () throws MojoExecutionException, MojoFailureException
+  {
+    final JavaCC javacc = new JavaCC ();
+    javacc.setInputFile (new File (this.grammar).getAbsoluteFile ());
+    javacc.setOutputDirectory (this.outputDirectory);
+    javacc.run ();
+  }
+}
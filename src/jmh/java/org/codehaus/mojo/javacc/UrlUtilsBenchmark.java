@@ -0,0 +1,51 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures <code>UrlUtils.decodeUrl()</code> on typical class path URLs.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+public class UrlUtilsBenchmark
+{
+  @Param ({ "file:/home/user/.m2/repository/com/helger/pgcc/1.1.0/pgcc-1.1.0.jar",
+            "file:/C:/Documents%20and%20Settings/user/.m2/repository/com/helger/pgcc/1.1.0/pgcc-1.1.0.jar",
+            "file:/home/%C3%BCser/%E2%82%AC%20projects/pgcc-1.1.0.jar" })
+  public String url;
+
+  @Benchmark
+  public String decodeUrl ()
+  {
+    return UrlUtils.decodeUrl (this.url);
+  }
+}
@@ -19,21 +19,55 @@ package org.codehaus.mojo.javacc;
  * under the License.
  */
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
 
+import org.apache.maven.ProjectDependenciesResolver;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.artifact.resolver.ArtifactNotFoundException;
+import org.apache.maven.artifact.resolver.ArtifactResolutionException;
+import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.SelectorUtils;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 import com.helger.commons.collection.impl.CommonsLinkedHashSet;
 import com.helger.commons.string.StringHelper;
@@ -47,6 +81,13 @@ import com.helger.commons.string.StringHelper;
  */
 public abstract class AbstractJavaCCMojo extends AbstractMojo
 {
+  /**
+   * The patterns of the generated sources, i.e. of the files taken from the
+   * temporary directory of a grammar into the generation cache or attached
+   * archives.
+   */
+  private static final String GENERATED_SOURCES = "**/*.java";
+
   /**
    * The current Maven project.
    *
@@ -56,6 +97,36 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
    */
   private MavenProject project;
 
+  /**
+   * The build context, which tracks the changed files during incremental
+   * builds in an IDE.
+   *
+   * @component
+   */
+  private BuildContext buildContext;
+
+  /**
+   * The current build session.
+   *
+   * @parameter default-value="${session}"
+   * @readonly
+   */
+  private MavenSession session;
+
+  /**
+   * The resolver for the dependencies of the project. The mojos do not
+   * require the dependencies to be resolved up front, they are only resolved
+   * if the generated files are verified or restored from dependencies.
+   *
+   * @component
+   */
+  private ProjectDependenciesResolver dependenciesResolver;
+
+  /**
+   * The resolved compile dependencies of the project, lazily initialized.
+   */
+  private Set <Artifact> compileArtifacts;
+
   /**
    * The set of compile source roots whose contents are not generated as part of
    * the build, i.e. those that usually reside somewhere below "${basedir}/src"
@@ -64,6 +135,59 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
    */
   private Collection <File> nonGeneratedSourceRoots;
 
+  /**
+   * The Java source files within the non-generated compile source roots, keyed
+   * by their path relative to the source root (using forward slashes). If a
+   * path exists in several source roots, the file from the first source root
+   * is recorded. Guarded by {@link #copyLock} once grammars are processed.
+   */
+  private Map <String, File> nonGeneratedSourceFiles;
+
+  /**
+   * The Java source files within those non-generated compile source roots that
+   * reside on a case-insensitive file system, keyed by their lower case path
+   * relative to the source root. A hand-written <code>token.java</code>
+   * customizes the generated <code>Token.java</code> on such file systems.
+   * Guarded by {@link #copyLock} once grammars are processed.
+   */
+  private Map <String, File> nonGeneratedSourceFilesIgnoringCase;
+
+  /**
+   * The non-generated compile source roots residing on a case-insensitive file
+   * system.
+   */
+  private Set <File> caseInsensitiveSourceRoots;
+
+  /**
+   * The logger of the grammar currently processed by the calling thread, if
+   * the grammars are processed concurrently.
+   */
+  private final ThreadLocal <Log> grammarLog = new ThreadLocal <> ();
+
+  /**
+   * The files generated from the grammar currently processed by the calling
+   * thread, recorded as manifest in the grammar index.
+   */
+  private final ThreadLocal <Collection <File>> grammarOutputs = new ThreadLocal <> ();
+
+  /**
+   * The lock used to serialize the copying of output files. Several grammars
+   * may produce equally named support classes in the same package.
+   */
+  private final Object copyLock = new Object ();
+
+  /**
+   * The scratch area holding the temporary directories of the grammars,
+   * <code>null</code> until it is needed. Guarded by {@link #tempDirectories}.
+   */
+  private ScratchDirectory scratchDirectory;
+
+  /**
+   * The temporary directories created by this mojo which have not been deleted
+   * yet. Files within these directories may be moved rather than copied.
+   */
+  private final Set <File> tempDirectories = ConcurrentHashMap.newKeySet ();
+
   /**
    * The Java version for which to generate source code. Default value is
    * <code>1.5</code> for plugin version 2.6+ and <code>1.4</code> in older
@@ -314,6 +438,239 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
    */
   private String javaTemplateType;
 
+  /**
+   * The maximum number of grammar files to process concurrently. Defaults to
+   * the number of available processors. A value of <code>1</code> processes
+   * the grammar files one after another.
+   *
+   * @parameter property=parallelism
+   * @since 5.0.1
+   */
+  private Integer parallelism;
+
+  /**
+   * A flag whether to run JavaCC and JJTree in class loaders of their own. The
+   * parser generator keeps global state in static fields, so invocations in a
+   * shared class loader must be serialized throughout the JVM, even across
+   * modules of a parallel build. If set to <code>false</code>, the tools are
+   * run in the plugin class loader one at a time. Default value is
+   * <code>true</code>.
+   *
+   * @parameter property=isolateTools default-value="true"
+   * @since 5.0.1
+   */
+  private boolean isolateTools;
+
+  /**
+   * The strategy to detect grammar files that need to be processed. Supported
+   * values are:
+   * <ul>
+   * <li><code>timestamp</code>: a grammar is processed if it was modified after
+   * its generated parser file.</li>
+   * <li><code>hash</code>: a grammar is processed if its contents changed since
+   * it was last processed. This is independent of file modification times,
+   * which are unreliable after a checkout or a cache restore.</li>
+   * </ul>
+   * In both modes, a grammar is also processed if the effective tool options
+   * or the plugin version changed since it was last processed. This state is
+   * recorded in an index below
+   * <code>${project.build.directory}/javacc-state</code>. Default value is
+   * <code>timestamp</code>.
+   *
+   * @parameter property=staleDetection default-value="timestamp"
+   * @since 5.0.1
+   */
+  private String staleDetection;
+
+  /**
+   * A flag whether to leave generated files untouched if their contents did
+   * not change. Only files that actually differ are written (by an atomic move
+   * where supported), so unchanged generated sources keep their timestamps and
+   * do not trigger the recompilation of dependent classes. If set to
+   * <code>false</code>, all generated files are overwritten. Default value is
+   * <code>true</code>.
+   *
+   * @parameter property=skipUnchangedOutput default-value="true"
+   * @since 5.0.1
+   */
+  private boolean skipUnchangedOutput;
+
+  /**
+   * A flag whether to report the time spent in the phases of processing the
+   * grammar files, e.g. scanning, running the tools and copying the generated
+   * files. A summary is logged for each execution that processed grammars and
+   * the timings are written as JSON and CSV files with one record per grammar
+   * and phase below <code>${project.build.directory}/javacc-timings</code>.
+   * Default value is <code>true</code>.
+   *
+   * @parameter property=timingReport default-value="true"
+   * @since 5.0.1
+   */
+  private boolean timingReport;
+
+  /**
+   * A flag whether to compile the files generated from each grammar right
+   * after their generation. The files are compiled in memory against the
+   * compile class path and source roots of the project, no class files are
+   * written. This reports errors, e.g. in the actions of a grammar, per
+   * grammar and before the remaining grammars are processed. Errors are
+   * mapped back to the line in the grammar file where possible. The files are
+   * compiled for the <code>release</code> or <code>source</code> and
+   * <code>target</code> of the compiler plugin of the project. The compile
+   * dependencies of the project are only resolved if this flag is set.
+   * Requires the build to run on a JDK. Default value is <code>false</code>.
+   *
+   * @parameter property=verifyGeneratedSources default-value="false"
+   * @since 5.0.1
+   */
+  private boolean verifyGeneratedSources;
+
+  /**
+   * A flag whether to share the generated files through a cache in the local
+   * file system. The files generated for a grammar are stored under a key
+   * derived from the grammar contents, the effective tool options and the
+   * versions of the plugin and the tools. If another module or build already
+   * generated the files for the same key, they are restored from the cache
+   * instead of running the tools. Default value is <code>false</code>.
+   *
+   * @parameter property=generationCache default-value="false"
+   * @since 5.0.1
+   */
+  private boolean generationCache;
+
+  /**
+   * The directory of the cache for generated files.
+   *
+   * @parameter property=generationCacheDirectory
+   *            default-value="${user.home}/.m2/javacc-cache"
+   * @since 5.0.1
+   */
+  private File generationCacheDirectory;
+
+  /**
+   * The maximum size of the cache for generated files in megabytes. The least
+   * recently used entries are removed once the cache grows beyond this size.
+   * A non-positive value disables the limit. Default value is
+   * <code>1024</code>.
+   *
+   * @parameter property=generationCacheMaxSize default-value="1024"
+   * @since 5.0.1
+   */
+  private long generationCacheMaxSize;
+
+  /**
+   * The number of days after which unused entries are removed from the cache
+   * for generated files. A non-positive value disables the limit. Default
+   * value is <code>30</code>.
+   *
+   * @parameter property=generationCacheMaxAge default-value="30"
+   * @since 5.0.1
+   */
+  private int generationCacheMaxAge;
+
+  /**
+   * A flag whether to attach the files generated for each grammar to the
+   * project. The generated sources of a grammar are packaged as a ZIP archive
+   * which is attached with two classifiers: <code>javacc-</code> followed by
+   * the lower case qualified name of the parser, e.g.
+   * <code>javacc-org.example.myparser</code>, and the same followed by a
+   * digest over the grammar contents, the effective tool options and the
+   * versions of the plugin and the tools. Other modules can declare a
+   * dependency of type <code>zip</code> with either classifier and reuse the
+   * generated files by means of {@link #useAttachedGeneratedSources}. The
+   * digest classifier changes with every change to the grammar or its options,
+   * so consumers usually depend on the stable classifier, the digest is then
+   * checked against the one stored in the archive. The build fails if two
+   * grammars generate the same parser. Default value is <code>false</code>.
+   *
+   * @parameter property=attachGeneratedSources default-value="false"
+   * @since 5.0.1
+   */
+  private boolean attachGeneratedSources;
+
+  /**
+   * A flag whether to unpack the files generated for a grammar from a
+   * dependency instead of running the tools. A dependency matches if it was
+   * generated from the same grammar contents with the same options and
+   * versions, i.e. if its classifier equals the digest classifier that
+   * {@link #attachGeneratedSources} would use for the grammar, or if it has
+   * the stable classifier and the archive carries the same digest. Grammars
+   * without a matching dependency are generated as usual. Default value is
+   * <code>false</code>.
+   *
+   * @parameter property=useAttachedGeneratedSources default-value="false"
+   * @since 5.0.1
+   */
+  private boolean useAttachedGeneratedSources;
+
+  /**
+   * The helper to attach the archives with the generated files to the
+   * project.
+   *
+   * @component
+   */
+  private MavenProjectHelper projectHelper;
+
+  /**
+   * The version of this plugin, recorded in the grammar index.
+   *
+   * @parameter default-value="${plugin.version}"
+   * @readonly
+   */
+  private String pluginVersion;
+
+  /**
+   * The index with the recorded state of the grammar files, <code>null</code>
+   * if no project is available.
+   */
+  private GrammarIndex grammarIndex;
+
+  /**
+   * The content digests of the grammar files to process as calculated by the
+   * scanner, keyed by the path relative to the source directory.
+   */
+  private final Map <String, String> contentDigests = new HashMap <> ();
+
+  /**
+   * The digests of the effective tool options of the grammar files to
+   * process, keyed by the path relative to the source directory.
+   */
+  private final Map <String, String> optionsDigests = new HashMap <> ();
+
+  /**
+   * The grammar files found by the last scan that need not be processed,
+   * never <code>null</code>.
+   */
+  private GrammarInfo [] upToDateGrammars = new GrammarInfo [0];
+
+  /**
+   * The recorder for the time spent in the phases of processing the grammar
+   * files.
+   */
+  private final BuildTimings timings = new BuildTimings ();
+
+  /**
+   * The versions of the parser generators, part of the keys of the generation
+   * cache.
+   */
+  private static String generatorVersions;
+
+  /**
+   * The cache for generated files, <code>null</code> if disabled.
+   */
+  private GenerationCache cache;
+
+  /**
+   * Whether entries were added to the generation cache during this execution.
+   */
+  private final AtomicBoolean cacheModified = new AtomicBoolean ();
+
+  /**
+   * The verifier compiling the generated files, <code>null</code> if the
+   * generated files are not verified.
+   */
+  private GeneratedSourceVerifier verifier;
+
   /**
    * Gets the file encoding of the grammar files.
    *
@@ -358,6 +715,36 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
     return this.javaTemplateType;
   }
 
+  /**
+   * Gets whether the tools are run in isolated class loaders.
+   *
+   * @return <code>true</code> if the tools are run in isolated class loaders,
+   *         <code>false</code> if they are run one at a time in the plugin class
+   *         loader.
+   */
+  protected boolean isIsolateTools ()
+  {
+    return this.isolateTools;
+  }
+
+  /**
+   * Gets a string representation of the tool options that affect the files
+   * generated from the specified grammar, i.e. the command line arguments of
+   * all tools invoked for the grammar, excluding the input and output paths.
+   * Subclasses must append the arguments of their own tools to the value
+   * returned by this implementation.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @return The string representation of the tool options, never
+   *         <code>null</code>.
+   */
+  protected String getOptionsFingerprint (final GrammarInfo grammarInfo)
+  {
+    return newJavaCC ().toString ();
+  }
+
   /**
    * Gets the absolute path to the directory where the grammar files are
    * located.
@@ -435,6 +822,7 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
       if (grammarInfos.length <= 0)
       {
         getLog ().info ("Skipping - all parsers are up to date");
+        _saveGrammarIndex ();
       }
       else
       {
@@ -445,117 +833,1298 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
         if (StringHelper.hasNoText (outputEncoding))
           getLog ().warn ("File encoding for output has not been configured, defaulting to UTF-8!");
 
-        for (final GrammarInfo grammarInfo : grammarInfos)
+        _initVerifier ();
+        _initCache ();
+        try
+        {
+          _processGrammars (grammarInfos);
+        }
+        finally
         {
-          processGrammar (grammarInfo);
+          afterProcessGrammars ();
+          _releaseScratchDirectory ();
+          _saveGrammarIndex ();
+          _evictCache ();
         }
 
         getLog ().info ("Processed " + grammarInfos.length + " grammar" + (grammarInfos.length != 1 ? "s" : ""));
+        _logTimings ();
       }
 
+      _refreshCustomSources ();
+      _saveGrammarIndex ();
+      _attachGeneratedSources (grammarInfos, this.upToDateGrammars);
+
       // Unique, but ordered
       final Collection <File> compileSourceRoots = new CommonsLinkedHashSet <> (getCompileSourceRoots ());
       for (final File file : compileSourceRoots)
       {
         _addSourceRoot (file);
       }
+
+      _writeTimings ();
+
+      if (isWatch ())
+        _watch ();
     }
   }
 
   /**
-   * Passes the specified grammar file through the tool.
+   * Determines whether this mojo keeps running after the grammar files have
+   * been processed, regenerating the parsers whenever a grammar file changes.
    *
-   * @param grammarInfo
-   *        The grammar info describing the grammar file to process, must not be
-   *        <code>null</code>.
-   * @throws MojoExecutionException
-   *         If the invocation of the tool failed.
-   * @throws MojoFailureException
-   *         If the tool reported a non-zero exit code.
+   * @return <code>true</code> to watch the source directory,
+   *         <code>false</code> to return once the grammar files have been
+   *         processed.
    */
-  protected abstract void processGrammar (GrammarInfo grammarInfo) throws MojoExecutionException, MojoFailureException;
+  protected boolean isWatch ()
+  {
+    return false;
+  }
 
   /**
-   * Scans the configured source directory for grammar files which need
-   * processing.
+   * Gets the time to wait for further changes before regenerating the
+   * parsers when watching the source directory.
+   *
+   * @return The time in milliseconds.
+   */
+  protected long getWatchDebounce ()
+  {
+    return 200;
+  }
+
+  /**
+   * Watches the source directory and processes the grammar files that
+   * changed until the build is interrupted. Failures to process a grammar are
+   * logged rather than ending the watch.
    *
-   * @return An array of grammar infos describing the found grammar files or
-   *         <code>null</code> if the source directory does not exist.
    * @throws MojoExecutionException
-   *         If the source directory could not be scanned.
+   *         If the source directory could not be watched.
    */
-  private GrammarInfo [] _scanForGrammars () throws MojoExecutionException
+  private void _watch () throws MojoExecutionException
   {
-    if (!getSourceDirectory ().isDirectory ())
+    if (this.nonGeneratedSourceRoots == null)
+      _determineNonGeneratedSourceRoots ();
+    if (this.verifier == null)
+      _initVerifier ();
+    if (this.cache == null)
+      _initCache ();
+
+    final File sourceDirectory = getSourceDirectory ();
+    try (final GrammarWatcher watcher = new GrammarWatcher (sourceDirectory, getIncludes (), getExcludes (), getWatchDebounce ()))
     {
-      return null;
+      getLog ().info ("Watching for grammar changes in " + sourceDirectory + ", press Ctrl+C to stop");
+      while (true)
+      {
+        final List <GrammarInfo> grammarInfos = new ArrayList <> ();
+        for (final String grammarFile : watcher.awaitChanges ())
+        {
+          if (!new File (sourceDirectory, grammarFile).isFile ())
+          {
+            getLog ().debug ("Ignoring deleted grammar: " + grammarFile);
+            continue;
+          }
+          try
+          {
+            grammarInfos.add (new GrammarInfo (sourceDirectory, grammarFile));
+          }
+          catch (final IOException e)
+          {
+            getLog ().warn ("Failed to read grammar: " + grammarFile, e);
+          }
+        }
+        if (!grammarInfos.isEmpty ())
+          _processChangedGrammars (grammarInfos.toArray (new GrammarInfo [grammarInfos.size ()]));
+      }
     }
-
-    GrammarInfo [] grammarInfos;
-
-    getLog ().debug ("Scanning for grammars: " + getSourceDirectory ());
-    try
+    catch (final InterruptedException e)
     {
-      final GrammarDirectoryScanner scanner = new GrammarDirectoryScanner ();
-      scanner.setSourceDirectory (getSourceDirectory ());
-      scanner.setIncludes (getIncludes ());
-      scanner.setExcludes (getExcludes ());
-      scanner.setOutputDirectory (getOutputDirectory ());
-      scanner.setStaleMillis (getStaleMillis ());
-      scanner.scan ();
-      grammarInfos = scanner.getIncludedGrammars ();
+      Thread.currentThread ().interrupt ();
     }
-    catch (final Exception e)
+    catch (final IOException e)
     {
-      throw new MojoExecutionException ("Failed to scan for grammars: " + getSourceDirectory (), e);
+      throw new MojoExecutionException ("Failed to watch source directory: " + sourceDirectory, e);
     }
-    getLog ().debug ("Found grammars: " + Arrays.asList (grammarInfos));
-
-    return grammarInfos;
   }
 
   /**
-   * Gets a temporary directory within the project's build directory.
+   * Processes grammar files reported as changed while watching the source
+   * directory.
    *
-   * @return The path to the temporary directory, never <code>null</code>.
+   * @param grammarInfos
+   *        The grammar infos describing the changed grammar files, must not be
+   *        <code>null</code>.
    */
-  protected File getTempDirectory ()
+  private void _processChangedGrammars (final GrammarInfo [] grammarInfos)
   {
-    return new File (this.project.getBuild ().getDirectory (), "javacc-" + System.currentTimeMillis ());
+    final long start = System.nanoTime ();
+    try
+    {
+      // custom source files may have been added since the last run
+      _determineNonGeneratedSourceRoots ();
+    }
+    catch (final MojoExecutionException e)
+    {
+      getLog ().error (e.getMessage ());
+      return;
+    }
+    this.contentDigests.clear ();
+    this.optionsDigests.clear ();
+    if (this.grammarIndex != null)
+    {
+      for (final GrammarInfo grammarInfo : grammarInfos)
+        this.optionsDigests.put (grammarInfo.getRelativeGrammarFile (),
+                                 DigestUtils.digest (getOptionsFingerprint (grammarInfo)));
+    }
+    try
+    {
+      _processGrammars (grammarInfos);
+      getLog ().info ("Regenerated " +
+                      grammarInfos.length +
+                      " grammar" +
+                      (grammarInfos.length != 1 ? "s" : "") +
+                      " in " +
+                      TimeUnit.NANOSECONDS.toMillis (System.nanoTime () - start) +
+                      " ms");
+    }
+    catch (final MojoExecutionException | MojoFailureException e)
+    {
+      getLog ().error (e.getMessage ());
+    }
+    finally
+    {
+      afterProcessGrammars ();
+      _releaseScratchDirectory ();
+      _saveGrammarIndex ();
+      _evictCache ();
+    }
   }
 
   /**
-   * Deletes the specified temporary directory.
-   *
-   * @param tempDirectory
-   *        The directory to delete, must not be <code>null</code>.
+   * Logs a summary of the time spent processing the grammar files, listing
+   * the slowest grammars.
    */
-  protected void deleteTempDirectory (final File tempDirectory)
+  private void _logTimings ()
   {
-    try
+    if (this.timingReport)
     {
-      FileUtils.deleteDirectory (tempDirectory);
+      getLog ().info ("Timings:");
+      for (final String line : this.timings.formatSummary (10))
+        getLog ().info ("  " + line);
     }
-    catch (final IOException e)
+  }
+
+  /**
+   * Writes the recorded timings to the build directory. A failure to write
+   * the timings is not fatal.
+   */
+  private void _writeTimings ()
+  {
+    if (this.timingReport && this.project != null)
     {
-      getLog ().warn ("Failed to delete temporary directory: " + tempDirectory, e);
+      final File directory = new File (this.project.getBuild ().getDirectory (), "javacc-timings");
+      final String name = _getStateFileName ();
+      try
+      {
+        this.timings.writeJson (new File (directory, name + ".json"), getClass ().getSimpleName ());
+        this.timings.writeCsv (new File (directory, name + ".csv"), getClass ().getSimpleName ());
+      }
+      catch (final IOException e)
+      {
+        getLog ().warn ("Failed to write timings: " + directory, e);
+      }
     }
   }
 
   /**
-   * Scans the filesystem for output files and copies them to the specified
-   * compile source root. An output file is only copied to the compile source
-   * root if it doesn't already exist in another compile source root. This
-   * prevents duplicate class errors during compilation in case the user
-   * provided customized files in <code>src/main/java</code> or similar.
+   * Gets the recorder for the time spent in the phases of processing the
+   * grammar files. Tool facades report the duration of their invocation to
+   * this recorder.
    *
-   * @param packageName
-   *        The name of the destination package for the output files, must not
+   * @return The recorder, never <code>null</code>.
+   */
+  final BuildTimings getTimings ()
+  {
+    return this.timings;
+  }
+
+  /**
+   * Passes all specified grammar files through the tool. Depending on the
+   * configured parallelism, the grammar files are processed concurrently. In
+   * that case, the log output of each grammar is buffered and emitted in the
+   * order of the grammar files once the respective grammar has been
+   * processed. All grammar files are processed even if some of them fail.
+   *
+   * @param grammarInfos
+   *        The grammar infos describing the grammar files to process, must not
    *        be <code>null</code>.
-   * @param sourceRoot
-   *        The (absolute) path to the compile source root into which the output
-   *        files should eventually be copied, must not be <code>null</code>.
-   * @param tempDirectory
+   * @throws MojoExecutionException
+   *         If the invocation of the tool failed for a single grammar.
+   * @throws MojoFailureException
+   *         If the tool reported a non-zero exit code for a single grammar or
+   *         if several grammars failed.
+   */
+  private void _processGrammars (final GrammarInfo [] grammarInfos) throws MojoExecutionException, MojoFailureException
+  {
+    final List <GrammarTaskRunner.Task> tasks = new ArrayList <> (grammarInfos.length);
+    for (final GrammarInfo grammarInfo : grammarInfos)
+    {
+      tasks.add (log -> {
+        this.grammarLog.set (log);
+        try
+        {
+          _processGrammar (grammarInfo);
+        }
+        finally
+        {
+          this.grammarLog.remove ();
+        }
+      });
+    }
+
+    final List <Exception> results;
+    try
+    {
+      results = GrammarTaskRunner.run (tasks, GrammarTaskRunner.getEffectiveParallelism (this.parallelism), getLog ());
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new MojoExecutionException ("Interrupted while processing grammars", e);
+    }
+
+    final List <Exception> failures = new ArrayList <> ();
+    final List <File> failedGrammars = new ArrayList <> ();
+    for (int i = 0; i < grammarInfos.length; i++)
+    {
+      if (results.get (i) != null)
+      {
+        failures.add (results.get (i));
+        failedGrammars.add (grammarInfos[i].getGrammarFile ());
+      }
+    }
+
+    if (failures.size () == 1)
+    {
+      final Exception failure = failures.get (0);
+      if (failure instanceof MojoExecutionException)
+        throw (MojoExecutionException) failure;
+      if (failure instanceof MojoFailureException)
+        throw (MojoFailureException) failure;
+      throw new MojoExecutionException ("Failed to process grammar: " + failedGrammars.get (0), failure);
+    }
+    if (failures.size () > 1)
+    {
+      final MojoFailureException ex = new MojoFailureException (GrammarTaskRunner.getFailureMessage (grammarInfos.length,
+                                                                                                     failedGrammars,
+                                                                                                     failures),
+                                                                failures.get (0));
+      for (int i = 1; i < failures.size (); i++)
+        ex.addSuppressed (failures.get (i));
+      throw ex;
+    }
+  }
+
+  /**
+   * Processes a single grammar file and records its state along with the
+   * manifest of the generated files in the grammar index on success.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file to process, must not
+   *        be <code>null</code>.
+   * @throws MojoExecutionException
+   *         If the invocation of the tools failed.
+   * @throws MojoFailureException
+   *         If the tools reported a non-zero exit code.
+   */
+  private void _processGrammar (final GrammarInfo grammarInfo) throws MojoExecutionException, MojoFailureException
+  {
+    final long generationTime = System.currentTimeMillis ();
+    final long start = System.nanoTime ();
+    final Collection <File> outputFiles = new LinkedHashSet <> ();
+    this.grammarOutputs.set (outputFiles);
+    this.timings.setCurrentGrammar (grammarInfo.getRelativeGrammarFile ());
+    _removeMessages (grammarInfo.getGrammarFile ());
+    try
+    {
+      processGrammar (grammarInfo);
+    }
+    catch (final MojoExecutionException | MojoFailureException | RuntimeException e)
+    {
+      _addErrorMessage (grammarInfo.getGrammarFile (), e);
+      throw e;
+    }
+    finally
+    {
+      this.grammarOutputs.remove ();
+      this.timings.add (BuildTimings.TOTAL, start);
+      this.timings.setCurrentGrammar (null);
+    }
+
+    if (this.verifier != null)
+      _verifyGeneratedSources (grammarInfo, outputFiles);
+
+    if (this.grammarIndex != null)
+    {
+      final String grammarFile = grammarInfo.getRelativeGrammarFile ();
+      String contentDigest = this.contentDigests.get (grammarFile);
+      try
+      {
+        if (contentDigest == null)
+          contentDigest = DigestUtils.digest (grammarInfo.getGrammarFile ());
+      }
+      catch (final IOException e)
+      {
+        getLog ().debug ("Failed to digest grammar file, not recording its state: " + grammarInfo.getGrammarFile (), e);
+        return;
+      }
+      this.grammarIndex.put (grammarFile,
+                             contentDigest,
+                             this.optionsDigests.get (grammarFile),
+                             _getPluginVersion (),
+                             outputFiles,
+                             generationTime);
+      final Map <String, String> customSources = new TreeMap <> ();
+      _getChangedCustomSources (grammarInfo, Collections.<String, String> emptyMap (), customSources);
+      this.grammarIndex.putCustomSources (grammarFile, customSources);
+    }
+  }
+
+
+  /**
+   * A run of the tools generating the files for a grammar into a temporary
+   * directory.
+   */
+  @FunctionalInterface
+  protected interface GeneratorRun
+  {
+    /**
+     * Runs the tools.
+     *
+     * @throws MojoExecutionException
+     *         If the invocation of a tool failed.
+     * @throws MojoFailureException
+     *         If a tool reported a non-zero exit code.
+     */
+    void run () throws MojoExecutionException, MojoFailureException;
+  }
+
+  /**
+   * Generates the files for a grammar into a temporary directory. If the
+   * generation cache is enabled, the files are restored from the cache if
+   * possible, otherwise the tools are run and their output is added to the
+   * cache. Likewise, the files are unpacked from a matching archive attached
+   * to a dependency if requested, and packaged for attachment to the project
+   * if requested. The tools must write their output only into the temporary
+   * directory.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file to process, must not
+   *        be <code>null</code>.
+   * @param tempDirectory
+   *        The temporary directory receiving the generated files, must not be
+   *        <code>null</code>.
+   * @param generator
+   *        The run of the tools, must not be <code>null</code>.
+   * @throws MojoExecutionException
+   *         If the invocation of a tool failed.
+   * @throws MojoFailureException
+   *         If a tool reported a non-zero exit code.
+   */
+  protected void generate (final GrammarInfo grammarInfo,
+                           final File tempDirectory,
+                           final GeneratorRun generator) throws MojoExecutionException, MojoFailureException
+  {
+    final boolean keyed = this.cache != null || this.attachGeneratedSources || this.useAttachedGeneratedSources;
+    final String key = keyed ? _getCacheKey (grammarInfo) : null;
+    if (key == null)
+    {
+      generator.run ();
+      return;
+    }
+
+    if (!_restoreGeneratedSources (grammarInfo, key, tempDirectory))
+    {
+      generator.run ();
+
+      if (this.cache != null)
+      {
+        final long storeStart = System.nanoTime ();
+        try
+        {
+          // only the generated sources are taken from the temporary directory,
+          // the interim grammar files are not needed to restore an entry
+          this.cache.store (key, tempDirectory, GENERATED_SOURCES);
+          this.cacheModified.set (true);
+          this.timings.add ("cache-store", storeStart);
+        }
+        catch (final IOException e)
+        {
+          getLog ().warn ("Failed to store generated files in cache: " + this.generationCacheDirectory, e);
+        }
+      }
+    }
+
+    if (this.attachGeneratedSources)
+    {
+      final File archive = _getGeneratedSourcesArchive (grammarInfo, key);
+      if (archive != null)
+      {
+        final long start = System.nanoTime ();
+        try
+        {
+          GeneratedSourcesArtifact.pack (tempDirectory, GENERATED_SOURCES, archive, key);
+          this.timings.add ("artifact-pack", start);
+        }
+        catch (final IOException e)
+        {
+          throw new MojoExecutionException ("Failed to package generated files: " + archive, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Restores the files generated for a grammar from an attached artifact of a
+   * dependency or from the generation cache.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @param key
+   *        The key of the generated files, must not be <code>null</code>.
+   * @param tempDirectory
+   *        The temporary directory receiving the generated files, must not be
+   *        <code>null</code>.
+   * @return <code>true</code> if the files were restored, <code>false</code>
+   *         if the tools need to be run.
+   * @throws MojoExecutionException
+   *         If an incompletely restored temporary directory could not be
+   *         cleaned.
+   */
+  private boolean _restoreGeneratedSources (final GrammarInfo grammarInfo,
+                                            final String key,
+                                            final File tempDirectory) throws MojoExecutionException
+  {
+    boolean restored = false;
+    if (this.useAttachedGeneratedSources)
+    {
+      final File archive = _findAttachedArchive (grammarInfo, key);
+      if (archive != null)
+      {
+        final long start = System.nanoTime ();
+        try
+        {
+          GeneratedSourcesArtifact.unpack (archive, tempDirectory);
+          this.timings.add ("artifact-restore", start);
+          getLog ().debug ("Restored generated files from dependency: " + archive);
+          return true;
+        }
+        catch (final IOException | RuntimeException e)
+        {
+          getLog ().warn ("Failed to unpack generated files, regenerating: " + archive, e);
+          _cleanTempDirectory (tempDirectory);
+        }
+      }
+    }
+
+    if (this.cache != null)
+    {
+      final long start = System.nanoTime ();
+      try
+      {
+        restored = this.cache.restore (key, tempDirectory);
+      }
+      catch (final IOException e)
+      {
+        throw new MojoExecutionException ("Failed to clean temporary directory: " + tempDirectory, e);
+      }
+      if (restored)
+      {
+        this.timings.add ("cache-restore", start);
+        getLog ().debug ("Restored generated files from cache: " + grammarInfo.getGrammarFile ());
+      }
+    }
+    return restored;
+  }
+
+  private static void _cleanTempDirectory (final File tempDirectory) throws MojoExecutionException
+  {
+    try
+    {
+      FileUtils.deleteDirectory (tempDirectory);
+    }
+    catch (final IOException e)
+    {
+      throw new MojoExecutionException ("Failed to clean temporary directory: " + tempDirectory, e);
+    }
+  }
+
+  /**
+   * Searches the dependencies of the project for an archive with the files
+   * generated for a grammar, either by the classifier carrying the key or by
+   * the stable classifier along with the key stored in the archive.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @param key
+   *        The key of the generated files, must not be <code>null</code>.
+   * @return The archive or <code>null</code> if no dependency matches.
+   * @throws MojoExecutionException
+   *         If the dependencies of the project could not be resolved.
+   */
+  private File _findAttachedArchive (final GrammarInfo grammarInfo, final String key) throws MojoExecutionException
+  {
+    final String classifier = GeneratedSourcesArtifact.getClassifier (grammarInfo, key);
+    final String stableClassifier = GeneratedSourcesArtifact.getStableClassifier (grammarInfo);
+    for (final Artifact artifact : _getCompileArtifacts ())
+    {
+      if (artifact.getFile () == null || !artifact.getFile ().isFile ())
+        continue;
+      if (classifier.equals (artifact.getClassifier ()))
+        return artifact.getFile ();
+      if (stableClassifier.equals (artifact.getClassifier ()))
+      {
+        try
+        {
+          if (key.equals (GeneratedSourcesArtifact.getKey (artifact.getFile ())))
+            return artifact.getFile ();
+          getLog ().debug ("Generated files of dependency are outdated: " + artifact.getFile ());
+        }
+        catch (final IOException e)
+        {
+          getLog ().debug ("Failed to read generated files of dependency: " + artifact.getFile (), e);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Resolves the compile dependencies of the project on first use.
+   *
+   * @return The resolved artifacts, never <code>null</code>.
+   * @throws MojoExecutionException
+   *         If the dependencies could not be resolved.
+   */
+  private synchronized Set <Artifact> _getCompileArtifacts () throws MojoExecutionException
+  {
+    if (this.compileArtifacts == null)
+    {
+      if (this.project == null)
+        this.compileArtifacts = Collections.emptySet ();
+      else
+        if (this.dependenciesResolver == null || this.session == null)
+        {
+          // outside of a build session, e.g. in tests
+          this.compileArtifacts = this.project.getArtifacts () != null ? this.project.getArtifacts ()
+                                                                       : Collections.<Artifact> emptySet ();
+        }
+        else
+        {
+          try
+          {
+            this.compileArtifacts = this.dependenciesResolver.resolve (this.project,
+                                                                       Collections.singleton (Artifact.SCOPE_COMPILE),
+                                                                       this.session);
+          }
+          catch (final ArtifactResolutionException | ArtifactNotFoundException e)
+          {
+            throw new MojoExecutionException ("Failed to resolve the compile dependencies of the project", e);
+          }
+        }
+    }
+    return this.compileArtifacts;
+  }
+
+  /**
+   * Gets a setting of the compiler plugin of the project, either from its
+   * configuration or from the corresponding user property.
+   *
+   * @param name
+   *        The name of the setting, e.g. <code>release</code>, must not be
+   *        <code>null</code>.
+   * @return The value or <code>null</code> if not set.
+   */
+  private String _getCompilerSetting (final String name)
+  {
+    final Plugin plugin = this.project.getPlugin ("org.apache.maven.plugins:maven-compiler-plugin");
+    if (plugin != null && plugin.getConfiguration () instanceof Xpp3Dom)
+    {
+      final Xpp3Dom child = ((Xpp3Dom) plugin.getConfiguration ()).getChild (name);
+      if (child != null && StringHelper.hasText (child.getValue ()) && child.getValue ().indexOf ("${") < 0)
+        return child.getValue ();
+    }
+    return this.project.getProperties ().getProperty ("maven.compiler." + name);
+  }
+
+  /**
+   * Gets the archive to which the files generated for a grammar are packaged
+   * for attachment to the project.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @param key
+   *        The key of the generated files, may be <code>null</code>.
+   * @return The archive or <code>null</code> if no project is available or
+   *         the key is unknown.
+   */
+  private File _getGeneratedSourcesArchive (final GrammarInfo grammarInfo, final String key)
+  {
+    if (this.project == null || key == null)
+      return null;
+    final String classifier = GeneratedSourcesArtifact.getClassifier (grammarInfo, key);
+    return new File (new File (this.project.getBuild ().getDirectory (), "javacc-artifacts"),
+                     classifier + "." + GeneratedSourcesArtifact.TYPE);
+  }
+
+  /**
+   * Attaches the archives with the files generated for the specified grammars
+   * to the project. Grammars that were generated before attaching was enabled
+   * have no archive and are reported.
+   *
+   * @param grammarInfos
+   *        The grammar infos describing the processed grammar files, must not
+   *        be <code>null</code>.
+   * @param upToDateGrammarInfos
+   *        The grammar infos describing the up-to-date grammar files, must not
+   *        be <code>null</code>.
+   * @throws MojoExecutionException
+   *         If several grammars map to the same classifier.
+   */
+  private void _attachGeneratedSources (final GrammarInfo [] grammarInfos,
+                                        final GrammarInfo [] upToDateGrammarInfos) throws MojoExecutionException
+  {
+    if (!this.attachGeneratedSources || this.project == null || this.projectHelper == null)
+      return;
+
+    // archives attached by other executions, e.g. of another goal
+    final Map <String, File> attached = new HashMap <> ();
+    for (final Artifact artifact : this.project.getAttachedArtifacts ())
+      if (GeneratedSourcesArtifact.TYPE.equals (artifact.getType ()) && artifact.getClassifier () != null)
+        attached.put (artifact.getClassifier (), artifact.getFile ());
+
+    final Map <String, GrammarInfo> stableClassifiers = new HashMap <> ();
+    final List <GrammarInfo> allGrammarInfos = new ArrayList <> (Arrays.asList (grammarInfos));
+    allGrammarInfos.addAll (Arrays.asList (upToDateGrammarInfos));
+    for (final GrammarInfo grammarInfo : allGrammarInfos)
+    {
+      final String key = _getCacheKey (grammarInfo);
+      final File archive = _getGeneratedSourcesArchive (grammarInfo, key);
+      if (archive == null)
+        continue;
+      if (!archive.isFile ())
+      {
+        getLog ().warn ("No generated files to attach for grammar: " + grammarInfo.getGrammarFile ());
+        continue;
+      }
+      final String classifier = GeneratedSourcesArtifact.getClassifier (grammarInfo, key);
+      final String stableClassifier = GeneratedSourcesArtifact.getStableClassifier (grammarInfo);
+      final GrammarInfo other = stableClassifiers.put (stableClassifier, grammarInfo);
+      if (other != null)
+        throw new MojoExecutionException ("Grammars " +
+                                          other.getGrammarFile () +
+                                          " and " +
+                                          grammarInfo.getGrammarFile () +
+                                          " generate the same parser, cannot attach both as " +
+                                          stableClassifier);
+      final File attachedArchive = attached.get (stableClassifier);
+      if (attachedArchive != null && !attachedArchive.equals (archive))
+        throw new MojoExecutionException ("Generated files of another execution are already attached as " +
+                                          stableClassifier +
+                                          ": " +
+                                          attachedArchive);
+      getLog ().debug ("Attaching generated files of grammar " +
+                       grammarInfo.getGrammarFile () +
+                       " as " +
+                       classifier +
+                       " and " +
+                       stableClassifier);
+      this.projectHelper.attachArtifact (this.project, GeneratedSourcesArtifact.TYPE, classifier, archive);
+      this.projectHelper.attachArtifact (this.project, GeneratedSourcesArtifact.TYPE, stableClassifier, archive);
+    }
+  }
+
+  /**
+   * Calculates the key of the generated files for a grammar in the generation
+   * cache, which is also carried by the classifier of attached archives.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @return The key or <code>null</code> if the grammar file could not be
+   *         read.
+   */
+  private String _getCacheKey (final GrammarInfo grammarInfo)
+  {
+    // the digests calculated by the scanner or recorded in the grammar index
+    // are reused, only grammars processed without an index are digested here
+    String contentDigest = this.contentDigests.get (grammarInfo.getRelativeGrammarFile ());
+    try
+    {
+      if (contentDigest == null)
+        contentDigest = DigestUtils.digest (grammarInfo.getGrammarFile ());
+    }
+    catch (final IOException e)
+    {
+      getLog ().debug ("Failed to digest grammar file, not using cache: " + grammarInfo.getGrammarFile (), e);
+      return null;
+    }
+    String optionsDigest = this.optionsDigests.get (grammarInfo.getRelativeGrammarFile ());
+    if (optionsDigest == null)
+      optionsDigest = DigestUtils.digest (getOptionsFingerprint (grammarInfo));
+    // the grammar file name determines the names of intermediate files
+    return DigestUtils.key ("2",
+                            contentDigest,
+                            grammarInfo.getGrammarFile ().getName (),
+                            optionsDigest,
+                            _getPluginVersion (),
+                            _getGeneratorVersions ());
+  }
+
+  private static synchronized String _getGeneratorVersions ()
+  {
+    if (generatorVersions == null)
+      generatorVersions = _getVersion (com.helger.pgcc.parser.Main.class) + "|" + _getVersion (EDU.purdue.jtb.JTB.class);
+    return generatorVersions;
+  }
+
+  /**
+   * Determines the version of the library providing the specified class,
+   * falling back to the name and size of the JAR file.
+   *
+   * @param type
+   *        A class of the library, must not be <code>null</code>.
+   * @return The version, never <code>null</code>.
+   */
+  private static String _getVersion (final Class <?> type)
+  {
+    final Package pkg = type.getPackage ();
+    if (pkg != null && pkg.getImplementationVersion () != null)
+      return pkg.getImplementationVersion ();
+    final String resource = type.getName ().replace ('.', '/') + ".class";
+    final File root = UrlUtils.getResourceRoot (type.getClassLoader () != null ? type.getClassLoader ().getResource (resource)
+                                                                                : ClassLoader.getSystemResource (resource),
+                                                resource);
+    if (root == null)
+      return "";
+    return root.getName () + ":" + root.length ();
+  }
+
+  /**
+   * Creates the generation cache if enabled.
+   */
+  private void _initCache ()
+  {
+    if (this.generationCache && this.generationCacheDirectory != null)
+    {
+      this.cache = new GenerationCache (this.generationCacheDirectory,
+                                        this.generationCacheMaxSize * 1024 * 1024,
+                                        TimeUnit.DAYS.toMillis (this.generationCacheMaxAge));
+    }
+  }
+
+  /**
+   * Removes outdated entries from the generation cache if entries were added.
+   * A failure is not fatal.
+   */
+  private void _evictCache ()
+  {
+    if (this.cache != null && this.cacheModified.getAndSet (false))
+    {
+      final long start = System.nanoTime ();
+      try
+      {
+        final int removed = this.cache.evict ();
+        if (removed > 0)
+          getLog ().debug ("Removed " + removed + " entries from cache: " + this.generationCacheDirectory);
+        this.timings.add ("cache-evict", start);
+      }
+      catch (final IOException e)
+      {
+        getLog ().warn ("Failed to clean up cache: " + this.generationCacheDirectory, e);
+      }
+    }
+  }
+
+  /**
+   * Creates the verifier for the generated files if requested.
+   *
+   * @throws MojoExecutionException
+   *         If the compile dependencies of the project could not be resolved.
+   */
+  private void _initVerifier () throws MojoExecutionException
+  {
+    if (!this.verifyGeneratedSources || this.project == null)
+      return;
+
+    final List <File> classPath = new ArrayList <> ();
+    if (this.project.getBuild ().getOutputDirectory () != null)
+      classPath.add (new File (this.project.getBuild ().getOutputDirectory ()));
+    for (final Artifact artifact : _getCompileArtifacts ())
+      if (artifact.getArtifactHandler () == null || artifact.getArtifactHandler ().isAddedToClasspath ())
+        if (artifact.getFile () != null)
+          classPath.add (artifact.getFile ());
+    final Collection <File> sourcePath = new LinkedHashSet <> ();
+    for (final String root : this.project.getCompileSourceRoots ())
+      sourcePath.add (new File (root));
+    sourcePath.addAll (Arrays.asList (getCompileSourceRoots ()));
+    final Charset encoding = StringHelper.hasText (this.outputEncoding) ? Charset.forName (this.outputEncoding)
+                                                                        : StandardCharsets.UTF_8;
+    // the grammar files are read with the platform default like JavaCC does
+    final Charset grammarCharset = StringHelper.hasText (this.grammarEncoding) ? Charset.forName (this.grammarEncoding)
+                                                                               : Charset.defaultCharset ();
+
+    this.verifier = new GeneratedSourceVerifier (classPath,
+                                                 sourcePath,
+                                                 encoding,
+                                                 grammarCharset,
+                                                 _getCompilerSetting ("release"),
+                                                 _getCompilerSetting ("source"),
+                                                 _getCompilerSetting ("target"));
+    if (!this.verifier.isAvailable ())
+    {
+      getLog ().warn ("No Java compiler available, generated sources are not verified. Run the build with a JDK.");
+      this.verifier = null;
+    }
+  }
+
+  /**
+   * Compiles the files generated from the specified grammar.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the processed grammar file, must not be
+   *        <code>null</code>.
+   * @param outputFiles
+   *        The files generated from the grammar, must not be
+   *        <code>null</code>.
+   * @throws MojoExecutionException
+   *         If the generated files could not be read.
+   * @throws MojoFailureException
+   *         If the generated files do not compile.
+   */
+  private void _verifyGeneratedSources (final GrammarInfo grammarInfo,
+                                        final Collection <File> outputFiles) throws MojoExecutionException,
+                                                                             MojoFailureException
+  {
+    final long start = System.nanoTime ();
+    final List <GeneratedSourceVerifier.Problem> problems;
+    try
+    {
+      problems = this.verifier.verify (grammarInfo.getGrammarFile (), outputFiles);
+    }
+    catch (final IOException e)
+    {
+      throw new MojoExecutionException ("Failed to verify generated sources: " + grammarInfo.getGrammarFile (), e);
+    }
+    finally
+    {
+      this.timings.add (grammarInfo.getRelativeGrammarFile (), "verify", System.nanoTime () - start, 1);
+    }
+
+    if (!problems.isEmpty ())
+    {
+      for (final GeneratedSourceVerifier.Problem problem : problems)
+      {
+        getLog ().error (problem.toString ());
+        if (this.buildContext != null && problem.getFile () != null)
+        {
+          synchronized (this.buildContext)
+          {
+            this.buildContext.addMessage (problem.getFile (),
+                                          problem.getLine (),
+                                          0,
+                                          problem.getMessage (),
+                                          BuildContext.SEVERITY_ERROR,
+                                          null);
+          }
+        }
+      }
+      throw new MojoFailureException ("Generated sources of " +
+                                      grammarInfo.getGrammarFile () +
+                                      " do not compile: " +
+                                      problems.size () +
+                                      " error" +
+                                      (problems.size () != 1 ? "s" : ""));
+    }
+  }
+
+  /**
+   * Removes the messages previously reported for the specified grammar file
+   * from the build context.
+   *
+   * @param grammarFile
+   *        The grammar file, must not be <code>null</code>.
+   */
+  private void _removeMessages (final File grammarFile)
+  {
+    if (this.buildContext != null)
+    {
+      synchronized (this.buildContext)
+      {
+        this.buildContext.removeMessages (grammarFile);
+      }
+    }
+  }
+
+  /**
+   * Reports the failure to process the specified grammar file to the build
+   * context, which shows it as error marker in an IDE.
+   *
+   * @param grammarFile
+   *        The grammar file, must not be <code>null</code>.
+   * @param error
+   *        The failure, must not be <code>null</code>.
+   */
+  private void _addErrorMessage (final File grammarFile, final Exception error)
+  {
+    if (this.buildContext != null)
+    {
+      synchronized (this.buildContext)
+      {
+        this.buildContext.addMessage (grammarFile, 0, 0, error.getMessage (), BuildContext.SEVERITY_ERROR, error);
+      }
+    }
+  }
+
+  /**
+   * Gets the logger for this mojo. While grammar files are processed
+   * concurrently, this is the logger buffering the output of the grammar
+   * processed by the calling thread.
+   *
+   * @return The logger for this mojo, never <code>null</code>.
+   */
+  @Override
+  public Log getLog ()
+  {
+    final Log log = this.grammarLog.get ();
+    if (log != null)
+      return log;
+    return super.getLog ();
+  }
+
+  /**
+   * Releases resources acquired while processing a set of grammar files. This
+   * is invoked once all grammar files passed to
+   * {@link #processGrammar(GrammarInfo)} have been processed, regardless of
+   * failures.
+   */
+  protected void afterProcessGrammars ()
+  {
+    // nothing to release by default
+  }
+
+  /**
+   * Passes the specified grammar file through the tool.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file to process, must not be
+   *        <code>null</code>.
+   * @throws MojoExecutionException
+   *         If the invocation of the tool failed.
+   * @throws MojoFailureException
+   *         If the tool reported a non-zero exit code.
+   */
+  protected abstract void processGrammar (GrammarInfo grammarInfo) throws MojoExecutionException, MojoFailureException;
+
+  /**
+   * Scans the configured source directory for grammar files which need
+   * processing.
+   *
+   * @return An array of grammar infos describing the found grammar files or
+   *         <code>null</code> if the source directory does not exist.
+   * @throws MojoExecutionException
+   *         If the source directory could not be scanned.
+   */
+  private GrammarInfo [] _scanForGrammars () throws MojoExecutionException
+  {
+    if (!getSourceDirectory ().isDirectory ())
+    {
+      return null;
+    }
+
+    this.upToDateGrammars = new GrammarInfo [0];
+    // the source directory is scanned even without changes to its files,
+    // the options of the grammars may have changed in the POM
+    final boolean incremental = this.buildContext != null && this.buildContext.isIncremental ();
+
+    GrammarInfo [] grammarInfos;
+
+    final boolean checkContents = _isHashStaleDetection ();
+
+    getLog ().debug ("Scanning for grammars: " + getSourceDirectory ());
+    try
+    {
+      final GrammarDirectoryScanner scanner = new GrammarDirectoryScanner ();
+      scanner.setSourceDirectory (getSourceDirectory ());
+      scanner.setIncludes (getIncludes ());
+      scanner.setExcludes (getExcludes ());
+      scanner.setOutputDirectory (getOutputDirectory ());
+      scanner.setStaleMillis (getStaleMillis ());
+      if (this.project != null)
+      {
+        this.grammarIndex = GrammarIndex.load (_getGrammarIndexFile (), this.project.getBasedir ());
+        scanner.setGrammarIndex (this.grammarIndex, _getPluginVersion ());
+        scanner.setOptionsFingerprint (this::getOptionsFingerprint);
+        scanner.setCheckContents (checkContents);
+      }
+      final long start = System.nanoTime ();
+      scanner.scan ();
+      this.timings.add ("scan", start);
+      this.timings.add (BuildTimings.BUILD, "grammar-info", scanner.getGrammarInfoTime (), 1);
+      grammarInfos = scanner.getIncludedGrammars ();
+      this.upToDateGrammars = scanner.getUpToDateGrammars ();
+      if (incremental)
+        grammarInfos = _filterChangedGrammars (grammarInfos, scanner);
+      this.contentDigests.clear ();
+      this.optionsDigests.clear ();
+      if (this.grammarIndex != null)
+      {
+        for (final GrammarInfo grammarInfo : grammarInfos)
+        {
+          final String grammarFile = grammarInfo.getRelativeGrammarFile ();
+          final String contentDigest = scanner.getContentDigest (grammarInfo);
+          if (contentDigest != null)
+            this.contentDigests.put (grammarFile, contentDigest);
+          this.optionsDigests.put (grammarFile, scanner.getOptionsDigest (grammarInfo));
+        }
+        // the recorded state of up-to-date grammars is their current state
+        for (final GrammarInfo grammarInfo : this.upToDateGrammars)
+        {
+          final String grammarFile = grammarInfo.getRelativeGrammarFile ();
+          final GrammarIndex.Entry entry = this.grammarIndex.get (grammarFile);
+          if (entry != null && entry.getContentDigest ().length () > 0)
+            this.contentDigests.put (grammarFile, entry.getContentDigest ());
+          this.optionsDigests.put (grammarFile, scanner.getOptionsDigest (grammarInfo));
+        }
+      }
+      if (this.attachGeneratedSources)
+        grammarInfos = _addGrammarsWithoutArchive (grammarInfos);
+    }
+    catch (final Exception e)
+    {
+      throw new MojoExecutionException ("Failed to scan for grammars: " + getSourceDirectory (), e);
+    }
+    getLog ().debug ("Found grammars: " + Arrays.asList (grammarInfos));
+
+    return grammarInfos;
+  }
+
+  /**
+   * Adds the up-to-date grammars whose generated files have not been packaged
+   * for attachment, e.g. because attaching was enabled after they were
+   * generated, to the grammars to process.
+   *
+   * @param grammarInfos
+   *        The grammars to process, must not be <code>null</code>.
+   * @return The grammars to process including those without an archive, never
+   *         <code>null</code>.
+   */
+  private GrammarInfo [] _addGrammarsWithoutArchive (final GrammarInfo [] grammarInfos)
+  {
+    final List <GrammarInfo> stale = new ArrayList <> (Arrays.asList (grammarInfos));
+    final List <GrammarInfo> upToDate = new ArrayList <> ();
+    for (final GrammarInfo grammarInfo : this.upToDateGrammars)
+    {
+      final File archive = _getGeneratedSourcesArchive (grammarInfo, _getCacheKey (grammarInfo));
+      if (archive != null && !archive.isFile ())
+        stale.add (grammarInfo);
+      else
+        upToDate.add (grammarInfo);
+    }
+    this.upToDateGrammars = upToDate.toArray (new GrammarInfo [upToDate.size ()]);
+    return stale.toArray (new GrammarInfo [stale.size ()]);
+  }
+
+  /**
+   * Restricts the specified grammars to those that changed according to the
+   * build context. During an incremental build, the IDE reports the changed
+   * files, so grammars which merely look stale because of the timestamp of the
+   * grammar file, e.g. after it was touched, need not be processed. Grammars
+   * which are stale for other reasons, e.g. because their options or
+   * generated files changed, are processed regardless of the build context.
+   *
+   * @param grammarInfos
+   *        The stale grammars, must not be <code>null</code>.
+   * @param scanner
+   *        The scanner which found the stale grammars, must not be
+   *        <code>null</code>.
+   * @return The stale grammars that changed, never <code>null</code>.
+   */
+  private GrammarInfo [] _filterChangedGrammars (final GrammarInfo [] grammarInfos, final GrammarDirectoryScanner scanner)
+  {
+    final List <GrammarInfo> changed = new ArrayList <> (grammarInfos.length);
+    for (final GrammarInfo grammarInfo : grammarInfos)
+    {
+      if (!scanner.isStaleByTimestamp (grammarInfo) || this.buildContext.hasDelta (grammarInfo.getGrammarFile ()))
+        changed.add (grammarInfo);
+      else
+        getLog ().debug ("Skipping unchanged grammar: " + grammarInfo.getGrammarFile ());
+    }
+    return changed.toArray (new GrammarInfo [changed.size ()]);
+  }
+
+  /**
+   * Determines whether stale grammars are detected by their contents.
+   *
+   * @return <code>true</code> if the grammar index is used, <code>false</code>
+   *         for timestamp checking.
+   * @throws MojoExecutionException
+   *         If the configured strategy is not supported.
+   */
+  private boolean _isHashStaleDetection () throws MojoExecutionException
+  {
+    if (this.staleDetection == null || "timestamp".equals (this.staleDetection))
+      return false;
+    if (!"hash".equals (this.staleDetection))
+      throw new MojoExecutionException ("Unsupported stale detection: " + this.staleDetection);
+    if (this.project == null)
+    {
+      getLog ().warn ("No project available, falling back to timestamp based stale detection");
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Gets the file of the grammar index. Every combination of mojo, source
+   * directory and output directory has an index of its own.
+   *
+   * @return The absolute path to the index file, never <code>null</code>.
+   */
+  private File _getGrammarIndexFile ()
+  {
+    return new File (new File (this.project.getBuild ().getDirectory (), "javacc-state"), _getStateFileName () + ".idx");
+  }
+
+  /**
+   * Gets the base name of the files recording the state of this execution,
+   * unique for every combination of mojo, source directory and output
+   * directory.
+   *
+   * @return The file name without extension, never <code>null</code>.
+   */
+  private String _getStateFileName ()
+  {
+    final String key = _getProjectRelativePath (getSourceDirectory ()) + "|" + _getProjectRelativePath (getOutputDirectory ());
+    return getClass ().getSimpleName () + "-" + DigestUtils.digest (key).substring (0, 16);
+  }
+
+  private String _getProjectRelativePath (final File file)
+  {
+    final File basedir = this.project.getBasedir ();
+    if (file == null)
+      return "";
+    if (basedir == null)
+      return file.getAbsolutePath ();
+    final String path = basedir.getAbsoluteFile ().toURI ().relativize (file.getAbsoluteFile ().toURI ()).getPath ();
+    // the URI of an existing directory ends with a slash
+    return path.endsWith ("/") ? path.substring (0, path.length () - 1) : path;
+  }
+
+  private String _getPluginVersion ()
+  {
+    return this.pluginVersion != null ? this.pluginVersion : "";
+  }
+
+  /**
+   * Saves the grammar index. A failure to save the index is not fatal, it merely causes the grammars to
+   * be processed again by the next build.
+   */
+  private void _saveGrammarIndex ()
+  {
+    if (this.grammarIndex != null)
+    {
+      final long start = System.nanoTime ();
+      try
+      {
+        this.grammarIndex.save ();
+        this.timings.add ("index-save", start);
+      }
+      catch (final IOException e)
+      {
+        getLog ().warn ("Failed to save grammar index: " + _getGrammarIndexFile (), e);
+      }
+    }
+  }
+
+  /**
+   * Gets a new temporary directory within the scratch area of this execution
+   * below the project's build directory.
+   *
+   * @return The path to the temporary directory, never <code>null</code>.
+   */
+  protected File getTempDirectory ()
+  {
+    final ScratchDirectory scratch;
+    synchronized (this.tempDirectories)
+    {
+      if (this.scratchDirectory == null)
+      {
+        final File root = new File (new File (this.project.getBuild ().getDirectory (), "javacc-scratch"), _getStateFileName ());
+        this.scratchDirectory = new ScratchDirectory (root);
+      }
+      scratch = this.scratchDirectory;
+    }
+    final long start = System.nanoTime ();
+    final File tempDirectory = scratch.newDirectory ();
+    this.timings.add ("scratch", start);
+    this.tempDirectories.add (tempDirectory);
+    return tempDirectory;
+  }
+
+  /**
+   * Releases the specified temporary directory. The directory is handed out
+   * again to the next grammar and deleted along with the scratch area once all
+   * grammars have been processed.
+   *
+   * @param tempDirectory
+   *        The directory to release, must not be <code>null</code>.
+   */
+  protected void deleteTempDirectory (final File tempDirectory)
+  {
+    this.tempDirectories.remove (tempDirectory.getAbsoluteFile ());
+    final ScratchDirectory scratch;
+    synchronized (this.tempDirectories)
+    {
+      scratch = this.scratchDirectory;
+    }
+    if (scratch != null)
+      scratch.recycle (tempDirectory);
+  }
+
+  /**
+   * Deletes the scratch area holding the temporary directories in a
+   * background thread.
+   */
+  private void _releaseScratchDirectory ()
+  {
+    final long start = System.nanoTime ();
+    synchronized (this.tempDirectories)
+    {
+      if (this.scratchDirectory == null)
+        return;
+      this.scratchDirectory.release ();
+    }
+    this.timings.add ("cleanup", start);
+  }
+
+  /**
+   * Scans the filesystem for output files and copies them to the specified
+   * compile source root. An output file is only copied to the compile source
+   * root if it doesn't already exist in another compile source root. This
+   * prevents duplicate class errors during compilation in case the user
+   * provided customized files in <code>src/main/java</code> or similar.
+   *
+   * @param packageName
+   *        The name of the destination package for the output files, must not
+   *        be <code>null</code>.
+   * @param sourceRoot
+   *        The (absolute) path to the compile source root into which the output
+   *        files should eventually be copied, must not be <code>null</code>.
+   * @param tempDirectory
    *        The (absolute) path to the directory to scan for generated output
    *        files, must not be <code>null</code>.
    * @param updatePattern
@@ -571,11 +2140,30 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
                                     final File tempDirectory,
                                     final String updatePattern) throws MojoExecutionException
   {
+    synchronized (this.copyLock)
+    {
+      final long start = System.nanoTime ();
+      _copyGrammarOutput (sourceRoot, packageName, tempDirectory, updatePattern, null);
+      this.timings.add ("copy", start);
+    }
+  }
+
+  private void _copyGrammarOutput (final File sourceRoot,
+                                   final String packageName,
+                                   final File tempDirectory,
+                                   final String updatePattern,
+                                   final Collection <File> selectedFiles) throws MojoExecutionException
+  {
+    // files generated into a temporary directory are moved instead of copied
+    final boolean movable = _isTempDirectory (tempDirectory);
     try
     {
       final List <File> tempFiles = FileUtils.getFiles (tempDirectory, "*.java", null);
       for (final File tempFile : tempFiles)
       {
+        if (selectedFiles != null && !selectedFiles.contains (tempFile))
+          continue;
+
         String outputPath = "";
         if (packageName.length () > 0)
         {
@@ -601,10 +2189,28 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
 
         if (sourceFile == null || (alwaysUpdate && sourceFile.equals (outputFile)))
         {
-          getLog ().debug ("Copying generated file: " + outputPath);
           try
           {
-            FileUtils.copyFile (tempFile, outputFile);
+            if (this.skipUnchangedOutput && _hasSameContents (tempFile, outputFile))
+            {
+              getLog ().debug ("Skipping unchanged file: " + outputPath);
+            }
+            else
+            {
+              getLog ().debug ("Copying generated file: " + outputPath);
+              if (this.skipUnchangedOutput)
+                _replaceFile (tempFile, outputFile, movable);
+              else
+                FileUtils.copyFile (tempFile, outputFile);
+              // only files that were actually written need to be refreshed in the IDE
+              if (this.buildContext != null)
+                this.buildContext.refresh (outputFile);
+            }
+            if (isSourceRoot (sourceRoot))
+              _addSourceFile (sourceRoot, outputPath);
+            final Collection <File> outputFiles = this.grammarOutputs.get ();
+            if (outputFiles != null)
+              outputFiles.add (outputFile.getAbsoluteFile ());
           }
           catch (final IOException e)
           {
@@ -624,6 +2230,118 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
     }
   }
 
+  /**
+   * Copies the custom source files next to up-to-date grammar files that
+   * changed since they were last copied. Custom source files, e.g. a
+   * hand-written <code>Token.java</code>, are copied along with the generated
+   * files if the grammar does not reside in a compile source root. They are
+   * inputs of the grammar just like the grammar file itself, but changing them
+   * does not require to regenerate the parser. Their state as of the last copy
+   * is recorded in the grammar index, so only the changed files are copied.
+   *
+   * @throws MojoExecutionException
+   *         If the custom source files could not be copied.
+   */
+  private void _refreshCustomSources () throws MojoExecutionException
+  {
+    if (this.grammarIndex == null)
+      return;
+
+    final long start = System.nanoTime ();
+    final Map <GrammarInfo, List <File>> changed = new LinkedHashMap <> ();
+    final Map <GrammarInfo, Map <String, String>> states = new HashMap <> ();
+    for (final GrammarInfo grammarInfo : this.upToDateGrammars)
+    {
+      final GrammarIndex.Entry entry = this.grammarIndex.get (grammarInfo.getRelativeGrammarFile ());
+      if (entry == null)
+        continue;
+      final Map <String, String> customSources = new TreeMap <> ();
+      final List <File> files = _getChangedCustomSources (grammarInfo, entry.getCustomSources (), customSources);
+      if (!files.isEmpty ())
+      {
+        changed.put (grammarInfo, files);
+        states.put (grammarInfo, customSources);
+      }
+      else
+        if (!customSources.equals (entry.getCustomSources ()))
+        {
+          // custom source files were deleted
+          this.grammarIndex.putCustomSources (grammarInfo.getRelativeGrammarFile (), customSources);
+        }
+    }
+    if (changed.isEmpty ())
+      return;
+
+    if (this.nonGeneratedSourceRoots == null)
+      _determineNonGeneratedSourceRoots ();
+    for (final Map.Entry <GrammarInfo, List <File>> entry : changed.entrySet ())
+    {
+      final GrammarInfo grammarInfo = entry.getKey ();
+      if (!isSourceRoot (grammarInfo.getSourceDirectory ()))
+      {
+        getLog ().debug ("Updating custom sources of grammar: " + grammarInfo.getGrammarFile ());
+        synchronized (this.copyLock)
+        {
+          _copyGrammarOutput (getOutputDirectory (),
+                              grammarInfo.getParserPackage (),
+                              grammarInfo.getGrammarFile ().getParentFile (),
+                              "*",
+                              entry.getValue ());
+        }
+      }
+      this.grammarIndex.putCustomSources (grammarInfo.getRelativeGrammarFile (), states.get (grammarInfo));
+    }
+    this.timings.add ("custom-sources", start);
+  }
+
+  /**
+   * Gets the custom source files next to the specified grammar file whose
+   * state differs from the recorded state, i.e. which changed since they were
+   * last copied to the output directory.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @param recordedStates
+   *        The recorded state of each custom source file keyed by its file
+   *        name, must not be <code>null</code>.
+   * @param currentStates
+   *        The map receiving the current state of each custom source file, must
+   *        not be <code>null</code>.
+   * @return The changed custom source files, never <code>null</code>.
+   * @throws MojoExecutionException
+   *         If the stale detection strategy is not supported.
+   */
+  private List <File> _getChangedCustomSources (final GrammarInfo grammarInfo,
+                                                final Map <String, String> recordedStates,
+                                                final Map <String, String> currentStates) throws MojoExecutionException
+  {
+    final List <File> changed = new ArrayList <> ();
+    final File [] files = grammarInfo.getGrammarFile ().getParentFile ().listFiles ();
+    if (files == null)
+      return changed;
+    final boolean checkContents = _isHashStaleDetection ();
+    for (final File file : files)
+    {
+      if (!file.getName ().endsWith (".java") || !file.isFile ())
+        continue;
+      String state;
+      try
+      {
+        state = checkContents ? DigestUtils.digest (file) : file.length () + "@" + file.lastModified ();
+      }
+      catch (final IOException e)
+      {
+        getLog ().debug ("Failed to digest custom source file: " + file, e);
+        state = "";
+      }
+      currentStates.put (file.getName (), state);
+      if (state.length () == 0 || !state.equals (recordedStates.get (file.getName ())))
+        changed.add (file);
+    }
+    return changed;
+  }
+
   /**
    * Determines those compile source roots of the project that do not reside
    * below the project's build directories. These compile source roots are
@@ -637,6 +2355,10 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
   private void _determineNonGeneratedSourceRoots () throws MojoExecutionException
   {
     this.nonGeneratedSourceRoots = new LinkedHashSet <> ();
+    this.nonGeneratedSourceFiles = new HashMap <> ();
+    this.nonGeneratedSourceFilesIgnoringCase = new HashMap <> ();
+    this.caseInsensitiveSourceRoots = new HashSet <> ();
+    final long start = System.nanoTime ();
     try
     {
       final String targetPrefix = new File (this.project.getBuild ().getDirectory ()).getCanonicalPath () + File.separator;
@@ -653,6 +2375,7 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
         {
           this.nonGeneratedSourceRoots.add (sourceRoot);
           getLog ().debug ("Non-generated compile source root: " + sourceRoot);
+          _indexSourceFiles (sourceRoot);
         }
         else
         {
@@ -664,11 +2387,15 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
     {
       throw new MojoExecutionException ("Failed to determine non-generated source roots", e);
     }
+    this.timings.add ("source-roots", start);
   }
 
   /**
    * Determines whether the specified source file is already present in any of
-   * the compile source roots registered with the current Maven project.
+   * the compile source roots registered with the current Maven project. The
+   * lookup uses the index of the non-generated source roots and does not
+   * access the file system. Source roots on case-insensitive file systems are
+   * matched ignoring case, like the file system would.
    *
    * @param filename
    *        The source filename to check, relative to a source root, must not be
@@ -678,16 +2405,184 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
    */
   private File _findSourceFile (final String filename)
   {
-    final Collection <File> sourceRoots = this.nonGeneratedSourceRoots;
-    for (final File sourceRoot : sourceRoots)
+    final File file = this.nonGeneratedSourceFiles.get (filename);
+    if (file != null)
+      return file;
+    return this.nonGeneratedSourceFilesIgnoringCase.get (filename.toLowerCase (Locale.ROOT));
+  }
+
+  /**
+   * Records a Java source file within a non-generated source root.
+   *
+   * @param sourceRoot
+   *        The source root, must not be <code>null</code>.
+   * @param relativePath
+   *        The path of the source file relative to the source root using
+   *        forward slashes, must not be <code>null</code>.
+   */
+  private void _addSourceFile (final File sourceRoot, final String relativePath)
+  {
+    final File file = new File (sourceRoot, relativePath);
+    this.nonGeneratedSourceFiles.putIfAbsent (relativePath, file);
+    if (this.caseInsensitiveSourceRoots.contains (sourceRoot))
+      this.nonGeneratedSourceFilesIgnoringCase.putIfAbsent (relativePath.toLowerCase (Locale.ROOT), file);
+  }
+
+  /**
+   * Determines whether a directory resides on a case-insensitive file system,
+   * i.e. whether its path with inverted case denotes the same directory.
+   *
+   * @param directory
+   *        The existing directory, must not be <code>null</code>.
+   * @return <code>true</code> if the file system ignores case,
+   *         <code>false</code> otherwise.
+   */
+  private static boolean _isCaseInsensitive (final File directory)
+  {
+    final String path = directory.getAbsolutePath ();
+    final StringBuilder inverted = new StringBuilder (path.length ());
+    for (final char c : path.toCharArray ())
+      inverted.append (Character.isUpperCase (c) ? Character.toLowerCase (c) : Character.toUpperCase (c));
+    final File other = new File (inverted.toString ());
+    if (other.getPath ().equals (path) || !other.exists ())
+      return false;
+    try
+    {
+      return Files.isSameFile (directory.toPath (), other.toPath ());
+    }
+    catch (final IOException e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Records all Java source files within the specified source root, using a
+   * single walk of the directory tree.
+   *
+   * @param sourceRoot
+   *        The source root to index, must not be <code>null</code>.
+   * @throws IOException
+   *         If the source root could not be walked.
+   */
+  private void _indexSourceFiles (final File sourceRoot) throws IOException
+  {
+    if (!sourceRoot.isDirectory ())
+      return;
+    if (_isCaseInsensitive (sourceRoot))
+      this.caseInsensitiveSourceRoots.add (sourceRoot);
+    final Path root = sourceRoot.toPath ();
+    try (final Stream <Path> paths = Files.walk (root, FileVisitOption.FOLLOW_LINKS))
+    {
+      paths.filter (path -> path.getFileName ().toString ().endsWith (".java")).forEach (path -> {
+        _addSourceFile (sourceRoot, root.relativize (path).toString ().replace (File.separatorChar, '/'));
+      });
+    }
+    catch (final UncheckedIOException e)
+    {
+      throw e.getCause ();
+    }
+  }
+
+  /**
+   * Determines whether the specified directory resides within a temporary
+   * directory created by this mojo.
+   *
+   * @param directory
+   *        The directory to check, must not be <code>null</code>.
+   * @return <code>true</code> if the directory is temporary,
+   *         <code>false</code> otherwise.
+   */
+  private boolean _isTempDirectory (final File directory)
+  {
+    for (File dir = directory.getAbsoluteFile (); dir != null; dir = dir.getParentFile ())
     {
-      final File sourceFile = new File (sourceRoot, filename);
-      if (sourceFile.exists ())
+      if (this.tempDirectories.contains (dir))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Determines whether the specified files have equal contents.
+   *
+   * @param file1
+   *        The first file, must not be <code>null</code>.
+   * @param file2
+   *        The second file, must not be <code>null</code>.
+   * @return <code>true</code> if both files exist and have equal contents,
+   *         <code>false</code> otherwise.
+   * @throws IOException
+   *         If reading the files failed.
+   */
+  private static boolean _hasSameContents (final File file1, final File file2) throws IOException
+  {
+    if (!file2.isFile () || file1.length () != file2.length ())
+      return false;
+    try (final InputStream in1 = new BufferedInputStream (new FileInputStream (file1));
+         final InputStream in2 = new BufferedInputStream (new FileInputStream (file2)))
+    {
+      int b;
+      while ((b = in1.read ()) >= 0)
       {
-        return sourceFile;
+        if (b != in2.read ())
+          return false;
       }
+      return in2.read () < 0;
+    }
+  }
+
+  /**
+   * Replaces the target file with the source file. The target file is replaced
+   * atomically where supported by the file system, i.e. readers never observe
+   * a partially written file.
+   *
+   * @param source
+   *        The file to copy or move, must not be <code>null</code>.
+   * @param target
+   *        The file to replace, must not be <code>null</code>.
+   * @param move
+   *        <code>true</code> to move the source file, <code>false</code> to
+   *        leave it in place.
+   * @throws IOException
+   *         If the target file could not be written.
+   */
+  private static void _replaceFile (final File source, final File target, final boolean move) throws IOException
+  {
+    final File directory = target.getAbsoluteFile ().getParentFile ();
+    if (!directory.isDirectory () && !directory.mkdirs ())
+      throw new IOException ("Failed to create directory: " + directory);
+
+    if (move)
+    {
+      try
+      {
+        Files.move (source.toPath (), target.toPath (), StandardCopyOption.ATOMIC_MOVE);
+        return;
+      }
+      catch (final AtomicMoveNotSupportedException e)
+      {
+        // different file systems, fall back to copying
+      }
+    }
+
+    final File partFile = File.createTempFile (target.getName (), ".tmp", directory);
+    try
+    {
+      Files.copy (source.toPath (), partFile.toPath (), StandardCopyOption.REPLACE_EXISTING);
+      try
+      {
+        Files.move (partFile.toPath (), target.toPath (), StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (final AtomicMoveNotSupportedException e)
+      {
+        Files.move (partFile.toPath (), target.toPath (), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally
+    {
+      Files.deleteIfExists (partFile.toPath ());
     }
-    return null;
   }
 
   /**
@@ -733,6 +2628,8 @@ public abstract class AbstractJavaCCMojo extends AbstractMojo
   {
     final JavaCC javacc = new JavaCC ();
     javacc.setLog (getLog ());
+    javacc.setTimings (this.timings);
+    javacc.setIsolated (this.isolateTools);
     javacc.setGrammarEncoding (this.grammarEncoding);
     javacc.setOutputEncoding (this.outputEncoding);
     javacc.setJdkVersion (this.jdkVersion);
@@ -1,5 +1,8 @@
 package org.codehaus.mojo.javacc;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -40,7 +43,8 @@ import com.helger.commons.state.ESuccess;
 abstract class AbstractToolFacade
 {
   // Lock all calls to javacc stuff, because they use a lot of global variables
-  // (see also #14)
+  // (see also #14). Only used if the tools are not run in isolated class
+  // loaders.
   protected static final Lock LOCK = new ReentrantLock ();
 
   /**
@@ -48,6 +52,17 @@ abstract class AbstractToolFacade
    */
   private Log m_aLog;
 
+  /**
+   * Whether to run the tool in an isolated class loader.
+   */
+  private boolean m_bIsolated = true;
+
+  /**
+   * The recorder for the duration of the tool invocation, may be
+   * <code>null</code>.
+   */
+  private BuildTimings m_aTimings;
+
   /**
    * Sets the logger used to output diagnostic messages.
    *
@@ -73,6 +88,101 @@ abstract class AbstractToolFacade
     return m_aLog;
   }
 
+  /**
+   * Sets the recorder for the duration of the tool invocation. The duration is
+   * recorded as phase named after the tool.
+   *
+   * @param timings
+   *        The recorder for the duration, may be <code>null</code>.
+   */
+  public void setTimings (final BuildTimings timings)
+  {
+    m_aTimings = timings;
+  }
+
+  /**
+   * Sets whether the tool is run in a class loader of its own. This allows
+   * several invocations to run concurrently. Otherwise, all invocations within
+   * the JVM are serialized.
+   *
+   * @param isolated
+   *        <code>true</code> to run the tool in an isolated class loader,
+   *        <code>false</code> to run it in the plugin class loader.
+   */
+  public void setIsolated (final boolean isolated)
+  {
+    m_bIsolated = isolated;
+  }
+
+  /**
+   * Determines whether the tool is run in an isolated class loader. This is
+   * only possible if the location of the parser generator could be
+   * determined.
+   *
+   * @return <code>true</code> if the tool is run in an isolated class loader,
+   *         <code>false</code> if it must be run while holding {@link #LOCK}.
+   */
+  protected final boolean isIsolated ()
+  {
+    return m_bIsolated && ToolClassLoaderPool.getInstance ().isAvailable ();
+  }
+
+  /**
+   * Invokes an entry point of the parser generator in a pooled, isolated class
+   * loader. The entry point must take the command line arguments as its only
+   * parameter and must return an <code>ESuccess</code>.
+   *
+   * @param className
+   *        The qualified name of the class declaring the entry point, must not
+   *        be <code>null</code>.
+   * @param methodName
+   *        The name of the entry point, must not be <code>null</code>.
+   * @param instanceMethod
+   *        <code>true</code> if the entry point is an instance method of a
+   *        class with a default constructor, <code>false</code> if it is a
+   *        static method.
+   * @param args
+   *        The command line arguments, must not be <code>null</code>.
+   * @return The result of the invocation, never <code>null</code>.
+   * @throws Exception
+   *         If the entry point could not be invoked or threw an exception.
+   */
+  @Nonnull
+  protected final ESuccess invokeIsolated (final String className,
+                                           final String methodName,
+                                           final boolean instanceMethod,
+                                           final String [] args) throws Exception
+  {
+    final ToolClassLoaderPool pool = ToolClassLoaderPool.getInstance ();
+    final ClassLoader loader = pool.borrow ();
+    final Thread thread = Thread.currentThread ();
+    final ClassLoader contextLoader = thread.getContextClassLoader ();
+    thread.setContextClassLoader (loader);
+    try
+    {
+      final Class <?> type = Class.forName (className, true, loader);
+      final Method method = type.getMethod (methodName, String [].class);
+      final Object target = instanceMethod ? type.getConstructor ().newInstance () : null;
+      final Object result = method.invoke (target, (Object) args);
+      final Object success = result.getClass ().getMethod ("isSuccess").invoke (result);
+      return ESuccess.valueOf (Boolean.TRUE.equals (success));
+    }
+    catch (final InvocationTargetException e)
+    {
+      final Throwable cause = e.getCause ();
+      if (cause instanceof Exception)
+        throw (Exception) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw e;
+    }
+    finally
+    {
+      thread.setContextClassLoader (contextLoader);
+      pool.release (loader);
+    }
+  }
+
   /**
    * Gets the name of the tool.
    *
@@ -105,7 +215,9 @@ abstract class AbstractToolFacade
   public void run () throws MojoExecutionException, MojoFailureException
   {
     ESuccess exitCode;
-    try
+    final long start = System.nanoTime ();
+    // keep the output of concurrently processed grammars apart
+    try (final ToolOutput output = ToolOutput.capture (getLog ()))
     {
       if (getLog ().isDebugEnabled ())
       {
@@ -117,6 +229,11 @@ abstract class AbstractToolFacade
     {
       throw new MojoExecutionException ("Failed to execute " + getToolName (), e);
     }
+    finally
+    {
+      if (m_aTimings != null)
+        m_aTimings.add (getToolName ().toLowerCase (Locale.ROOT), start);
+    }
     if (exitCode.isFailure ())
     {
       throw new MojoFailureException (getToolName () + " reported failure: " + this);
@@ -0,0 +1,240 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * A logger that records all messages in memory until they are explicitly
+ * flushed to another logger. This is used to keep the output of grammars which
+ * are processed concurrently from interleaving.
+ */
+class BufferedLog implements Log
+{
+  private static final int DEBUG = 0;
+  private static final int INFO = 1;
+  private static final int WARN = 2;
+  private static final int ERROR = 3;
+
+  /**
+   * A single recorded log message.
+   */
+  private static final class Entry
+  {
+    private final int level;
+    private final CharSequence content;
+    private final Throwable error;
+
+    Entry (final int level, final CharSequence content, final Throwable error)
+    {
+      this.level = level;
+      this.content = content;
+      this.error = error;
+    }
+  }
+
+  /**
+   * The logger to which the recorded messages will eventually be flushed. Used
+   * to query the enabled log levels.
+   */
+  private final Log target;
+
+  /**
+   * The recorded messages in the order of their occurrence.
+   */
+  private final List <Entry> entries = new ArrayList <> ();
+
+  /**
+   * Creates a new buffered logger.
+   *
+   * @param target
+   *        The logger to which the recorded messages will eventually be
+   *        flushed, must not be <code>null</code>.
+   */
+  public BufferedLog (final Log target)
+  {
+    if (target == null)
+      throw new IllegalArgumentException ("target logger is null");
+    this.target = target;
+  }
+
+  private synchronized void add (final int level, final CharSequence content, final Throwable error)
+  {
+    this.entries.add (new Entry (level, content, error));
+  }
+
+  /**
+   * Writes all recorded messages to the target logger and clears the buffer.
+   */
+  public synchronized void flush ()
+  {
+    for (final Entry entry : this.entries)
+    {
+      if (entry.content == null)
+        _log (entry.level, entry.error);
+      else
+        if (entry.error == null)
+          _log (entry.level, entry.content);
+        else
+          _log (entry.level, entry.content, entry.error);
+    }
+    this.entries.clear ();
+  }
+
+  private void _log (final int level, final CharSequence content)
+  {
+    switch (level)
+    {
+      case DEBUG:
+        this.target.debug (content);
+        break;
+      case INFO:
+        this.target.info (content);
+        break;
+      case WARN:
+        this.target.warn (content);
+        break;
+      default:
+        this.target.error (content);
+        break;
+    }
+  }
+
+  private void _log (final int level, final Throwable error)
+  {
+    switch (level)
+    {
+      case DEBUG:
+        this.target.debug (error);
+        break;
+      case INFO:
+        this.target.info (error);
+        break;
+      case WARN:
+        this.target.warn (error);
+        break;
+      default:
+        this.target.error (error);
+        break;
+    }
+  }
+
+  private void _log (final int level, final CharSequence content, final Throwable error)
+  {
+    switch (level)
+    {
+      case DEBUG:
+        this.target.debug (content, error);
+        break;
+      case INFO:
+        this.target.info (content, error);
+        break;
+      case WARN:
+        this.target.warn (content, error);
+        break;
+      default:
+        this.target.error (content, error);
+        break;
+    }
+  }
+
+  public boolean isDebugEnabled ()
+  {
+    return this.target.isDebugEnabled ();
+  }
+
+  public void debug (final CharSequence content)
+  {
+    add (DEBUG, content, null);
+  }
+
+  public void debug (final CharSequence content, final Throwable error)
+  {
+    add (DEBUG, content, error);
+  }
+
+  public void debug (final Throwable error)
+  {
+    add (DEBUG, null, error);
+  }
+
+  public boolean isInfoEnabled ()
+  {
+    return this.target.isInfoEnabled ();
+  }
+
+  public void info (final CharSequence content)
+  {
+    add (INFO, content, null);
+  }
+
+  public void info (final CharSequence content, final Throwable error)
+  {
+    add (INFO, content, error);
+  }
+
+  public void info (final Throwable error)
+  {
+    add (INFO, null, error);
+  }
+
+  public boolean isWarnEnabled ()
+  {
+    return this.target.isWarnEnabled ();
+  }
+
+  public void warn (final CharSequence content)
+  {
+    add (WARN, content, null);
+  }
+
+  public void warn (final CharSequence content, final Throwable error)
+  {
+    add (WARN, content, error);
+  }
+
+  public void warn (final Throwable error)
+  {
+    add (WARN, null, error);
+  }
+
+  public boolean isErrorEnabled ()
+  {
+    return this.target.isErrorEnabled ();
+  }
+
+  public void error (final CharSequence content)
+  {
+    add (ERROR, content, null);
+  }
+
+  public void error (final CharSequence content, final Throwable error)
+  {
+    add (ERROR, content, error);
+  }
+
+  public void error (final Throwable error)
+  {
+    add (ERROR, null, error);
+  }
+}
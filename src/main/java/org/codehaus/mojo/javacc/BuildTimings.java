@@ -0,0 +1,387 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records the time spent in the phases of processing grammar files, e.g.
+ * running the tools or copying the generated files. The durations are
+ * accumulated per grammar and phase, durations recorded outside the
+ * processing of a grammar are attributed to the build as a whole. This class
+ * is thread-safe, the grammar a duration belongs to is determined by the
+ * calling thread.
+ */
+final class BuildTimings
+{
+  /**
+   * The pseudo grammar to which build-wide phases like scanning are
+   * attributed.
+   */
+  static final String BUILD = "";
+
+  /**
+   * The phase covering the entire processing of a grammar.
+   */
+  static final String TOTAL = "total";
+
+  /**
+   * The accumulated duration of a phase.
+   */
+  static final class Timing
+  {
+    private final String grammar;
+    private final String phase;
+    private int count;
+    private long nanos;
+
+    Timing (final String grammar, final String phase)
+    {
+      this.grammar = grammar;
+      this.phase = phase;
+    }
+
+    /**
+     * @return The path of the grammar file relative to the source directory,
+     *         {@link BuildTimings#BUILD} for build-wide phases.
+     */
+    public String getGrammar ()
+    {
+      return this.grammar;
+    }
+
+    /**
+     * @return The name of the phase, never <code>null</code>.
+     */
+    public String getPhase ()
+    {
+      return this.phase;
+    }
+
+    /**
+     * @return The number of times the phase was run.
+     */
+    public int getCount ()
+    {
+      return this.count;
+    }
+
+    /**
+     * @return The accumulated duration in nanoseconds.
+     */
+    public long getNanos ()
+    {
+      return this.nanos;
+    }
+  }
+
+  /**
+   * The grammar currently processed by the calling thread.
+   */
+  private final ThreadLocal <String> currentGrammar = new ThreadLocal <> ();
+
+  /**
+   * The timings keyed by grammar and phase, in the order of their first
+   * occurrence.
+   */
+  private final Map <String, Map <String, Timing>> timings = new LinkedHashMap <> ();
+
+  /**
+   * Sets the grammar processed by the calling thread. Durations recorded by
+   * this thread are attributed to the grammar until it is reset.
+   *
+   * @param grammar
+   *        The path of the grammar file relative to the source directory, may
+   *        be <code>null</code> to attribute durations to the build.
+   */
+  public void setCurrentGrammar (final String grammar)
+  {
+    if (grammar == null)
+      this.currentGrammar.remove ();
+    else
+      this.currentGrammar.set (grammar);
+  }
+
+  /**
+   * Records the duration of a phase of the grammar processed by the calling
+   * thread.
+   *
+   * @param phase
+   *        The name of the phase, must not be <code>null</code>.
+   * @param startNanos
+   *        The value of {@link System#nanoTime()} when the phase started.
+   */
+  public void add (final String phase, final long startNanos)
+  {
+    final String grammar = this.currentGrammar.get ();
+    add (grammar != null ? grammar : BUILD, phase, System.nanoTime () - startNanos, 1);
+  }
+
+  /**
+   * Records the duration of a phase.
+   *
+   * @param grammar
+   *        The path of the grammar file relative to the source directory or
+   *        {@link #BUILD}, must not be <code>null</code>.
+   * @param phase
+   *        The name of the phase, must not be <code>null</code>.
+   * @param nanos
+   *        The duration in nanoseconds.
+   * @param count
+   *        The number of runs of the phase the duration covers.
+   */
+  public synchronized void add (final String grammar, final String phase, final long nanos, final int count)
+  {
+    final Timing timing = this.timings.computeIfAbsent (grammar, k -> new LinkedHashMap <> ())
+                                      .computeIfAbsent (phase, k -> new Timing (grammar, phase));
+    timing.count += count;
+    timing.nanos += nanos;
+  }
+
+  /**
+   * Gets all recorded timings, build-wide phases first, followed by the
+   * grammars in the order they were processed.
+   *
+   * @return The recorded timings, never <code>null</code>.
+   */
+  public synchronized List <Timing> getTimings ()
+  {
+    final List <Timing> result = new ArrayList <> ();
+    final Map <String, Timing> build = this.timings.get (BUILD);
+    if (build != null)
+      result.addAll (build.values ());
+    for (final Map.Entry <String, Map <String, Timing>> entry : this.timings.entrySet ())
+    {
+      if (!BUILD.equals (entry.getKey ()))
+        result.addAll (entry.getValue ().values ());
+    }
+    return result;
+  }
+
+  /**
+   * Formats the recorded timings as a table with one row per grammar and one
+   * column per phase. The grammars are sorted by their total duration, slowest
+   * first.
+   *
+   * @param maxGrammars
+   *        The maximum number of grammars to list.
+   * @return The lines of the table, never <code>null</code>.
+   */
+  public synchronized List <String> formatSummary (final int maxGrammars)
+  {
+    final List <String> lines = new ArrayList <> ();
+    final Map <String, Timing> build = this.timings.get (BUILD);
+    if (build != null)
+    {
+      final StringBuilder line = new StringBuilder ("Build:");
+      for (final Timing timing : build.values ())
+        line.append (' ').append (timing.phase).append ('=').append (_toMillis (timing.nanos)).append (" ms");
+      lines.add (line.toString ());
+    }
+
+    final List <Map <String, Timing>> grammars = new ArrayList <> ();
+    final Set <String> phases = new LinkedHashSet <> ();
+    phases.add (TOTAL);
+    int nameWidth = "Grammar".length ();
+    for (final Map.Entry <String, Map <String, Timing>> entry : this.timings.entrySet ())
+    {
+      if (!BUILD.equals (entry.getKey ()))
+      {
+        grammars.add (entry.getValue ());
+        phases.addAll (entry.getValue ().keySet ());
+        nameWidth = Math.max (nameWidth, entry.getKey ().length ());
+      }
+    }
+    if (grammars.isEmpty ())
+      return lines;
+    grammars.sort ( (a, b) -> Long.compare (_getNanos (b, TOTAL), _getNanos (a, TOTAL)));
+
+    final StringBuilder header = new StringBuilder (_pad ("Grammar", nameWidth, false));
+    for (final String phase : phases)
+      header.append ("  ").append (_pad (phase, Math.max (8, phase.length ()), true));
+    lines.add (header.append ("  (ms)").toString ());
+    for (final Map <String, Timing> grammar : grammars.subList (0, Math.min (maxGrammars, grammars.size ())))
+    {
+      final StringBuilder row = new StringBuilder (_pad (grammar.values ().iterator ().next ().grammar, nameWidth, false));
+      for (final String phase : phases)
+      {
+        final Timing timing = grammar.get (phase);
+        row.append ("  ").append (_pad (timing != null ? _toMillis (timing.nanos) : "-", Math.max (8, phase.length ()), true));
+      }
+      lines.add (row.toString ());
+    }
+    if (grammars.size () > maxGrammars)
+      lines.add ("... and " + (grammars.size () - maxGrammars) + " more grammars");
+    return lines;
+  }
+
+  private static long _getNanos (final Map <String, Timing> grammar, final String phase)
+  {
+    final Timing timing = grammar.get (phase);
+    return timing != null ? timing.nanos : 0;
+  }
+
+  private static String _toMillis (final long nanos)
+  {
+    return String.format (Locale.ROOT, "%.1f", Double.valueOf (nanos / 1000000.0));
+  }
+
+  private static String _pad (final String text, final int width, final boolean right)
+  {
+    final StringBuilder buffer = new StringBuilder (width);
+    if (!right)
+      buffer.append (text);
+    for (int i = text.length (); i < width; i++)
+      buffer.append (' ');
+    if (right)
+      buffer.append (text);
+    return buffer.toString ();
+  }
+
+  /**
+   * Writes the recorded timings as JSON array with one object per grammar and
+   * phase.
+   *
+   * @param file
+   *        The file to write, must not be <code>null</code>.
+   * @param mojo
+   *        The name of the mojo that recorded the timings, must not be
+   *        <code>null</code>.
+   * @throws IOException
+   *         If the file could not be written.
+   */
+  public void writeJson (final File file, final String mojo) throws IOException
+  {
+    final StringBuilder json = new StringBuilder ("[");
+    String separator = "\n";
+    for (final Timing timing : getTimings ())
+    {
+      json.append (separator)
+          .append ("  {\"mojo\": ")
+          .append (_quoteJson (mojo))
+          .append (", \"grammar\": ")
+          .append (_quoteJson (timing.grammar))
+          .append (", \"phase\": ")
+          .append (_quoteJson (timing.phase))
+          .append (", \"count\": ")
+          .append (timing.count)
+          .append (", \"nanos\": ")
+          .append (timing.nanos)
+          .append ('}');
+      separator = ",\n";
+    }
+    json.append ("\n]\n");
+    _write (file, json);
+  }
+
+  /**
+   * Writes the recorded timings as CSV with a header line and one line per
+   * grammar and phase.
+   *
+   * @param file
+   *        The file to write, must not be <code>null</code>.
+   * @param mojo
+   *        The name of the mojo that recorded the timings, must not be
+   *        <code>null</code>.
+   * @throws IOException
+   *         If the file could not be written.
+   */
+  public void writeCsv (final File file, final String mojo) throws IOException
+  {
+    final StringBuilder csv = new StringBuilder ("mojo,grammar,phase,count,nanos\n");
+    for (final Timing timing : getTimings ())
+    {
+      csv.append (_quoteCsv (mojo))
+         .append (',')
+         .append (_quoteCsv (timing.grammar))
+         .append (',')
+         .append (_quoteCsv (timing.phase))
+         .append (',')
+         .append (timing.count)
+         .append (',')
+         .append (timing.nanos)
+         .append ('\n');
+    }
+    _write (file, csv);
+  }
+
+  private static void _write (final File file, final CharSequence content) throws IOException
+  {
+    Files.createDirectories (file.getAbsoluteFile ().getParentFile ().toPath ());
+    try (final Writer writer = Files.newBufferedWriter (file.toPath (), StandardCharsets.UTF_8))
+    {
+      writer.append (content);
+    }
+  }
+
+  private static String _quoteJson (final String value)
+  {
+    final StringBuilder buffer = new StringBuilder (value.length () + 2).append ('"');
+    for (int i = 0; i < value.length (); i++)
+    {
+      final char c = value.charAt (i);
+      if (c == '"' || c == '\\')
+        buffer.append ('\\').append (c);
+      else
+        if (c < 0x20)
+          buffer.append (String.format (Locale.ROOT, "\\u%04x", Integer.valueOf (c)));
+        else
+          buffer.append (c);
+    }
+    return buffer.append ('"').toString ();
+  }
+
+  private static String _quoteCsv (final String value)
+  {
+    if (value.indexOf (',') < 0 && value.indexOf ('"') < 0 && value.indexOf ('\n') < 0 && value.indexOf ('\r') < 0)
+      return value;
+    return '"' + value.replace ("\"", "\"\"") + '"';
+  }
+
+  /**
+   * Gets an unmodifiable view of the phases recorded for a grammar.
+   *
+   * @param grammar
+   *        The path of the grammar file relative to the source directory or
+   *        {@link #BUILD}, must not be <code>null</code>.
+   * @return The timings of the grammar keyed by phase, never
+   *         <code>null</code>.
+   */
+  public synchronized Map <String, Timing> getTimings (final String grammar)
+  {
+    final Map <String, Timing> grammarTimings = this.timings.get (grammar);
+    if (grammarTimings == null)
+      return Collections.emptyMap ();
+    return Collections.unmodifiableMap (new LinkedHashMap <> (grammarTimings));
+  }
+}
@@ -0,0 +1,262 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An application class data sharing (AppCDS) archive for a forked JVM. The
+ * first JVM forked for a given class path dumps the classes it loaded into an
+ * archive when it exits (<code>-XX:ArchiveClassesAtExit</code>), later JVMs map
+ * the archive instead of loading and verifying the classes again
+ * (<code>-XX:SharedArchiveFile</code>).<br/>
+ * <br/>
+ * Archives are keyed by the JVM, its options, the class path and the main
+ * class. Only one JVM at a time dumps a given archive; it writes to a
+ * temporary file which is moved into place once the JVM terminated
+ * successfully. The dump is guarded by a file lock of the operating system,
+ * which is released when the process holding it dies, so a crashed build
+ * never blocks later dumps. A JVM that cannot use an archive silently falls
+ * back to loading the classes as usual.
+ */
+final class ClassDataSharing
+{
+  /**
+   * The options that keep the JVM from reporting unusable archives.
+   */
+  private static final String [] QUIET = { "-Xlog:cds=off", "-Xlog:cds+dynamic=off" };
+
+  /**
+   * The archive file.
+   */
+  private final File archive;
+
+  /**
+   * The file the archive is dumped to, <code>null</code> if the archive is not
+   * dumped by this JVM.
+   */
+  private final File dump;
+
+  /**
+   * The lock held while dumping the archive, <code>null</code> if the archive
+   * is not dumped by this JVM.
+   */
+  private final FileLock lock;
+
+  /**
+   * Whether the archive has been completed.
+   */
+  private boolean completed;
+
+  private ClassDataSharing (final File archive, final File dump, final FileLock lock)
+  {
+    this.archive = archive;
+    this.dump = dump;
+    this.lock = lock;
+  }
+
+  /**
+   * Determines whether a JVM with the specified configuration can use an
+   * AppCDS archive. This requires the JVM to be the same as the current one,
+   * at least Java 13 and a class path consisting of JAR files only.
+   *
+   * @param executable
+   *        The JVM executable, must not be <code>null</code>.
+   * @param jvmArgs
+   *        The options of the JVM, must not be <code>null</code>.
+   * @param classPath
+   *        The class path entries, must not be <code>null</code>.
+   * @return <code>true</code> if an archive can be used, <code>false</code>
+   *         otherwise.
+   */
+  static boolean isSupported (final String executable, final List <String> jvmArgs, final Iterable <String> classPath)
+  {
+    if (!ForkedJvm.getDefaultExecutable ().equals (executable))
+      return false;
+    if (getFeatureVersion (System.getProperty ("java.specification.version")) < 13)
+      return false;
+    for (final String option : jvmArgs)
+    {
+      if (option.startsWith ("-Xshare:off") ||
+          option.startsWith ("-XX:SharedArchiveFile") ||
+          option.startsWith ("-XX:ArchiveClassesAtExit"))
+        return false;
+    }
+    boolean empty = true;
+    for (final String entry : classPath)
+    {
+      // the JVM refuses to dump archives for class paths with directories
+      if (!new File (entry).isFile ())
+        return false;
+      empty = false;
+    }
+    return !empty;
+  }
+
+  /**
+   * Gets the feature version of a Java specification version, e.g.
+   * <code>8</code> for <code>1.8</code>.
+   *
+   * @param version
+   *        The specification version, may be <code>null</code>.
+   * @return The feature version or <code>0</code> if unknown.
+   */
+  static int getFeatureVersion (final String version)
+  {
+    if (version == null)
+      return 0;
+    String feature = version.startsWith ("1.") ? version.substring (2) : version;
+    final int dot = feature.indexOf ('.');
+    if (dot >= 0)
+      feature = feature.substring (0, dot);
+    try
+    {
+      return Integer.parseInt (feature);
+    }
+    catch (final NumberFormatException e)
+    {
+      return 0;
+    }
+  }
+
+  /**
+   * Prepares the archive for a forked JVM. If the archive does not exist yet
+   * and no other JVM is dumping it, the forked JVM is configured to dump it.
+   *
+   * @param directory
+   *        The directory holding the archives, must not be <code>null</code>.
+   * @param key
+   *        The key of the archive, must not be <code>null</code>.
+   * @return The archive, never <code>null</code>.
+   */
+  static ClassDataSharing prepare (final File directory, final String key)
+  {
+    final File archive = new File (directory, key + ".jsa");
+    if (archive.isFile ())
+      return new ClassDataSharing (archive, null, null);
+
+    // the lock file itself is kept, deleting it would allow two processes to
+    // lock different files of the same name
+    final File lockFile = new File (directory, key + ".lock");
+    FileChannel channel = null;
+    try
+    {
+      Files.createDirectories (directory.toPath ());
+      channel = FileChannel.open (lockFile.toPath (), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      final FileLock lock = channel.tryLock ();
+      if (lock != null)
+      {
+        // the previous holder may have completed the archive meanwhile
+        if (archive.isFile ())
+        {
+          channel.close ();
+          return new ClassDataSharing (archive, null, null);
+        }
+        final File dump = new File (directory, key + ".tmp");
+        Files.deleteIfExists (dump.toPath ());
+        return new ClassDataSharing (archive, dump, lock);
+      }
+    }
+    catch (final IOException | OverlappingFileLockException e)
+    {
+      // run without archive, an overlapping lock means another thread of this
+      // JVM is dumping the archive
+    }
+    if (channel != null)
+    {
+      try
+      {
+        channel.close ();
+      }
+      catch (final IOException e)
+      {
+        // ignore
+      }
+    }
+    return new ClassDataSharing (archive, null, null);
+  }
+
+  /**
+   * Gets the options that make the forked JVM use or dump the archive.
+   *
+   * @return The JVM options, never <code>null</code> but empty if the archive
+   *         neither exists nor is dumped by the forked JVM.
+   */
+  public String [] getJvmArguments ()
+  {
+    final List <String> args = new ArrayList <> ();
+    if (this.dump != null)
+      args.add ("-XX:ArchiveClassesAtExit=" + this.dump.getAbsolutePath ());
+    else
+      if (this.archive.isFile ())
+        args.add ("-XX:SharedArchiveFile=" + this.archive.getAbsolutePath ());
+      else
+        return new String [0];
+    for (final String option : QUIET)
+      args.add (option);
+    return args.toArray (new String [args.size ()]);
+  }
+
+  /**
+   * Completes the archive after the forked JVM terminated. If the forked JVM
+   * dumped the archive, the archive is moved into place.
+   *
+   * @param success
+   *        <code>true</code> if the forked JVM terminated normally,
+   *        <code>false</code> to discard a dumped archive.
+   */
+  public synchronized void complete (final boolean success)
+  {
+    if (this.dump == null || this.completed)
+      return;
+    this.completed = true;
+    try
+    {
+      if (success && this.dump.isFile ())
+        Files.move (this.dump.toPath (), this.archive.toPath (), StandardCopyOption.ATOMIC_MOVE);
+      else
+        Files.deleteIfExists (this.dump.toPath ());
+    }
+    catch (final IOException e)
+    {
+      this.dump.delete ();
+    }
+    finally
+    {
+      try
+      {
+        this.lock.channel ().close ();
+      }
+      catch (final IOException e)
+      {
+        // the lock is released when the process exits
+      }
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Calculates the SHA-256 digests used to detect changed inputs, e.g. of
+ * grammar files, generated files or the configuration of forked JVMs.
+ */
+final class DigestUtils
+{
+  private DigestUtils ()
+  {}
+
+  /**
+   * Calculates the digest of the contents of the specified file.
+   *
+   * @param file
+   *        The file to digest, must not be <code>null</code>.
+   * @return The hex encoded digest, never <code>null</code>.
+   * @throws IOException
+   *         If the file could not be read.
+   */
+  public static String digest (final File file) throws IOException
+  {
+    final MessageDigest digest = _newDigest ();
+    try (final InputStream in = new FileInputStream (file))
+    {
+      final byte [] buffer = new byte [8192];
+      int read;
+      while ((read = in.read (buffer)) >= 0)
+        digest.update (buffer, 0, read);
+    }
+    return _toHex (digest.digest ());
+  }
+
+  /**
+   * Calculates the digest of the specified string.
+   *
+   * @param text
+   *        The string to digest, must not be <code>null</code>.
+   * @return The hex encoded digest, never <code>null</code>.
+   */
+  public static String digest (final String text)
+  {
+    return _toHex (_newDigest ().digest (text.getBytes (StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Calculates the digest of the specified strings taken together, e.g. the
+   * key of a cache entry.
+   *
+   * @param parts
+   *        The strings to digest, must not be <code>null</code>. Elements may
+   *        be <code>null</code>, which is equivalent to an empty string.
+   * @return The hex encoded digest, never <code>null</code>.
+   */
+  public static String key (final String... parts)
+  {
+    final StringBuilder buffer = new StringBuilder ();
+    for (final String part : parts)
+    {
+      // length prefixed to keep the concatenation unambiguous
+      final String value = part != null ? part : "";
+      buffer.append (value.length ()).append (':').append (value).append ('\n');
+    }
+    return digest (buffer.toString ());
+  }
+
+  private static MessageDigest _newDigest ()
+  {
+    try
+    {
+      return MessageDigest.getInstance ("SHA-256");
+    }
+    catch (final NoSuchAlgorithmException e)
+    {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException (e);
+    }
+  }
+
+  private static String _toHex (final byte [] bytes)
+  {
+    final char [] digits = "0123456789abcdef".toCharArray ();
+    final StringBuilder hex = new StringBuilder (bytes.length * 2);
+    for (final byte b : bytes)
+      hex.append (digits[(b >> 4) & 0xF]).append (digits[b & 0xF]);
+    return hex.toString ();
+  }
+}
@@ -20,11 +20,21 @@ package org.codehaus.mojo.javacc;
  */
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
 import javax.annotation.Nullable;
 
@@ -57,7 +67,12 @@ class ForkedJvm
   /**
    * The executable used to fork the JVM.
    */
-  private final String executable;
+  private String executable;
+
+  /**
+   * The options for the forked JVM itself, given as strings.
+   */
+  private final List <String> m_aJvmArgs = new ArrayList <> ();
 
   /**
    * The working directory for the forked JVM.
@@ -81,12 +96,30 @@ class ForkedJvm
    */
   private final List <String> cmdLineArgs = new ArrayList <> ();
 
+  /**
+   * The directory for the files passing the class path to the forked JVM,
+   * <code>null</code> to pass the class path on the command line.
+   */
+  private File classPathFileDirectory;
+
+  /**
+   * The directory for class data sharing archives, <code>null</code> if
+   * disabled.
+   */
+  private File sharedArchiveDirectory;
+
+  /**
+   * The class data sharing archive of the last forked JVM, <code>null</code>
+   * if none.
+   */
+  private ClassDataSharing sharedArchive;
+
   /**
    * Creates a new configuration to fork a JVM.
    */
   public ForkedJvm ()
   {
-    this.executable = _getDefaultExecutable ();
+    this.executable = getDefaultExecutable ();
   }
 
   /**
@@ -94,11 +127,85 @@ class ForkedJvm
    *
    * @return The absolute path to the JVM executable.
    */
-  private static String _getDefaultExecutable ()
+  static String getDefaultExecutable ()
   {
     return System.getProperty ("java.home") + File.separator + "bin" + File.separator + "java";
   }
 
+  /**
+   * Sets the executable used to fork the JVM.
+   *
+   * @param executable
+   *        The path to the JVM executable, may be <code>null</code> or empty to
+   *        use the executable of the current JVM.
+   */
+  public void setExecutable (@Nullable final String executable)
+  {
+    this.executable = StringUtils.isNotEmpty (executable) ? executable : getDefaultExecutable ();
+  }
+
+  /**
+   * Adds the specified option for the forked JVM itself, e.g.
+   * <code>-Xmx512m</code>. JVM options are passed before the class path and
+   * the main class.
+   *
+   * @param option
+   *        The option to add, may be <code>null</code> or empty.
+   */
+  public void addJvmArgument (@Nullable final String option)
+  {
+    if (StringUtils.isNotEmpty (option))
+      this.m_aJvmArgs.add (option);
+  }
+
+  /**
+   * Adds the specified options for the forked JVM itself.
+   *
+   * @param options
+   *        The options to add, may be <code>null</code>.
+   */
+  public void addJvmArguments (@Nullable final String [] options)
+  {
+    if (options != null)
+      for (final String option : options)
+        addJvmArgument (option);
+  }
+
+  /**
+   * Sets the directory for application class data sharing archives. If set and
+   * supported by the JVM, the forked JVM creates an archive of the classes it
+   * loads on its first run which is used by all later JVMs with the same
+   * configuration to speed up their startup.
+   *
+   * @param directory
+   *        The directory for the archives, may be <code>null</code> to disable
+   *        class data sharing archives.
+   */
+  public void setSharedArchiveDirectory (@Nullable final File directory)
+  {
+    this.sharedArchiveDirectory = directory;
+  }
+
+  /**
+   * Sets the directory for the files passing the class path to the forked JVM.
+   * Instead of a <code>-cp</code> argument that grows with the class path, the
+   * forked JVM receives an argument file (<code>@file</code>, Java 9+) or, if
+   * the JVM is not known to support argument files, a JAR whose manifest lists
+   * the class path. The files are named after the digest of the class path and
+   * reused by all JVMs with the same class path once their content has been
+   * verified. The directory should be private to the build, e.g. below the
+   * project's build directory.
+   *
+   * @param directory
+   *        The directory for the class path files, may be <code>null</code> to
+   *        pass the class path on the command line. Default value is
+   *        <code>null</code>.
+   */
+  public void setClassPathFileDirectory (@Nullable final File directory)
+  {
+    this.classPathFileDirectory = directory;
+  }
+
   /**
    * Sets the working directory for the forked JVM.
    *
@@ -362,10 +469,29 @@ class ForkedJvm
       cli.setWorkingDirectory (this.workingDirectory.getAbsolutePath ());
     }
 
+    cli.addArguments (this.m_aJvmArgs.toArray (new String [this.m_aJvmArgs.size ()]));
+    if (this.sharedArchive != null)
+    {
+      cli.addArguments (this.sharedArchive.getJvmArguments ());
+    }
+
     final String classPath = _getClassPath ();
     if (classPath != null && classPath.length () > 0)
     {
-      cli.addArguments (new String [] { "-cp", classPath });
+      final File classPathFile = _getClassPathFile (classPath);
+      if (classPathFile == null)
+      {
+        cli.addArguments (new String [] { "-cp", classPath });
+      }
+      else
+        if (_isArgumentFile (classPathFile))
+        {
+          cli.addArguments (new String [] { "@" + classPathFile.getAbsolutePath () });
+        }
+        else
+        {
+          cli.addArguments (new String [] { "-cp", classPathFile.getAbsolutePath () });
+        }
     }
 
     if (this.mainClass != null && this.mainClass.length () > 0)
@@ -387,7 +513,210 @@ class ForkedJvm
    */
   public int run () throws Exception
   {
-    return CommandLineUtils.executeCommandLine (_createCommandLine (), this.systemOut, this.systemErr);
+    _writeClassPathFile ();
+    _prepareSharedArchive ();
+    int exitcode = -1;
+    try
+    {
+      exitcode = CommandLineUtils.executeCommandLine (_createCommandLine (), this.systemOut, this.systemErr);
+      return exitcode;
+    }
+    finally
+    {
+      completeSharedArchive (exitcode == 0);
+    }
+  }
+
+  /**
+   * Forks a JVM using the previously set parameters without waiting for its
+   * termination. The caller is responsible to consume the output streams of the
+   * returned process.
+   *
+   * @return The forked JVM, never <code>null</code>.
+   * @throws Exception
+   *         If the JVM could not be forked.
+   */
+  public Process start () throws Exception
+  {
+    _writeClassPathFile ();
+    _prepareSharedArchive ();
+    try
+    {
+      return _createCommandLine ().execute ();
+    }
+    catch (final Exception e)
+    {
+      completeSharedArchive (false);
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the file passing the specified class path to the forked JVM.
+   *
+   * @param classPath
+   *        The class path, must not be <code>null</code>.
+   * @return The argument file or pathing JAR, <code>null</code> if the class
+   *         path is passed on the command line.
+   */
+  @Nullable
+  private File _getClassPathFile (final String classPath)
+  {
+    if (this.classPathFileDirectory == null)
+      return null;
+    // argument files are only supported since Java 9, so use a pathing JAR
+    // for older and unknown JVMs
+    final boolean argumentFile = getDefaultExecutable ().equals (this.executable) &&
+                                 ClassDataSharing.getFeatureVersion (System.getProperty ("java.specification.version")) >= 9;
+    final String name = DigestUtils.digest (classPath);
+    return new File (this.classPathFileDirectory, name + (argumentFile ? ".args" : ".jar"));
+  }
+
+  private static boolean _isArgumentFile (final File classPathFile)
+  {
+    return classPathFile.getName ().endsWith (".args");
+  }
+
+  /**
+   * Writes the file passing the class path to the JVM about to be forked
+   * unless it already exists with the expected content. The file is written
+   * to a temporary file first and then moved into place, so concurrent forks
+   * never see a partial file.
+   *
+   * @throws IOException
+   *         If the file could not be written.
+   */
+  private void _writeClassPathFile () throws IOException
+  {
+    final String classPath = _getClassPath ();
+    if (classPath == null || classPath.length () == 0)
+      return;
+    final File classPathFile = _getClassPathFile (classPath);
+    if (classPathFile == null || _isClassPathFileCurrent (classPathFile))
+      return;
+
+    Files.createDirectories (this.classPathFileDirectory.toPath ());
+    final File temp = File.createTempFile (classPathFile.getName (), ".tmp", this.classPathFileDirectory);
+    try
+    {
+      try (final OutputStream out = new FileOutputStream (temp))
+      {
+        if (_isArgumentFile (classPathFile))
+          out.write (_getArgumentFileContent ().getBytes (StandardCharsets.UTF_8));
+        else
+          new JarOutputStream (out, _getPathingManifest ()).close ();
+      }
+      Files.move (temp.toPath (), classPathFile.toPath (), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    finally
+    {
+      Files.deleteIfExists (temp.toPath ());
+    }
+  }
+
+  /**
+   * Determines whether the specified class path file exists and passes the
+   * class path of this JVM. The name of the file merely hints at its content,
+   * so the file is read before it is reused.
+   *
+   * @param classPathFile
+   *        The argument file or pathing JAR, must not be <code>null</code>.
+   * @return <code>true</code> if the file can be reused, <code>false</code>
+   *         if it needs to be written.
+   */
+  private boolean _isClassPathFileCurrent (final File classPathFile)
+  {
+    if (!classPathFile.isFile ())
+      return false;
+    try
+    {
+      if (_isArgumentFile (classPathFile))
+        return _getArgumentFileContent ().equals (new String (Files.readAllBytes (classPathFile.toPath ()),
+                                                              StandardCharsets.UTF_8));
+      try (final JarFile jar = new JarFile (classPathFile))
+      {
+        final Manifest manifest = jar.getManifest ();
+        return manifest != null && _getPathingManifest ().getMainAttributes ().equals (manifest.getMainAttributes ());
+      }
+    }
+    catch (final IOException e)
+    {
+      // a corrupt file is replaced
+      return false;
+    }
+  }
+
+  /**
+   * Gets the content of the argument file for the class path. Within quotes,
+   * the backslash escapes the next character.
+   *
+   * @return The content of the argument file, never <code>null</code>.
+   */
+  private String _getArgumentFileContent ()
+  {
+    final String classPath = _getClassPath ().replace ("\\", "\\\\").replace ("\"", "\\\"");
+    return "-cp\n\"" + classPath + "\"\n";
+  }
+
+  /**
+   * Gets the manifest of the pathing JAR for the class path.
+   *
+   * @return The manifest, never <code>null</code>.
+   * @throws IOException
+   *         If a class path entry could not be converted to a URL.
+   */
+  private Manifest _getPathingManifest () throws IOException
+  {
+    final StringBuilder classPath = new StringBuilder ();
+    for (final String entry : this.m_aClassPathEntries)
+    {
+      if (classPath.length () > 0)
+        classPath.append (' ');
+      // directories need a trailing slash which is added by File.toURI()
+      classPath.append (new File (entry).getAbsoluteFile ().toURI ().toURL ().toExternalForm ());
+    }
+    final Manifest manifest = new Manifest ();
+    manifest.getMainAttributes ().put (Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes ().put (Attributes.Name.CLASS_PATH, classPath.toString ());
+    return manifest;
+  }
+
+  /**
+   * Prepares the class data sharing archive for the JVM about to be forked.
+   */
+  private void _prepareSharedArchive ()
+  {
+    this.sharedArchive = null;
+    if (this.sharedArchiveDirectory != null &&
+        ClassDataSharing.isSupported (this.executable, this.m_aJvmArgs, this.m_aClassPathEntries))
+    {
+      final List <String> key = new ArrayList <> ();
+      key.add (System.getProperty ("java.home"));
+      key.add (System.getProperty ("java.vm.version"));
+      key.add (this.executable);
+      key.addAll (this.m_aJvmArgs);
+      key.add (_getClassPath ());
+      key.add (this.mainClass);
+      this.sharedArchive = ClassDataSharing.prepare (this.sharedArchiveDirectory,
+                                                     DigestUtils.key (key.toArray (new String [key.size ()])));
+    }
+  }
+
+  /**
+   * Completes the class data sharing archive once the forked JVM terminated.
+   * This is done automatically by {@link #run()}, callers of {@link #start()}
+   * must invoke this method after the process terminated.
+   *
+   * @param success
+   *        <code>true</code> if the JVM terminated normally, <code>false</code>
+   *        otherwise.
+   */
+  public void completeSharedArchive (final boolean success)
+  {
+    if (this.sharedArchive != null)
+    {
+      this.sharedArchive.complete (success);
+    }
   }
 
   /**
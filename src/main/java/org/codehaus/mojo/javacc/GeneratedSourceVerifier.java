@@ -0,0 +1,401 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles the files generated from a grammar in memory to report errors, e.g.
+ * in the actions of the grammar, right after the generation rather than in a
+ * later build phase. No class files are written. Errors are mapped back to
+ * the grammar file where the offending line can be found in it. The files are
+ * compiled for the language level of the project, unless the compiler does
+ * not support it. Instances may be used concurrently.
+ */
+final class GeneratedSourceVerifier
+{
+  /**
+   * The minimum length of a line for it to be looked up in the grammar file.
+   * Shorter lines like braces are too ambiguous.
+   */
+  private static final int MIN_MAPPED_LINE_LENGTH = 8;
+
+  /**
+   * An error reported by the compiler.
+   */
+  static final class Problem
+  {
+    private final File file;
+    private final int line;
+    private final String message;
+
+    Problem (final File file, final int line, final String message)
+    {
+      this.file = file;
+      this.line = line;
+      this.message = message;
+    }
+
+    /**
+     * @return The grammar file if the error could be mapped to it, the
+     *         generated file otherwise. May be <code>null</code> if the error
+     *         is not related to a file.
+     */
+    public File getFile ()
+    {
+      return this.file;
+    }
+
+    /**
+     * @return The 1-based line number within the file, or <code>0</code> if
+     *         unknown.
+     */
+    public int getLine ()
+    {
+      return this.line;
+    }
+
+    /**
+     * @return The message of the compiler, never <code>null</code>.
+     */
+    public String getMessage ()
+    {
+      return this.message;
+    }
+
+    @Override
+    public String toString ()
+    {
+      if (this.file == null)
+        return this.message;
+      return this.file + (this.line > 0 ? ":" + this.line : "") + ": " + this.message;
+    }
+  }
+
+  private final JavaCompiler compiler;
+
+  private final List <File> classPath;
+
+  private final List <File> sourcePath;
+
+  private final Charset encoding;
+
+  private final Charset grammarEncoding;
+
+  /**
+   * The compiler options selecting the language level, never
+   * <code>null</code>.
+   */
+  private final List <String> languageLevelOptions;
+
+  /**
+   * Set once the compiler rejected the language level options, the files are
+   * compiled at the default level of the compiler afterwards.
+   */
+  private volatile boolean languageLevelRejected;
+
+  /**
+   * Creates a new verifier.
+   *
+   * @param classPath
+   *        The class path to compile against, must not be <code>null</code>.
+   * @param sourcePath
+   *        The source roots to look up further sources referenced by the
+   *        generated files, must not be <code>null</code>.
+   * @param encoding
+   *        The encoding of the generated files, must not be <code>null</code>.
+   * @param grammarEncoding
+   *        The encoding of the grammar files, must not be <code>null</code>.
+   * @param release
+   *        The Java release the project is compiled for, e.g. <code>11</code>,
+   *        may be <code>null</code>.
+   * @param source
+   *        The language level of the sources of the project, e.g.
+   *        <code>1.8</code>, may be <code>null</code>. Only used without a
+   *        release.
+   * @param target
+   *        The level of the class files of the project, may be
+   *        <code>null</code>. Only used without a release.
+   */
+  public GeneratedSourceVerifier (final Collection <File> classPath,
+                                  final Collection <File> sourcePath,
+                                  final Charset encoding,
+                                  final Charset grammarEncoding,
+                                  final String release,
+                                  final String source,
+                                  final String target)
+  {
+    this.compiler = ToolProvider.getSystemJavaCompiler ();
+    this.classPath = new ArrayList <> (classPath);
+    this.sourcePath = new ArrayList <> ();
+    for (final File root : sourcePath)
+      if (root.isDirectory ())
+        this.sourcePath.add (root);
+    this.encoding = encoding;
+    this.grammarEncoding = grammarEncoding;
+    this.languageLevelOptions = new ArrayList <> ();
+    if (this.compiler != null)
+    {
+      if (_hasText (release))
+      {
+        // javac 8 does not know the option, the levels are equivalent to it
+        if (this.compiler.isSupportedOption ("--release") >= 0)
+          this.languageLevelOptions.addAll (Arrays.asList ("--release", release.trim ()));
+        else
+          this.languageLevelOptions.addAll (Arrays.asList ("-source", release.trim (), "-target", release.trim ()));
+      }
+      else
+        if (_hasText (source))
+        {
+          this.languageLevelOptions.addAll (Arrays.asList ("-source", source.trim ()));
+          if (_hasText (target))
+            this.languageLevelOptions.addAll (Arrays.asList ("-target", target.trim ()));
+        }
+    }
+  }
+
+  private static boolean _hasText (final String value)
+  {
+    return value != null && value.trim ().length () > 0;
+  }
+
+  /**
+   * Determines whether a compiler is available, i.e. whether the build runs
+   * on a JDK rather than a JRE.
+   *
+   * @return <code>true</code> if generated files can be verified,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isAvailable ()
+  {
+    return this.compiler != null;
+  }
+
+  /**
+   * Compiles the specified generated files.
+   *
+   * @param grammarFile
+   *        The grammar file from which the files were generated, must not be
+   *        <code>null</code>.
+   * @param generatedFiles
+   *        The generated files, only Java source files are compiled. Must not
+   *        be <code>null</code>.
+   * @return The errors reported by the compiler, never <code>null</code>.
+   * @throws IOException
+   *         If the generated files could not be read.
+   */
+  public List <Problem> verify (final File grammarFile, final Collection <File> generatedFiles) throws IOException
+  {
+    final List <File> sources = new ArrayList <> ();
+    for (final File file : generatedFiles)
+      if (file.getName ().endsWith (".java") && file.isFile ())
+        sources.add (file);
+    if (sources.isEmpty ())
+      return Collections.emptyList ();
+
+    DiagnosticCollector <JavaFileObject> diagnostics = null;
+    if (!this.languageLevelRejected && !this.languageLevelOptions.isEmpty ())
+    {
+      diagnostics = _compile (sources, this.languageLevelOptions);
+      if (diagnostics == null)
+        this.languageLevelRejected = true;
+    }
+    if (diagnostics == null)
+      diagnostics = _compile (sources, Collections.<String> emptyList ());
+
+    final List <Problem> problems = new ArrayList <> ();
+    List <String> grammarLines = null;
+    for (final Diagnostic <? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics ())
+    {
+      if (diagnostic.getKind () != Diagnostic.Kind.ERROR)
+        continue;
+      final String message = diagnostic.getMessage (Locale.ROOT);
+      if (diagnostic.getSource () == null)
+      {
+        problems.add (new Problem (null, 0, message));
+        continue;
+      }
+      final File source = new File (diagnostic.getSource ().toUri ());
+      final int line = (int) Math.max (0, diagnostic.getLineNumber ());
+      if (grammarLines == null)
+        grammarLines = _readLines (grammarFile, this.grammarEncoding);
+      final int grammarLine = line > 0 ? _mapLine (_readLines (source, this.encoding), line, grammarLines) : 0;
+      if (grammarLine > 0)
+        problems.add (new Problem (grammarFile, grammarLine, message + " (in " + source.getName () + ":" + line + ")"));
+      else
+        problems.add (new Problem (source, line, message));
+    }
+    return problems;
+  }
+
+  /**
+   * Compiles the specified files.
+   *
+   * @param sources
+   *        The files to compile, must not be <code>null</code>.
+   * @param levelOptions
+   *        The options selecting the language level, must not be
+   *        <code>null</code>.
+   * @return The diagnostics of the compiler or <code>null</code> if the
+   *         compiler rejected the language level, e.g. a level recent JDKs no
+   *         longer support.
+   * @throws IOException
+   *         If the generated files could not be read.
+   */
+  private DiagnosticCollector <JavaFileObject> _compile (final List <File> sources,
+                                                         final List <String> levelOptions) throws IOException
+  {
+    final DiagnosticCollector <JavaFileObject> diagnostics = new DiagnosticCollector <> ();
+    try (final StandardJavaFileManager standardManager = this.compiler.getStandardFileManager (diagnostics,
+                                                                                               Locale.ROOT,
+                                                                                               this.encoding))
+    {
+      standardManager.setLocation (StandardLocation.CLASS_PATH, this.classPath);
+      standardManager.setLocation (StandardLocation.SOURCE_PATH, this.sourcePath);
+      final JavaFileManager fileManager = new DiscardingFileManager (standardManager);
+      final List <String> options = new ArrayList <> (Arrays.asList ("-proc:none",
+                                                                     "-implicit:none",
+                                                                     "-nowarn",
+                                                                     "-encoding",
+                                                                     this.encoding.name ()));
+      options.addAll (levelOptions);
+      this.compiler.getTask (null,
+                             fileManager,
+                             diagnostics,
+                             options,
+                             null,
+                             standardManager.getJavaFileObjectsFromFiles (sources))
+                   .call ();
+    }
+    catch (final IllegalArgumentException e)
+    {
+      // unsupported releases are rejected when the task is created
+      if (levelOptions.isEmpty ())
+        throw e;
+      return null;
+    }
+    if (!levelOptions.isEmpty ())
+    {
+      // unsupported source and target levels are reported without a file
+      for (final Diagnostic <? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics ())
+        if (diagnostic.getKind () == Diagnostic.Kind.ERROR && diagnostic.getSource () == null)
+          return null;
+    }
+    return diagnostics;
+  }
+
+  private static List <String> _readLines (final File file, final Charset encoding)
+  {
+    try
+    {
+      return Files.readAllLines (file.toPath (), encoding);
+    }
+    catch (final IOException | RuntimeException e)
+    {
+      return Collections.emptyList ();
+    }
+  }
+
+  /**
+   * Maps a line of a generated file to the grammar file. JavaCC copies the
+   * actions verbatim, so a line is mapped if the grammar contains it exactly
+   * once.
+   *
+   * @param generatedLines
+   *        The lines of the generated file, must not be <code>null</code>.
+   * @param line
+   *        The 1-based line number in the generated file.
+   * @param grammarLines
+   *        The lines of the grammar file, must not be <code>null</code>.
+   * @return The 1-based line number in the grammar file or <code>0</code> if
+   *         the line could not be mapped.
+   */
+  private static int _mapLine (final List <String> generatedLines, final int line, final List <String> grammarLines)
+  {
+    if (line > generatedLines.size ())
+      return 0;
+    final String text = generatedLines.get (line - 1).trim ();
+    if (text.length () < MIN_MAPPED_LINE_LENGTH)
+      return 0;
+    int found = 0;
+    for (int i = 0; i < grammarLines.size (); i++)
+    {
+      if (grammarLines.get (i).trim ().equals (text))
+      {
+        if (found > 0)
+          return 0;
+        found = i + 1;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * A file manager that discards all class files.
+   */
+  private static final class DiscardingFileManager extends ForwardingJavaFileManager <JavaFileManager>
+  {
+    DiscardingFileManager (final JavaFileManager fileManager)
+    {
+      super (fileManager);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput (final Location location,
+                                                final String className,
+                                                final JavaFileObject.Kind kind,
+                                                final FileObject sibling)
+    {
+      return new SimpleJavaFileObject (URI.create ("mem:///" + className.replace ('.', '/') + kind.extension), kind)
+      {
+        @Override
+        public OutputStream openOutputStream ()
+        {
+          return new ByteArrayOutputStream ();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,232 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * The files generated from a grammar, packaged as an archive that is attached
+ * to the project. The archive is attached twice: once with a classifier that
+ * identifies the parser and carries the key of the generated files, i.e. a
+ * digest over the grammar contents, the tool options and the tool versions,
+ * and once with a stable classifier that only identifies the parser. The key
+ * is also stored as the comment of the archive. A module consuming the archive
+ * as a dependency unpacks it instead of running the tools if the key of its
+ * own grammar matches.
+ */
+final class GeneratedSourcesArtifact
+{
+  /**
+   * The artifact type of the archives. Dependencies of this type are not
+   * added to the class path of a consuming module.
+   */
+  public static final String TYPE = "zip";
+
+  /**
+   * The prefix of the classifiers of the archives.
+   */
+  private static final String CLASSIFIER_PREFIX = "javacc-";
+
+  /**
+   * The number of characters of the key carried by the classifier.
+   */
+  private static final int KEY_LENGTH = 16;
+
+  private GeneratedSourcesArtifact ()
+  {}
+
+  /**
+   * Gets the classifier of the archive with the files generated for a
+   * grammar.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @param key
+   *        The key of the generated files, must not be <code>null</code>.
+   * @return The classifier, never <code>null</code>.
+   */
+  public static String getClassifier (final GrammarInfo grammarInfo, final String key)
+  {
+    return getStableClassifier (grammarInfo) + '-' + key.substring (0, Math.min (KEY_LENGTH, key.length ()));
+  }
+
+  /**
+   * Gets the classifier of the archive with the files generated for a grammar
+   * which does not change along with the grammar. It consists of the lower
+   * case qualified name of the parser, so grammars of one project generating
+   * parsers of the same simple name in different packages get different
+   * classifiers. Consumers declaring a dependency with this classifier need
+   * not update it whenever the grammar changes, the key is checked against the
+   * comment of the archive instead.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @return The classifier, never <code>null</code>.
+   */
+  public static String getStableClassifier (final GrammarInfo grammarInfo)
+  {
+    final String parserName = grammarInfo.getParserName ();
+    final String packageName = grammarInfo.getParserPackage ();
+    final String name = (packageName.length () > 0 ? packageName + '.' : "") +
+                        (parserName.length () > 0 ? parserName : "parser");
+    return CLASSIFIER_PREFIX + name.toLowerCase (Locale.ROOT);
+  }
+
+  /**
+   * Gets the key of the generated files packaged into an archive.
+   *
+   * @param archive
+   *        The archive, must not be <code>null</code>.
+   * @return The key or <code>null</code> if the archive carries no key.
+   * @throws IOException
+   *         If the archive could not be read.
+   */
+  public static String getKey (final File archive) throws IOException
+  {
+    try (final ZipFile zip = new ZipFile (archive))
+    {
+      return zip.getComment ();
+    }
+  }
+
+  /**
+   * Packages the matching files of a directory into an archive. The archive is
+   * written to a temporary file first and then moved into place, so an
+   * incompletely written archive is never attached.
+   *
+   * @param sourceDirectory
+   *        The directory with the generated files, must not be
+   *        <code>null</code>.
+   * @param includes
+   *        The comma separated patterns of the files to package, must not be
+   *        <code>null</code>.
+   * @param archive
+   *        The archive to write, must not be <code>null</code>.
+   * @param key
+   *        The key of the generated files, stored as the comment of the
+   *        archive. Must not be <code>null</code>.
+   * @return The number of packaged files.
+   * @throws IOException
+   *         If the archive could not be written.
+   */
+  public static int pack (final File sourceDirectory,
+                          final String includes,
+                          final File archive,
+                          final String key) throws IOException
+  {
+    final File directory = archive.getAbsoluteFile ().getParentFile ();
+    if (!directory.isDirectory () && !directory.mkdirs () && !directory.isDirectory ())
+      throw new IOException ("Failed to create directory: " + directory);
+
+    final List <String> fileNames = FileUtils.getFileNames (sourceDirectory, includes, null, false);
+    Collections.sort (fileNames);
+
+    final File temp = File.createTempFile (archive.getName (), ".tmp", directory);
+    try
+    {
+      try (final ZipOutputStream zip = new ZipOutputStream (Files.newOutputStream (temp.toPath ())))
+      {
+        zip.setComment (key);
+        for (final String fileName : fileNames)
+        {
+          final File file = new File (sourceDirectory, fileName);
+          final ZipEntry entry = new ZipEntry (fileName.replace (File.separatorChar, '/'));
+          // a constant time keeps the archive reproducible
+          entry.setTime (0);
+          zip.putNextEntry (entry);
+          Files.copy (file.toPath (), zip);
+          zip.closeEntry ();
+        }
+      }
+      try
+      {
+        Files.move (temp.toPath (), archive.toPath (), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (final AtomicMoveNotSupportedException e)
+      {
+        Files.move (temp.toPath (), archive.toPath (), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally
+    {
+      Files.deleteIfExists (temp.toPath ());
+    }
+    return fileNames.size ();
+  }
+
+  /**
+   * Extracts an archive into a directory.
+   *
+   * @param archive
+   *        The archive to extract, must not be <code>null</code>.
+   * @param targetDirectory
+   *        The directory to extract the files to, must not be
+   *        <code>null</code>.
+   * @return The number of extracted files.
+   * @throws IOException
+   *         If the archive could not be read or contains entries outside of
+   *         the target directory.
+   */
+  public static int unpack (final File archive, final File targetDirectory) throws IOException
+  {
+    final String targetPath = targetDirectory.getCanonicalPath () + File.separator;
+    int count = 0;
+    try (final ZipFile zip = new ZipFile (archive))
+    {
+      final Enumeration <? extends ZipEntry> entries = zip.entries ();
+      while (entries.hasMoreElements ())
+      {
+        final ZipEntry entry = entries.nextElement ();
+        if (entry.isDirectory ())
+          continue;
+        final File file = new File (targetDirectory, entry.getName ());
+        if (!file.getCanonicalPath ().startsWith (targetPath))
+          throw new IOException ("Archive entry outside of target directory: " + entry.getName ());
+        final File parent = file.getParentFile ();
+        if (!parent.isDirectory () && !parent.mkdirs () && !parent.isDirectory ())
+          throw new IOException ("Failed to create directory: " + parent);
+        try (final InputStream in = zip.getInputStream (entry); final OutputStream out = Files.newOutputStream (file.toPath ()))
+        {
+          IOUtil.copy (in, out);
+        }
+        count++;
+      }
+    }
+    return count;
+  }
+}
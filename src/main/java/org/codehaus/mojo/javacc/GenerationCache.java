@@ -0,0 +1,342 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * A content-addressed cache of the files generated from grammars, shared by
+ * all builds of the local user. An entry is a directory holding the files the
+ * tools generated for a grammar, keyed by a digest over everything that
+ * affects the generated files, i.e. the grammar contents, the tool options and
+ * the tool versions.<br/>
+ * <br/>
+ * Entries are written to a scratch directory first and then moved into place
+ * atomically, so concurrent builds never observe a partially written entry.
+ * If two builds store the same entry, the first one wins. Evicted entries are
+ * likewise moved out of place before they are deleted. A build that fails to
+ * restore an entry, e.g. because it was evicted concurrently, simply
+ * regenerates the files.
+ */
+final class GenerationCache
+{
+  /**
+   * The directory holding the entries being written or deleted.
+   */
+  private static final String SCRATCH_DIRECTORY = "tmp";
+
+  /**
+   * The age in milliseconds after which a scratch directory is considered
+   * abandoned.
+   */
+  private static final long ABANDONED_SCRATCH_AGE = 24 * 60 * 60 * 1000L;
+
+  /**
+   * The root directory of the cache.
+   */
+  private final File directory;
+
+  /**
+   * The maximum total size of all entries in bytes.
+   */
+  private final long maxSize;
+
+  /**
+   * The maximum time in milliseconds since an entry was last used.
+   */
+  private final long maxAge;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param directory
+   *        The root directory of the cache, must not be <code>null</code>.
+   * @param maxSize
+   *        The maximum total size of all entries in bytes, non-positive for no
+   *        limit.
+   * @param maxAge
+   *        The maximum time in milliseconds since an entry was last used,
+   *        non-positive for no limit.
+   */
+  public GenerationCache (final File directory, final long maxSize, final long maxAge)
+  {
+    this.directory = directory.getAbsoluteFile ();
+    this.maxSize = maxSize;
+    this.maxAge = maxAge;
+  }
+
+  private File _getEntry (final String key)
+  {
+    return new File (new File (this.directory, key.substring (0, 2)), key);
+  }
+
+  /**
+   * Copies the files of a cache entry into the specified directory.
+   *
+   * @param key
+   *        The key of the entry, must not be <code>null</code>.
+   * @param targetDirectory
+   *        The directory to copy the files to, must not be <code>null</code>.
+   * @return <code>true</code> if the entry was restored, <code>false</code>
+   *         if there is no such entry or it could not be restored completely.
+   *         In the latter case, the partially copied files have been removed
+   *         from the target directory.
+   * @throws IOException
+   *         If the target directory could not be cleaned after an incomplete
+   *         restore.
+   */
+  public boolean restore (final String key, final File targetDirectory) throws IOException
+  {
+    final File entry = _getEntry (key);
+    if (!entry.isDirectory ())
+      return false;
+    try
+    {
+      FileUtils.copyDirectoryStructure (entry, targetDirectory);
+      // the modification time of an entry records its last use
+      entry.setLastModified (System.currentTimeMillis ());
+      return true;
+    }
+    catch (final IOException | RuntimeException e)
+    {
+      // e.g. an entry evicted concurrently, the tools must not find a mix of
+      // restored and generated files
+      if (targetDirectory.isDirectory ())
+        FileUtils.cleanDirectory (targetDirectory);
+      return false;
+    }
+  }
+
+  /**
+   * Stores the files of the specified directory as cache entry unless an
+   * entry with the same key exists already.
+   *
+   * @param key
+   *        The key of the entry, must not be <code>null</code>.
+   * @param sourceDirectory
+   *        The directory with the files to store, must not be
+   *        <code>null</code>.
+   * @throws IOException
+   *         If the entry could not be written.
+   */
+  public void store (final String key, final File sourceDirectory) throws IOException
+  {
+    store (key, sourceDirectory, null);
+  }
+
+  /**
+   * Stores the matching files of the specified directory as cache entry unless
+   * an entry with the same key exists already.
+   *
+   * @param key
+   *        The key of the entry, must not be <code>null</code>.
+   * @param sourceDirectory
+   *        The directory with the files to store, must not be
+   *        <code>null</code>.
+   * @param includes
+   *        The comma separated patterns of the files to store, relative to the
+   *        source directory, may be <code>null</code> to store all files.
+   * @throws IOException
+   *         If the entry could not be written.
+   */
+  public void store (final String key, final File sourceDirectory, final String includes) throws IOException
+  {
+    final File entry = _getEntry (key);
+    if (entry.isDirectory ())
+      return;
+
+    final File scratch = _newScratchDirectory (key);
+    try
+    {
+      if (includes == null)
+        FileUtils.copyDirectoryStructure (sourceDirectory, scratch);
+      else
+        for (final String name : FileUtils.getFileNames (sourceDirectory, includes, null, false))
+          FileUtils.copyFile (new File (sourceDirectory, name), new File (scratch, name));
+      Files.createDirectories (entry.getParentFile ().toPath ());
+      try
+      {
+        Files.move (scratch.toPath (), entry.toPath (), StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (final FileAlreadyExistsException e)
+      {
+        // stored concurrently by another build
+      }
+      catch (final AtomicMoveNotSupportedException e)
+      {
+        // the scratch directory resides in the cache directory, so this
+        // should not happen, but entries must never be visible partially
+        throw new IOException ("Cache directory does not support atomic moves: " + this.directory, e);
+      }
+      catch (final IOException e)
+      {
+        // a non-empty directory appeared concurrently
+        if (!entry.isDirectory ())
+          throw e;
+      }
+    }
+    finally
+    {
+      FileUtils.deleteDirectory (scratch);
+    }
+  }
+
+  private File _newScratchDirectory (final String key) throws IOException
+  {
+    final File scratch = new File (new File (this.directory, SCRATCH_DIRECTORY), key + "-" + UUID.randomUUID ());
+    Files.createDirectories (scratch.toPath ());
+    return scratch;
+  }
+
+  /**
+   * Removes the entries that were not used within the maximum age and, if the
+   * cache is still larger than the maximum size, the least recently used
+   * entries.
+   *
+   * @return The number of removed entries.
+   * @throws IOException
+   *         If the cache directory could not be read.
+   */
+  public int evict () throws IOException
+  {
+    if (!this.directory.isDirectory () || (this.maxSize <= 0 && this.maxAge <= 0))
+      return 0;
+
+    final List <File> entries = new ArrayList <> ();
+    try (final DirectoryStream <Path> prefixes = Files.newDirectoryStream (this.directory.toPath ()))
+    {
+      for (final Path prefix : prefixes)
+      {
+        if (!Files.isDirectory (prefix) || SCRATCH_DIRECTORY.equals (prefix.getFileName ().toString ()))
+          continue;
+        try (final DirectoryStream <Path> keys = Files.newDirectoryStream (prefix))
+        {
+          for (final Path entry : keys)
+            entries.add (entry.toFile ());
+        }
+      }
+    }
+    _removeAbandonedScratchDirectories ();
+
+    // most recently used first
+    entries.sort (Comparator.comparingLong (File::lastModified).reversed ());
+
+    final long now = System.currentTimeMillis ();
+    long size = 0;
+    int removed = 0;
+    for (final File entry : entries)
+    {
+      final boolean expired = this.maxAge > 0 && now - entry.lastModified () > this.maxAge;
+      if (!expired)
+        size += _getSize (entry.toPath ());
+      if (expired || (this.maxSize > 0 && size > this.maxSize))
+      {
+        if (_remove (entry.toPath ()))
+          removed++;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Removes scratch directories left behind by builds that were killed while
+   * writing an entry.
+   */
+  private void _removeAbandonedScratchDirectories ()
+  {
+    final File [] scratches = new File (this.directory, SCRATCH_DIRECTORY).listFiles ();
+    if (scratches != null)
+    {
+      final long threshold = System.currentTimeMillis () - ABANDONED_SCRATCH_AGE;
+      for (final File scratch : scratches)
+      {
+        if (scratch.lastModified () < threshold)
+        {
+          try
+          {
+            FileUtils.deleteDirectory (scratch);
+          }
+          catch (final IOException e)
+          {
+            // best effort
+          }
+        }
+      }
+    }
+  }
+
+  private static long _getSize (final Path entry)
+  {
+    try (final Stream <Path> files = Files.walk (entry))
+    {
+      return files.filter (Files::isRegularFile).mapToLong (file -> file.toFile ().length ()).sum ();
+    }
+    catch (final IOException | UncheckedIOException e)
+    {
+      return 0;
+    }
+  }
+
+  private boolean _remove (final Path entry)
+  {
+    File scratch = null;
+    try
+    {
+      scratch = _newScratchDirectory (entry.getFileName ().toString ());
+      Files.move (entry, scratch.toPath ().resolve ("entry"), StandardCopyOption.ATOMIC_MOVE);
+      return true;
+    }
+    catch (final IOException e)
+    {
+      // removed concurrently
+      return false;
+    }
+    finally
+    {
+      if (scratch != null)
+      {
+        try
+        {
+          FileUtils.deleteDirectory (scratch);
+        }
+        catch (final IOException e)
+        {
+          // best effort
+        }
+      }
+    }
+  }
+}
@@ -22,7 +22,13 @@ package org.codehaus.mojo.javacc;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 import org.codehaus.plexus.util.DirectoryScanner;
 
@@ -55,12 +61,66 @@ class GrammarDirectoryScanner
    */
   private int staleMillis;
 
+  /**
+   * The index with the recorded state of the grammar files, may be
+   * <code>null</code> to detect stale target files by timestamp checking only.
+   */
+  private GrammarIndex grammarIndex;
+
+  /**
+   * The plugin version to compare against the grammar index.
+   */
+  private String pluginVersion;
+
+  /**
+   * The function calculating the fingerprint of the effective tool options for
+   * a grammar file, may be <code>null</code> if the options are not checked.
+   */
+  private Function <GrammarInfo, String> optionsFingerprint;
+
+  /**
+   * Whether grammar files are checked by their contents rather than by their
+   * timestamps.
+   */
+  private boolean checkContents;
+
+  /**
+   * The content digests of the grammar files calculated during the last scan,
+   * keyed by the path relative to the source directory.
+   */
+  private final Map <String, String> contentDigests = new HashMap <> ();
+
+  /**
+   * The digests of the effective tool options calculated during the last scan,
+   * keyed by the path relative to the source directory.
+   */
+  private final Map <String, String> optionsDigests = new HashMap <> ();
+
+  /**
+   * The grammar files found stale during the last scan only because of the
+   * timestamp of the grammar file, given by the path relative to the source
+   * directory.
+   */
+  private final Set <String> touchedGrammars = new HashSet <> ();
+
   /**
    * A set of grammar infos describing the included grammar files, must never be
    * <code>null</code>.
    */
   private final List <GrammarInfo> includedGrammars;
 
+  /**
+   * The grammar infos describing the grammar files which matched the patterns
+   * but were excluded because their target files are up to date.
+   */
+  private final List <GrammarInfo> upToDateGrammars = new ArrayList <> ();
+
+  /**
+   * The time spent creating grammar infos during the last scan, in
+   * nanoseconds.
+   */
+  private long grammarInfoNanos;
+
   /**
    * Creates a new grammar directory scanner.
    */
@@ -143,11 +203,59 @@ class GrammarDirectoryScanner
     this.staleMillis = milliseconds;
   }
 
+  /**
+   * Sets the index with the recorded state of the grammar files. A grammar file
+   * is considered stale if it is not recorded in the index, if its tool options
+   * or the plugin version differ from the recorded state or if any of the files
+   * generated from it is missing, in addition to the checks of its target
+   * files.
+   *
+   * @param index
+   *        The index with the recorded state of the grammar files, may be
+   *        <code>null</code> to check the target files only.
+   * @param pluginVersion
+   *        The version of the plugin, must not be <code>null</code> if an index
+   *        is given.
+   */
+  public void setGrammarIndex (final GrammarIndex index, final String pluginVersion)
+  {
+    this.grammarIndex = index;
+    this.pluginVersion = pluginVersion;
+  }
+
+  /**
+   * Sets the function calculating the fingerprint of the effective tool options
+   * for a grammar file. The fingerprint is compared against the grammar index.
+   *
+   * @param fingerprint
+   *        The function calculating the fingerprint, may be <code>null</code>
+   *        to use an empty fingerprint for all grammar files.
+   */
+  public void setOptionsFingerprint (final Function <GrammarInfo, String> fingerprint)
+  {
+    this.optionsFingerprint = fingerprint;
+  }
+
+  /**
+   * Sets whether grammar files are checked by their contents rather than by
+   * their timestamps. Checking the contents requires a grammar index, a
+   * grammar file is then considered stale if its contents differ from the
+   * recorded state or if any of its target files is missing.
+   *
+   * @param value
+   *        <code>true</code> to check the contents of the grammar files,
+   *        <code>false</code> to compare timestamps.
+   */
+  public void setCheckContents (final boolean value)
+  {
+    this.checkContents = value;
+  }
+
   /**
    * Scans the source directory for grammar files that match at least one
    * inclusion pattern but no exclusion pattern, optionally performing timestamp
-   * checking to exclude grammars whose corresponding parser files are up to
-   * date.
+   * or content checking to exclude grammars whose corresponding parser files
+   * are up to date.
    *
    * @throws IOException
    *         If a grammar file could not be analyzed for metadata.
@@ -155,31 +263,184 @@ class GrammarDirectoryScanner
   public void scan () throws IOException
   {
     this.includedGrammars.clear ();
+    this.upToDateGrammars.clear ();
+    this.contentDigests.clear ();
+    this.optionsDigests.clear ();
+    this.touchedGrammars.clear ();
+    this.grammarInfoNanos = 0;
     this.scanner.scan ();
 
     final String [] includedFiles = this.scanner.getIncludedFiles ();
     for (final String includedFile : includedFiles)
     {
-      final GrammarInfo grammarInfo = new GrammarInfo (this.scanner.getBasedir (), includedFile);
+      final long start = System.nanoTime ();
+      final GrammarInfo grammarInfo = _newGrammarInfo (includedFile);
+      this.grammarInfoNanos += System.nanoTime () - start;
       if (this.outputDirectory != null)
       {
-        final File sourceFile = grammarInfo.getGrammarFile ();
         final File [] targetFiles = getTargetFiles (this.outputDirectory, includedFile, grammarInfo);
-        for (final File targetFile2 : targetFiles)
-        {
-          final File targetFile = targetFile2;
-          if (!targetFile.exists () || targetFile.lastModified () + this.staleMillis < sourceFile.lastModified ())
-          {
-            this.includedGrammars.add (grammarInfo);
-            break;
-          }
-        }
+        if (_isStale (includedFile, grammarInfo, targetFiles))
+          this.includedGrammars.add (grammarInfo);
+        else
+          this.upToDateGrammars.add (grammarInfo);
       }
       else
       {
         this.includedGrammars.add (grammarInfo);
       }
     }
+
+    if (this.grammarIndex != null)
+      this.grammarIndex.retain (Arrays.asList (includedFiles));
+  }
+
+  /**
+   * Creates the grammar info for the specified grammar file. If a grammar index
+   * is used, the header of the grammar file is taken from the index unless the
+   * grammar file changed since the header was cached.
+   *
+   * @param grammarFile
+   *        The path to the grammar file relative to the source directory, must
+   *        not be <code>null</code>.
+   * @return The grammar info, never <code>null</code>.
+   * @throws IOException
+   *         If the grammar file could not be read.
+   */
+  private GrammarInfo _newGrammarInfo (final String grammarFile) throws IOException
+  {
+    final File sourceDirectory = this.scanner.getBasedir ();
+    if (this.grammarIndex == null)
+      return new GrammarInfo (sourceDirectory, grammarFile);
+
+    final File file = new File (sourceDirectory, grammarFile);
+    final long size = file.length ();
+    final long lastModified = file.lastModified ();
+    String contentDigest = null;
+    if (this.checkContents)
+    {
+      contentDigest = DigestUtils.digest (file);
+      this.contentDigests.put (grammarFile, contentDigest);
+    }
+
+    GrammarHeader header = this.grammarIndex.getHeader (grammarFile, size, lastModified, contentDigest);
+    if (header == null)
+    {
+      header = GrammarHeader.read (file);
+      this.grammarIndex.putHeader (grammarFile, size, lastModified, contentDigest, header);
+    }
+    return new GrammarInfo (sourceDirectory, grammarFile, header);
+  }
+
+  private boolean _isStale (final String grammarFile, final GrammarInfo grammarInfo, final File [] targetFiles) throws IOException
+  {
+    final File sourceFile = grammarInfo.getGrammarFile ();
+    if (this.grammarIndex == null)
+      return _isStaleByTimestamp (grammarFile, sourceFile, targetFiles);
+
+    final String fingerprint = this.optionsFingerprint != null ? this.optionsFingerprint.apply (grammarInfo) : "";
+    final String optionsDigest = DigestUtils.digest (fingerprint);
+    this.optionsDigests.put (grammarFile, optionsDigest);
+
+    // calculated along with the grammar info
+    final String contentDigest = this.contentDigests.get (grammarFile);
+
+    final GrammarIndex.Entry entry = this.grammarIndex.get (grammarFile);
+    if (entry == null || !entry.hasOptions (optionsDigest, this.pluginVersion))
+      return true;
+    for (final File outputFile : entry.getOutputFiles ())
+    {
+      if (!outputFile.exists ())
+        return true;
+    }
+    // unchanged output files keep their timestamps, so compare against the
+    // time the grammar was last processed rather than against the target files
+    for (final File targetFile : targetFiles)
+    {
+      if (!targetFile.exists ())
+        return true;
+    }
+    if (contentDigest != null)
+      return !entry.hasContent (contentDigest);
+    if (entry.getGenerationTime () + this.staleMillis < sourceFile.lastModified ())
+    {
+      this.touchedGrammars.add (grammarFile);
+      return true;
+    }
+    return false;
+  }
+
+  private boolean _isStaleByTimestamp (final String grammarFile, final File sourceFile, final File [] targetFiles)
+  {
+    boolean changed = false;
+    for (final File targetFile : targetFiles)
+    {
+      if (!targetFile.exists ())
+        return true;
+      if (targetFile.lastModified () + this.staleMillis < sourceFile.lastModified ())
+        changed = true;
+    }
+    if (changed)
+      this.touchedGrammars.add (grammarFile);
+    return changed;
+  }
+
+  /**
+   * Gets the time spent during the last invocation of <code>scan()</code> to
+   * determine the package and parser name of the grammar files.
+   *
+   * @return The time in nanoseconds.
+   */
+  public long getGrammarInfoTime ()
+  {
+    return this.grammarInfoNanos;
+  }
+
+  /**
+   * Determines whether the specified grammar file was found stale during the
+   * last invocation of <code>scan()</code> only because of its timestamp, i.e.
+   * because it was modified after it was last processed. Grammar files which
+   * are stale because their contents, options, the plugin version or their
+   * generated files changed are not reported.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @return <code>true</code> if the grammar file is stale only because of
+   *         its timestamp, <code>false</code> otherwise.
+   */
+  public boolean isStaleByTimestamp (final GrammarInfo grammarInfo)
+  {
+    return this.touchedGrammars.contains (grammarInfo.getRelativeGrammarFile ());
+  }
+
+  /**
+   * Gets the content digest of the specified grammar file as calculated during
+   * the last invocation of <code>scan()</code>.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @return The hex encoded content digest or <code>null</code> if the scan
+   *         did not check the contents.
+   */
+  public String getContentDigest (final GrammarInfo grammarInfo)
+  {
+    return this.contentDigests.get (grammarInfo.getRelativeGrammarFile ());
+  }
+
+  /**
+   * Gets the digest of the effective tool options for the specified grammar
+   * file as calculated during the last invocation of <code>scan()</code>.
+   *
+   * @param grammarInfo
+   *        The grammar info describing the grammar file, must not be
+   *        <code>null</code>.
+   * @return The hex encoded options digest or <code>null</code> if the scan
+   *         did not use a grammar index.
+   */
+  public String getOptionsDigest (final GrammarInfo grammarInfo)
+  {
+    return this.optionsDigests.get (grammarInfo.getRelativeGrammarFile ());
   }
 
   /**
@@ -214,4 +475,17 @@ class GrammarDirectoryScanner
   {
     return this.includedGrammars.toArray (new GrammarInfo [this.includedGrammars.size ()]);
   }
+
+  /**
+   * Gets the grammar files that matched the patterns during the last
+   * invocation of <code>scan()</code> but were excluded because their target
+   * files are up to date.
+   *
+   * @return An array of grammar infos describing the up-to-date grammar files,
+   *         never <code>null</code>.
+   */
+  public GrammarInfo [] getUpToDateGrammars ()
+  {
+    return this.upToDateGrammars.toArray (new GrammarInfo [this.upToDateGrammars.size ()]);
+  }
 }
@@ -0,0 +1,264 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The information declared in the header of a grammar file, i.e. the name of
+ * the parser from <code>PARSER_BEGIN(...)</code> and the package declared by
+ * the parser compilation unit. The grammar file is tokenized in a single pass
+ * that skips comments and literals and stops as soon as both values have been
+ * found or the parser compilation unit ends, so large grammars are never read
+ * entirely.
+ */
+final class GrammarHeader
+{
+  /**
+   * The declared package or an empty string if none was found.
+   */
+  private final String packageName;
+
+  /**
+   * The declared parser name or an empty string if none was found.
+   */
+  private final String parserName;
+
+  /**
+   * Creates a new header from known values.
+   *
+   * @param packageName
+   *        The declared package, may be <code>null</code> if none.
+   * @param parserName
+   *        The declared parser name, may be <code>null</code> if none.
+   */
+  GrammarHeader (final String packageName, final String parserName)
+  {
+    this.packageName = packageName != null ? packageName : "";
+    this.parserName = parserName != null ? parserName : "";
+  }
+
+  /**
+   * Reads the header of the specified grammar file.
+   *
+   * @param grammarFile
+   *        The grammar file to read, must not be <code>null</code>.
+   * @return The header of the grammar file, never <code>null</code>.
+   * @throws IOException
+   *         If reading the grammar file failed.
+   */
+  public static GrammarHeader read (final File grammarFile) throws IOException
+  {
+    // NOTE: JavaCC uses the platform default encoding to read files, so must we
+    try (final Reader reader = new BufferedReader (new FileReader (grammarFile)))
+    {
+      return read (reader);
+    }
+  }
+
+  /**
+   * Reads the header of a grammar from the specified reader. The reader is
+   * only consumed as far as needed and is not closed.
+   *
+   * @param reader
+   *        The reader providing the grammar contents, must not be
+   *        <code>null</code>.
+   * @return The header of the grammar, never <code>null</code>.
+   * @throws IOException
+   *         If reading the grammar failed.
+   */
+  public static GrammarHeader read (final Reader reader) throws IOException
+  {
+    final Tokenizer tokenizer = new Tokenizer (reader);
+    String packageName = null;
+    String parserName = null;
+    String token;
+    while ((packageName == null || parserName == null) && (token = tokenizer.next ()) != null)
+    {
+      if ("PARSER_END".equals (token))
+        break;
+      if (parserName == null && "PARSER_BEGIN".equals (token))
+        parserName = _readParserName (tokenizer);
+      else
+        if (packageName == null && "package".equals (token))
+          packageName = _readPackageName (tokenizer);
+    }
+    return new GrammarHeader (packageName, parserName);
+  }
+
+  private static String _readParserName (final Tokenizer tokenizer) throws IOException
+  {
+    if (!"(".equals (tokenizer.next ()))
+      return null;
+    final String name = tokenizer.next ();
+    if (!Tokenizer.isIdentifier (name) || !")".equals (tokenizer.next ()))
+      return null;
+    return name;
+  }
+
+  private static String _readPackageName (final Tokenizer tokenizer) throws IOException
+  {
+    final StringBuilder name = new StringBuilder ();
+    while (true)
+    {
+      final String part = tokenizer.next ();
+      if (!Tokenizer.isIdentifier (part))
+        return null;
+      name.append (part);
+      final String separator = tokenizer.next ();
+      if (";".equals (separator))
+        return name.toString ();
+      if (!".".equals (separator))
+        return null;
+      name.append ('.');
+    }
+  }
+
+  /**
+   * Gets the declared package of the parser.
+   *
+   * @return The declared package or an empty string if none was found, never
+   *         <code>null</code>.
+   */
+  public String getPackageName ()
+  {
+    return this.packageName;
+  }
+
+  /**
+   * Gets the declared name of the parser.
+   *
+   * @return The declared parser name or an empty string if none was found,
+   *         never <code>null</code>.
+   */
+  public String getParserName ()
+  {
+    return this.parserName;
+  }
+
+  /**
+   * A minimal tokenizer for grammar files. It yields identifiers and single
+   * punctuation characters while skipping white space, comments and
+   * string/character literals. A literal yields a token of its own so it
+   * separates the surrounding tokens.
+   */
+  private static final class Tokenizer
+  {
+    /**
+     * The token returned in place of a skipped literal.
+     */
+    private static final String LITERAL = "\"\"";
+
+    private final Reader reader;
+
+    private int pushback = -1;
+
+    Tokenizer (final Reader reader)
+    {
+      this.reader = reader;
+    }
+
+    static boolean isIdentifier (final String token)
+    {
+      return token != null && token.length () > 0 && Character.isJavaIdentifierStart (token.charAt (0));
+    }
+
+    private int _read () throws IOException
+    {
+      if (this.pushback >= 0)
+      {
+        final int c = this.pushback;
+        this.pushback = -1;
+        return c;
+      }
+      return this.reader.read ();
+    }
+
+    /**
+     * Gets the next token.
+     *
+     * @return The next token or <code>null</code> at the end of the input.
+     * @throws IOException
+     *         If reading the input failed.
+     */
+    String next () throws IOException
+    {
+      while (true)
+      {
+        int c = _read ();
+        if (c < 0)
+          return null;
+        if (Character.isWhitespace (c))
+          continue;
+
+        if (c == '/')
+        {
+          final int n = _read ();
+          if (n == '/')
+          {
+            while ((c = _read ()) >= 0 && c != '\n' && c != '\r')
+            {
+              // skip line comment
+            }
+            continue;
+          }
+          if (n == '*')
+          {
+            int prev = 0;
+            while ((c = _read ()) >= 0 && !(prev == '*' && c == '/'))
+              prev = c;
+            continue;
+          }
+          this.pushback = n;
+          return "/";
+        }
+
+        if (c == '"' || c == '\'')
+        {
+          final int quote = c;
+          while ((c = _read ()) >= 0 && c != quote && c != '\n' && c != '\r')
+          {
+            if (c == '\\')
+              _read ();
+          }
+          return LITERAL;
+        }
+
+        if (Character.isJavaIdentifierStart (c))
+        {
+          final StringBuilder identifier = new StringBuilder ();
+          do
+          {
+            identifier.append ((char) c);
+            c = _read ();
+          } while (c >= 0 && Character.isJavaIdentifierPart (c));
+          this.pushback = c;
+          return identifier.toString ();
+        }
+
+        return String.valueOf ((char) c);
+      }
+    }
+  }
+}
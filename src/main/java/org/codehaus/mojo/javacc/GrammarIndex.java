@@ -0,0 +1,556 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A persistent index recording the state of the grammar files as of their last
+ * successful processing. For each grammar, the index stores a digest of its
+ * contents, a digest of the effective tool options, the version of the plugin
+ * that processed it, the manifest of the files generated from it and the state
+ * of the custom source files copied along with the generated files. Comparing
+ * these against the current state allows to detect stale grammars
+ * independently of file modification times, which are not reliable after a
+ * checkout or a cache restore. Additionally, the index caches the header of
+ * every grammar file so unchanged grammar files need not be read to determine
+ * their parser package and name.<br/>
+ * <br/>
+ * The index is stored in a compact binary format that starts with a magic
+ * number and a format version. Files in an unknown format are ignored, i.e.
+ * simply cause all grammars to be regenerated.
+ */
+class GrammarIndex
+{
+  /**
+   * The magic number at the start of an index file ("JJIX").
+   */
+  private static final int MAGIC = 0x4A4A4958;
+
+  /**
+   * The version of the index format, to be incremented whenever the format
+   * changes.
+   */
+  private static final int FORMAT_VERSION = 5;
+
+  /**
+   * The state recorded for a single grammar file.
+   */
+  static final class Entry
+  {
+    private final String contentDigest;
+    private final String optionsDigest;
+    private final String pluginVersion;
+    private final List <File> outputFiles;
+    private final long generationTime;
+    private final Map <String, String> customSources;
+
+    Entry (final String contentDigest,
+           final String optionsDigest,
+           final String pluginVersion,
+           final List <File> outputFiles,
+           final long generationTime,
+           final Map <String, String> customSources)
+    {
+      this.contentDigest = contentDigest;
+      this.optionsDigest = optionsDigest;
+      this.pluginVersion = pluginVersion;
+      this.outputFiles = outputFiles;
+      this.generationTime = generationTime;
+      this.customSources = customSources;
+    }
+
+    /**
+     * Gets the time at which the processing of the grammar started.
+     *
+     * @return The generation time in milliseconds since the epoch.
+     */
+    public long getGenerationTime ()
+    {
+      return this.generationTime;
+    }
+
+    /**
+     * Gets the files generated from the grammar.
+     *
+     * @return The absolute paths to the generated files, never
+     *         <code>null</code>.
+     */
+    public List <File> getOutputFiles ()
+    {
+      return this.outputFiles;
+    }
+
+    /**
+     * Gets the state of the custom source files next to the grammar file as
+     * of their last copy to the output directory.
+     *
+     * @return The state of each custom source file keyed by its file name,
+     *         never <code>null</code>.
+     */
+    public Map <String, String> getCustomSources ()
+    {
+      return this.customSources;
+    }
+
+    /**
+     * Gets the digest of the grammar contents as of the last processing.
+     *
+     * @return The hex encoded digest, never <code>null</code>.
+     */
+    public String getContentDigest ()
+    {
+      return this.contentDigest;
+    }
+
+    /**
+     * Determines whether the grammar contents equal the recorded state.
+     *
+     * @param contentDigest
+     *        The digest of the grammar contents, must not be <code>null</code>.
+     * @return <code>true</code> if the recorded digest equals the specified
+     *         digest, <code>false</code> otherwise.
+     */
+    public boolean hasContent (final String contentDigest)
+    {
+      return this.contentDigest.equals (contentDigest);
+    }
+
+    /**
+     * Determines whether the tool options and the plugin version equal the
+     * recorded state.
+     *
+     * @param optionsDigest
+     *        The digest of the effective tool options, must not be
+     *        <code>null</code>.
+     * @param pluginVersion
+     *        The version of the plugin, must not be <code>null</code>.
+     * @return <code>true</code> if the recorded options and version equal the
+     *         specified ones, <code>false</code> otherwise.
+     */
+    public boolean hasOptions (final String optionsDigest, final String pluginVersion)
+    {
+      return this.optionsDigest.equals (optionsDigest) && this.pluginVersion.equals (pluginVersion);
+    }
+  }
+
+  /**
+   * The cached header of a single grammar file along with the file state it
+   * was read from.
+   */
+  private static final class HeaderEntry
+  {
+    private final long size;
+    private final long lastModified;
+    private final String contentDigest;
+    private final GrammarHeader header;
+
+    HeaderEntry (final long size, final long lastModified, final String contentDigest, final GrammarHeader header)
+    {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.contentDigest = contentDigest;
+      this.header = header;
+    }
+  }
+
+  /**
+   * The index file, never <code>null</code>.
+   */
+  private final File indexFile;
+
+  /**
+   * The directory against which the paths of the generated files are stored,
+   * may be <code>null</code> to store absolute paths.
+   */
+  private final File baseDirectory;
+
+  /**
+   * The recorded entries, keyed by the path of the grammar file relative to
+   * its source directory.
+   */
+  private final Map <String, Entry> entries = new TreeMap <> ();
+
+  /**
+   * The cached grammar headers, keyed by the path of the grammar file relative
+   * to its source directory.
+   */
+  private final Map <String, HeaderEntry> headers = new TreeMap <> ();
+
+  /**
+   * Whether the entries were modified since the index was loaded.
+   */
+  private boolean modified;
+
+  /**
+   * Creates a new empty index.
+   *
+   * @param indexFile
+   *        The file to store the index in, must not be <code>null</code>.
+   * @param baseDirectory
+   *        The directory against which the paths of the generated files are
+   *        stored, may be <code>null</code> to store absolute paths. Storing
+   *        relative paths keeps the index valid when the project is moved.
+   */
+  public GrammarIndex (final File indexFile, final File baseDirectory)
+  {
+    if (indexFile == null)
+      throw new IllegalArgumentException ("index file is null");
+    this.indexFile = indexFile;
+    this.baseDirectory = baseDirectory != null ? baseDirectory.getAbsoluteFile () : null;
+  }
+
+  /**
+   * Loads the index from the specified file. A missing, corrupt or outdated
+   * index file yields an empty index.
+   *
+   * @param indexFile
+   *        The file to load the index from, must not be <code>null</code>.
+   * @param baseDirectory
+   *        The directory against which the paths of the generated files are
+   *        stored, may be <code>null</code> if absolute paths are stored.
+   * @return The loaded index, never <code>null</code>.
+   */
+  public static GrammarIndex load (final File indexFile, final File baseDirectory)
+  {
+    final GrammarIndex index = new GrammarIndex (indexFile, baseDirectory);
+    try (final DataInputStream in = new DataInputStream (new BufferedInputStream (new FileInputStream (indexFile))))
+    {
+      if (in.readInt () != MAGIC || in.readInt () != FORMAT_VERSION)
+        return index;
+      final int count = in.readInt ();
+      for (int i = 0; i < count; i++)
+      {
+        final String key = in.readUTF ();
+        final String contentDigest = in.readUTF ();
+        final String optionsDigest = in.readUTF ();
+        final String pluginVersion = in.readUTF ();
+        final int fileCount = in.readInt ();
+        final List <File> outputFiles = new ArrayList <> (fileCount);
+        for (int j = 0; j < fileCount; j++)
+          outputFiles.add (index._resolve (in.readUTF ()));
+        final long generationTime = in.readLong ();
+        final int customSourceCount = in.readInt ();
+        final Map <String, String> customSources = new TreeMap <> ();
+        for (int j = 0; j < customSourceCount; j++)
+          customSources.put (in.readUTF (), in.readUTF ());
+        index.entries.put (key,
+                           new Entry (contentDigest,
+                                      optionsDigest,
+                                      pluginVersion,
+                                      outputFiles,
+                                      generationTime,
+                                      Collections.unmodifiableMap (customSources)));
+      }
+      final int headerCount = in.readInt ();
+      for (int i = 0; i < headerCount; i++)
+      {
+        final String key = in.readUTF ();
+        final long size = in.readLong ();
+        final long lastModified = in.readLong ();
+        final String contentDigest = in.readUTF ();
+        final GrammarHeader header = new GrammarHeader (in.readUTF (), in.readUTF ());
+        index.headers.put (key, new HeaderEntry (size, lastModified, contentDigest, header));
+      }
+    }
+    catch (final FileNotFoundException e)
+    {
+      // no index yet
+    }
+    catch (final IOException e)
+    {
+      index.entries.clear ();
+      index.headers.clear ();
+    }
+    return index;
+  }
+
+  /**
+   * Saves the index if it was modified. The index file is replaced atomically
+   * where supported by the file system.
+   *
+   * @throws IOException
+   *         If the index could not be written.
+   */
+  public synchronized void save () throws IOException
+  {
+    if (!this.modified)
+      return;
+
+    final File directory = this.indexFile.getAbsoluteFile ().getParentFile ();
+    if (!directory.isDirectory () && !directory.mkdirs ())
+      throw new IOException ("Failed to create directory: " + directory);
+
+    final File tempFile = File.createTempFile (this.indexFile.getName (), ".tmp", directory);
+    try
+    {
+      try (final DataOutputStream out = new DataOutputStream (new BufferedOutputStream (new FileOutputStream (tempFile))))
+      {
+        out.writeInt (MAGIC);
+        out.writeInt (FORMAT_VERSION);
+        out.writeInt (this.entries.size ());
+        for (final Map.Entry <String, Entry> entry : this.entries.entrySet ())
+        {
+          out.writeUTF (entry.getKey ());
+          out.writeUTF (entry.getValue ().contentDigest);
+          out.writeUTF (entry.getValue ().optionsDigest);
+          out.writeUTF (entry.getValue ().pluginVersion);
+          out.writeInt (entry.getValue ().outputFiles.size ());
+          for (final File outputFile : entry.getValue ().outputFiles)
+            out.writeUTF (_relativize (outputFile));
+          out.writeLong (entry.getValue ().generationTime);
+          out.writeInt (entry.getValue ().customSources.size ());
+          for (final Map.Entry <String, String> customSource : entry.getValue ().customSources.entrySet ())
+          {
+            out.writeUTF (customSource.getKey ());
+            out.writeUTF (customSource.getValue ());
+          }
+        }
+        out.writeInt (this.headers.size ());
+        for (final Map.Entry <String, HeaderEntry> entry : this.headers.entrySet ())
+        {
+          out.writeUTF (entry.getKey ());
+          out.writeLong (entry.getValue ().size);
+          out.writeLong (entry.getValue ().lastModified);
+          out.writeUTF (entry.getValue ().contentDigest);
+          out.writeUTF (entry.getValue ().header.getPackageName ());
+          out.writeUTF (entry.getValue ().header.getParserName ());
+        }
+      }
+      try
+      {
+        Files.move (tempFile.toPath (), this.indexFile.toPath (), StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (final AtomicMoveNotSupportedException e)
+      {
+        Files.move (tempFile.toPath (), this.indexFile.toPath (), StandardCopyOption.REPLACE_EXISTING);
+      }
+      this.modified = false;
+    }
+    finally
+    {
+      Files.deleteIfExists (tempFile.toPath ());
+    }
+  }
+
+  /**
+   * Gets the recorded state of the specified grammar file.
+   *
+   * @param grammarFile
+   *        The path to the grammar file relative to its source directory, must
+   *        not be <code>null</code>.
+   * @return The recorded state or <code>null</code> if the grammar file is
+   *         unknown.
+   */
+  public synchronized Entry get (final String grammarFile)
+  {
+    return this.entries.get (_normalize (grammarFile));
+  }
+
+  /**
+   * Records the state of the specified grammar file.
+   *
+   * @param grammarFile
+   *        The path to the grammar file relative to its source directory, must
+   *        not be <code>null</code>.
+   * @param contentDigest
+   *        The digest of the grammar contents, must not be <code>null</code>.
+   * @param optionsDigest
+   *        The digest of the effective tool options, must not be
+   *        <code>null</code>.
+   * @param pluginVersion
+   *        The version of the plugin, must not be <code>null</code>.
+   * @param outputFiles
+   *        The absolute paths to the files generated from the grammar, must
+   *        not be <code>null</code>.
+   * @param generationTime
+   *        The time at which the processing of the grammar started, in
+   *        milliseconds since the epoch.
+   */
+  public synchronized void put (final String grammarFile,
+                                final String contentDigest,
+                                final String optionsDigest,
+                                final String pluginVersion,
+                                final Collection <File> outputFiles,
+                                final long generationTime)
+  {
+    final List <File> files = Collections.unmodifiableList (new ArrayList <> (outputFiles));
+    this.entries.put (_normalize (grammarFile),
+                      new Entry (contentDigest,
+                                 optionsDigest,
+                                 pluginVersion,
+                                 files,
+                                 generationTime,
+                                 Collections.<String, String> emptyMap ()));
+    this.modified = true;
+  }
+
+  /**
+   * Records the state of the custom source files next to a grammar file,
+   * i.e. of the files copied along with the files generated from the grammar.
+   * The state is only recorded if the grammar file has an entry.
+   *
+   * @param grammarFile
+   *        The path to the grammar file relative to its source directory, must
+   *        not be <code>null</code>.
+   * @param customSources
+   *        The state of each custom source file keyed by its file name, must
+   *        not be <code>null</code>.
+   */
+  public synchronized void putCustomSources (final String grammarFile, final Map <String, String> customSources)
+  {
+    final String key = _normalize (grammarFile);
+    final Entry entry = this.entries.get (key);
+    if (entry == null || entry.customSources.equals (customSources))
+      return;
+    this.entries.put (key,
+                      new Entry (entry.contentDigest,
+                                 entry.optionsDigest,
+                                 entry.pluginVersion,
+                                 entry.outputFiles,
+                                 entry.generationTime,
+                                 Collections.unmodifiableMap (new TreeMap <> (customSources))));
+    this.modified = true;
+  }
+
+  /**
+   * Gets the cached header of the specified grammar file. The cached header is
+   * only returned if it was read from a file with the specified state.
+   *
+   * @param grammarFile
+   *        The path to the grammar file relative to its source directory, must
+   *        not be <code>null</code>.
+   * @param size
+   *        The current size of the grammar file in bytes.
+   * @param lastModified
+   *        The current modification time of the grammar file.
+   * @param contentDigest
+   *        The current digest of the grammar contents, may be
+   *        <code>null</code> to rely on size and modification time only. If
+   *        given, size and modification time are ignored.
+   * @return The cached header or <code>null</code> if no header is cached for
+   *         the specified state.
+   */
+  public synchronized GrammarHeader getHeader (final String grammarFile,
+                                               final long size,
+                                               final long lastModified,
+                                               final String contentDigest)
+  {
+    final HeaderEntry entry = this.headers.get (_normalize (grammarFile));
+    if (entry == null)
+      return null;
+    if (contentDigest != null ? !contentDigest.equals (entry.contentDigest)
+                              : entry.size != size || entry.lastModified != lastModified)
+      return null;
+    return entry.header;
+  }
+
+  /**
+   * Caches the header of the specified grammar file.
+   *
+   * @param grammarFile
+   *        The path to the grammar file relative to its source directory, must
+   *        not be <code>null</code>.
+   * @param size
+   *        The size of the grammar file in bytes.
+   * @param lastModified
+   *        The modification time of the grammar file.
+   * @param contentDigest
+   *        The digest of the grammar contents, may be <code>null</code> if
+   *        unknown.
+   * @param header
+   *        The header read from the grammar file, must not be
+   *        <code>null</code>.
+   */
+  public synchronized void putHeader (final String grammarFile,
+                                      final long size,
+                                      final long lastModified,
+                                      final String contentDigest,
+                                      final GrammarHeader header)
+  {
+    this.headers.put (_normalize (grammarFile),
+                      new HeaderEntry (size, lastModified, contentDigest != null ? contentDigest : "", header));
+    this.modified = true;
+  }
+
+  /**
+   * Removes the state of all grammar files except the specified ones, i.e. of
+   * grammar files that have been deleted or are no longer included.
+   *
+   * @param grammarFiles
+   *        The paths to the grammar files to retain relative to their source
+   *        directory, must not be <code>null</code>.
+   */
+  public synchronized void retain (final Collection <String> grammarFiles)
+  {
+    final Collection <String> keys = new ArrayList <> (grammarFiles.size ());
+    for (final String grammarFile : grammarFiles)
+      keys.add (_normalize (grammarFile));
+    if (this.entries.keySet ().retainAll (keys))
+      this.modified = true;
+    if (this.headers.keySet ().retainAll (keys))
+      this.modified = true;
+  }
+
+  private static String _normalize (final String path)
+  {
+    return path.replace ('\\', '/');
+  }
+
+  private String _relativize (final File file)
+  {
+    if (this.baseDirectory == null)
+      return file.getAbsolutePath ();
+    try
+    {
+      return _normalize (this.baseDirectory.toPath ().relativize (file.getAbsoluteFile ().toPath ()).toString ());
+    }
+    catch (final IllegalArgumentException e)
+    {
+      // different roots, e.g. another drive on Windows
+      return file.getAbsolutePath ();
+    }
+  }
+
+  private File _resolve (final String path)
+  {
+    final File file = new File (path);
+    if (file.isAbsolute () || this.baseDirectory == null)
+      return file;
+    return new File (this.baseDirectory, path);
+  }
+}
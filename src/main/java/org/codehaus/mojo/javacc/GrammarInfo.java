@@ -21,8 +21,6 @@ package org.codehaus.mojo.javacc;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.codehaus.plexus.util.FileUtils;
 
@@ -83,6 +81,27 @@ class GrammarInfo
    *         If reading the grammar file failed.
    */
   public GrammarInfo (final File sourceDir, final String inputFile) throws IOException
+  {
+    this (sourceDir, inputFile, null);
+  }
+
+  /**
+   * Creates a new info from the specified grammar file, using an already known
+   * header of the grammar file.
+   *
+   * @param sourceDir
+   *        The absolute path to the base directory in which the grammar file
+   *        resides, must not be <code>null</code>.
+   * @param inputFile
+   *        The path to the grammar file (relative to the source directory),
+   *        must not be <code>null</code>.
+   * @param knownHeader
+   *        The header of the grammar file, may be <code>null</code> to read it
+   *        from the grammar file.
+   * @throws IOException
+   *         If reading the grammar file failed.
+   */
+  public GrammarInfo (final File sourceDir, final String inputFile, final GrammarHeader knownHeader) throws IOException
   {
     if (!sourceDir.isAbsolute ())
     {
@@ -105,13 +124,12 @@ class GrammarInfo
         throw new IllegalArgumentException ("input file is not relative to source directory:" + inputFile);
       }
 
-    // NOTE: JavaCC uses the platform default encoding to read files, so must we
-    final String grammar = FileUtils.fileRead (getGrammarFile ());
-    this.parserPackage = findPackageName (grammar);
+    final GrammarHeader header = knownHeader != null ? knownHeader : GrammarHeader.read (getGrammarFile ());
+    this.parserPackage = header.getPackageName ();
 
     this.parserDirectory = this.parserPackage.replace ('.', File.separatorChar);
 
-    final String name = findParserName (grammar);
+    final String name = header.getParserName ();
     if (name.length () <= 0)
       this.parserName = FileUtils.removeExtension (inFile.getName ());
     else
@@ -123,42 +141,6 @@ class GrammarInfo
       this.parserFile = this.parserName + ".java";
   }
 
-  /**
-   * Extracts the declared package name from the specified grammar file.
-   *
-   * @param grammar
-   *        The contents of the grammar file, must not be <code>null</code>.
-   * @return The declared package name or an empty string if not found.
-   */
-  private String findPackageName (final String grammar)
-  {
-    final String packageDeclaration = "package\\s+([^\\s.;]+(\\.[^\\s.;]+)*)\\s*;";
-    final Matcher matcher = Pattern.compile (packageDeclaration).matcher (grammar);
-    if (matcher.find ())
-    {
-      return matcher.group (1);
-    }
-    return "";
-  }
-
-  /**
-   * Extracts the simple parser name from the specified grammar file.
-   *
-   * @param grammar
-   *        The contents of the grammar file, must not be <code>null</code>.
-   * @return The parser name or an empty string if not found.
-   */
-  private String findParserName (final String grammar)
-  {
-    final String parserBegin = "PARSER_BEGIN\\s*\\(\\s*([^\\s\\)]+)\\s*\\)";
-    final Matcher matcher = Pattern.compile (parserBegin).matcher (grammar);
-    if (matcher.find ())
-    {
-      return matcher.group (1);
-    }
-    return "";
-  }
-
   /**
    * Gets the absolute path to the base directory in which the grammar file
    * resides. Note that this is not necessarily the parent directory of the
@@ -0,0 +1,187 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Runs a task for each grammar file of a mojo execution. Depending on the
+ * configured parallelism, the tasks run concurrently. In that case, the log
+ * output of each task is buffered and emitted in the order of the tasks once
+ * the respective task completed, so the output of the grammars does not
+ * interleave. All tasks are run even if some of them fail.
+ */
+final class GrammarTaskRunner
+{
+  /**
+   * The work done for a single grammar file.
+   */
+  interface Task
+  {
+    /**
+     * Processes the grammar file.
+     *
+     * @param log
+     *        The logger for the output of the grammar, never
+     *        <code>null</code>.
+     * @throws Exception
+     *         If the grammar file could not be processed.
+     */
+    void run (Log log) throws Exception;
+  }
+
+  private GrammarTaskRunner ()
+  {
+    // no instances
+  }
+
+  /**
+   * Gets the effective number of grammar files to process concurrently.
+   *
+   * @param parallelism
+   *        The configured parallelism, may be <code>null</code> or less than
+   *        one to use the number of available processors.
+   * @return The number of grammar files to process concurrently, always
+   *         greater than zero.
+   */
+  static int getEffectiveParallelism (final Integer parallelism)
+  {
+    if (parallelism != null && parallelism.intValue () > 0)
+      return parallelism.intValue ();
+    return Runtime.getRuntime ().availableProcessors ();
+  }
+
+  /**
+   * Runs the specified tasks.
+   *
+   * @param tasks
+   *        The tasks to run, must not be <code>null</code>.
+   * @param parallelism
+   *        The maximum number of tasks to run concurrently. With a value of
+   *        <code>1</code> the tasks run one after another in the calling
+   *        thread and log directly.
+   * @param log
+   *        The logger receiving the output of the tasks, must not be
+   *        <code>null</code>.
+   * @return The failure of each task in the order of the tasks,
+   *         <code>null</code> for the tasks that succeeded. Never
+   *         <code>null</code>.
+   * @throws InterruptedException
+   *         If the calling thread was interrupted while waiting for the
+   *         tasks.
+   */
+  static List <Exception> run (final List <? extends Task> tasks,
+                               final int parallelism,
+                               final Log log) throws InterruptedException
+  {
+    final Exception [] failures = new Exception [tasks.size ()];
+    final int threads = Math.min (parallelism, tasks.size ());
+    if (threads <= 1)
+    {
+      for (int i = 0; i < tasks.size (); i++)
+      {
+        try
+        {
+          tasks.get (i).run (log);
+        }
+        catch (final Exception e)
+        {
+          failures[i] = e;
+        }
+      }
+      return Arrays.asList (failures);
+    }
+
+    log.debug ("Processing " + tasks.size () + " grammars using " + threads + " threads");
+
+    final ExecutorService executor = Executors.newFixedThreadPool (threads);
+    try
+    {
+      final List <BufferedLog> logs = new ArrayList <> (tasks.size ());
+      final List <Future <Void>> results = new ArrayList <> (tasks.size ());
+      for (final Task task : tasks)
+      {
+        final BufferedLog bufferedLog = new BufferedLog (log);
+        logs.add (bufferedLog);
+        results.add (executor.submit ( () -> {
+          task.run (bufferedLog);
+          return null;
+        }));
+      }
+
+      for (int i = 0; i < tasks.size (); i++)
+      {
+        try
+        {
+          results.get (i).get ();
+        }
+        catch (final ExecutionException e)
+        {
+          final Throwable cause = e.getCause ();
+          failures[i] = cause instanceof Exception ? (Exception) cause : e;
+        }
+        finally
+        {
+          logs.get (i).flush ();
+        }
+      }
+    }
+    finally
+    {
+      executor.shutdownNow ();
+    }
+    return Arrays.asList (failures);
+  }
+
+  /**
+   * Describes the failures of several grammar files.
+   *
+   * @param grammarCount
+   *        The total number of grammar files processed.
+   * @param grammarFiles
+   *        The failed grammar files, must not be <code>null</code>.
+   * @param failures
+   *        The failures in the order of the grammar files, must not be
+   *        <code>null</code>.
+   * @return The message listing each failed grammar file, never
+   *         <code>null</code>.
+   */
+  static String getFailureMessage (final int grammarCount,
+                                   final List <File> grammarFiles,
+                                   final List <Exception> failures)
+  {
+    final StringBuilder message = new StringBuilder ();
+    message.append (failures.size ()).append (" of ").append (grammarCount).append (" grammars failed:");
+    for (int i = 0; i < failures.size (); i++)
+    {
+      message.append ("\n  ").append (grammarFiles.get (i)).append (": ").append (failures.get (i).getMessage ());
+    }
+    return message.toString ();
+  }
+}
@@ -0,0 +1,254 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Watches a source directory and its sub directories for changes to grammar
+ * files. Changes are debounced, i.e. a burst of changes (like an editor saving
+ * several files or writing a file in several steps) is reported at once after
+ * the directory has been quiet for a while.
+ */
+final class GrammarWatcher implements Closeable
+{
+  /**
+   * The root of the watched directory tree.
+   */
+  private final Path sourceDirectory;
+
+  /**
+   * The inclusion patterns, normalized to the platform's file separator.
+   */
+  private final String [] includes;
+
+  /**
+   * The exclusion patterns, normalized to the platform's file separator.
+   */
+  private final String [] excludes;
+
+  /**
+   * The time in milliseconds without further changes after which changes are
+   * reported.
+   */
+  private final long debounceMillis;
+
+  private final WatchService watchService;
+
+  /**
+   * The watched directories keyed by their watch key.
+   */
+  private final Map <WatchKey, Path> directories = new HashMap <> ();
+
+  /**
+   * Creates a new watcher and starts watching the source directory.
+   *
+   * @param sourceDirectory
+   *        The directory to watch, must not be <code>null</code>.
+   * @param includes
+   *        The Ant-like inclusion patterns selecting the grammar files, must
+   *        not be <code>null</code>.
+   * @param excludes
+   *        The Ant-like exclusion patterns, may be <code>null</code>.
+   * @param debounceMillis
+   *        The time in milliseconds without further changes after which
+   *        changes are reported.
+   * @throws IOException
+   *         If the source directory could not be watched.
+   */
+  public GrammarWatcher (final File sourceDirectory,
+                         final String [] includes,
+                         final String [] excludes,
+                         final long debounceMillis) throws IOException
+  {
+    this.sourceDirectory = sourceDirectory.getAbsoluteFile ().toPath ();
+    this.includes = _normalizePatterns (includes);
+    this.excludes = _normalizePatterns (excludes);
+    this.debounceMillis = Math.max (0, debounceMillis);
+    this.watchService = FileSystems.getDefault ().newWatchService ();
+    try
+    {
+      _registerTree (this.sourceDirectory);
+    }
+    catch (final IOException e)
+    {
+      this.watchService.close ();
+      throw e;
+    }
+  }
+
+  private static String [] _normalizePatterns (final String [] patterns)
+  {
+    if (patterns == null)
+      return new String [0];
+    final String [] normalized = new String [patterns.length];
+    for (int i = 0; i < patterns.length; i++)
+    {
+      String pattern = patterns[i].trim ().replace ('/', File.separatorChar).replace ('\\', File.separatorChar);
+      if (pattern.endsWith (File.separator))
+        pattern += "**";
+      normalized[i] = pattern;
+    }
+    return normalized;
+  }
+
+  private void _registerTree (final Path root) throws IOException
+  {
+    try (final Stream <Path> paths = Files.walk (root, FileVisitOption.FOLLOW_LINKS))
+    {
+      for (final Path directory : (Iterable <Path>) paths.filter (Files::isDirectory)::iterator)
+      {
+        final WatchKey key = directory.register (this.watchService,
+                                                 StandardWatchEventKinds.ENTRY_CREATE,
+                                                 StandardWatchEventKinds.ENTRY_MODIFY,
+                                                 StandardWatchEventKinds.ENTRY_DELETE);
+        this.directories.put (key, directory);
+      }
+    }
+  }
+
+  /**
+   * Determines whether the specified file is selected by the inclusion and
+   * exclusion patterns.
+   *
+   * @param relativePath
+   *        The path of the file relative to the source directory, must not be
+   *        <code>null</code>.
+   * @return <code>true</code> if the file is a grammar file,
+   *         <code>false</code> otherwise.
+   */
+  boolean isIncluded (final String relativePath)
+  {
+    boolean included = false;
+    for (final String include : this.includes)
+    {
+      if (SelectorUtils.matchPath (include, relativePath, true))
+      {
+        included = true;
+        break;
+      }
+    }
+    if (included)
+    {
+      for (final String exclude : this.excludes)
+      {
+        if (SelectorUtils.matchPath (exclude, relativePath, true))
+          return false;
+      }
+    }
+    return included;
+  }
+
+  /**
+   * Waits for changes to grammar files. Once a change has been observed,
+   * further changes are collected until no change occurred for the debounce
+   * time.
+   *
+   * @return The paths of the changed (created, modified or deleted) grammar
+   *         files relative to the source directory, never empty.
+   * @throws IOException
+   *         If a new sub directory could not be watched.
+   * @throws InterruptedException
+   *         If the calling thread was interrupted while waiting.
+   */
+  public Set <String> awaitChanges () throws IOException, InterruptedException
+  {
+    final Set <String> changes = new TreeSet <> ();
+    while (changes.isEmpty ())
+    {
+      _collect (this.watchService.take (), changes);
+      WatchKey key;
+      while ((key = this.watchService.poll (this.debounceMillis, TimeUnit.MILLISECONDS)) != null)
+        _collect (key, changes);
+    }
+    return changes;
+  }
+
+  private void _collect (final WatchKey key, final Set <String> changes) throws IOException
+  {
+    final Path directory = this.directories.get (key);
+    for (final WatchEvent <?> event : key.pollEvents ())
+    {
+      if (event.kind () == StandardWatchEventKinds.OVERFLOW)
+      {
+        // events were lost, report all grammar files
+        _collectTree (this.sourceDirectory, changes);
+        continue;
+      }
+      if (directory == null)
+        continue;
+      final Path path = directory.resolve ((Path) event.context ());
+      if (event.kind () == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory (path))
+      {
+        // watch the new directory and pick up files created before it was
+        // registered
+        _registerTree (path);
+        _collectTree (path, changes);
+      }
+      else
+        _collectFile (path, changes);
+    }
+    if (!key.reset ())
+      this.directories.remove (key);
+  }
+
+  private void _collectTree (final Path root, final Set <String> changes) throws IOException
+  {
+    try (final Stream <Path> paths = Files.walk (root, FileVisitOption.FOLLOW_LINKS))
+    {
+      for (final Path path : (Iterable <Path>) paths.filter (Files::isRegularFile)::iterator)
+        _collectFile (path, changes);
+    }
+  }
+
+  private void _collectFile (final Path path, final Set <String> changes)
+  {
+    final String relativePath = this.sourceDirectory.relativize (path).toString ();
+    if (isIncluded (relativePath))
+      changes.add (relativePath);
+  }
+
+  /**
+   * Stops watching the source directory.
+   */
+  public void close () throws IOException
+  {
+    this.watchService.close ();
+  }
+}
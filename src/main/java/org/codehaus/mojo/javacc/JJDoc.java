@@ -197,6 +197,9 @@ class JJDoc extends AbstractToolFacade
       }
     }
 
+    if (isIsolated ())
+      return invokeIsolated ("com.helger.pgcc.jjdoc.JJDocMain", "mainProgram", false, args);
+
     LOCK.lock ();
     try
     {
@@ -20,9 +20,13 @@ package org.codehaus.mojo.javacc;
  */
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 import java.util.Set;
@@ -189,6 +193,56 @@ public class JJDocMojo extends AbstractMavenReport
    */
   private boolean oneTable;
 
+  /**
+   * A flag whether to run JJDoc in a class loader of its own. The parser
+   * generator keeps global state in static fields, so invocations in a shared
+   * class loader must be serialized throughout the JVM. If set to
+   * <code>false</code>, JJDoc is run in the plugin class loader one grammar at
+   * a time. Default value is <code>true</code>.
+   *
+   * @parameter property=isolateTools default-value="true"
+   * @since 5.0.1
+   */
+  private boolean isolateTools;
+
+  /**
+   * The maximum number of grammar files to document concurrently. Defaults to
+   * the number of available processors. A value of <code>1</code> documents
+   * the grammar files one after another. Concurrent invocations require
+   * {@link #isolateTools}.
+   *
+   * @parameter property=parallelism
+   * @since 5.0.1
+   */
+  private Integer parallelism;
+
+  /**
+   * The strategy to detect out-of-date documentation files. Supported values
+   * are:
+   * <ul>
+   * <li><code>timestamp</code>: a grammar file is documented if it is newer
+   * than its documentation file.</li>
+   * <li><code>hash</code>: a grammar file is documented if its contents
+   * changed since it was last documented. This is independent of file
+   * modification times, which are unreliable after a checkout.</li>
+   * </ul>
+   * In both modes, a grammar file is also documented if the JJDoc options or
+   * the plugin version changed since it was last documented. Default value is
+   * <code>timestamp</code>.
+   *
+   * @parameter property=staleDetection default-value="timestamp"
+   * @since 5.0.1
+   */
+  private String staleDetection;
+
+  /**
+   * The version of this plugin, recorded in the documentation index.
+   *
+   * @parameter default-value="${plugin.version}"
+   * @readonly
+   */
+  private String pluginVersion;
+
   /**
    * Get the maven project.
    *
@@ -339,6 +393,10 @@ public class JJDocMojo extends AbstractMavenReport
 
     createReportHeader (getBundle (locale), sink);
 
+    final List <File> reportSourceDirs = new ArrayList <> ();
+    final List <GrammarInfo> reportGrammars = new ArrayList <> ();
+    final List <String> reportPaths = new ArrayList <> ();
+
     final File [] sourceDirs = getSourceDirectories ();
     for (final File sourceDir : sourceDirs)
     {
@@ -352,35 +410,225 @@ public class JJDocMojo extends AbstractMavenReport
         Arrays.sort (grammarInfos, GrammarInfoComparator.getInstance ());
         for (final GrammarInfo grammarInfo : grammarInfos)
         {
-          final File grammarFile = grammarInfo.getGrammarFile ();
-
           String relativeOutputFileName = grammarInfo.getRelativeGrammarFile ();
           relativeOutputFileName = relativeOutputFileName.replaceAll ("(?i)\\.(jj|jjt|jtb)$", getOutputFileExtension ());
 
-          final File jjdocOutputFile = new File (getJJDocOutputDirectory (), relativeOutputFileName);
-
-          final JJDoc jjdoc = newJJDoc ();
-          jjdoc.setInputFile (grammarFile);
-          jjdoc.setOutputFile (jjdocOutputFile);
-          try
-          {
-            jjdoc.run ();
-          }
-          catch (final Exception e)
-          {
-            throw new MavenReportException ("Failed to create BNF documentation: " + grammarFile, e);
-          }
-
-          createReportLink (sink, sourceDir, grammarFile, relativeOutputFileName);
+          reportSourceDirs.add (sourceDir);
+          reportGrammars.add (grammarInfo);
+          reportPaths.add (relativeOutputFileName);
         }
       }
     }
 
+    _generateDocumentation (reportGrammars, reportPaths);
+
+    // the index lists the grammars in the sorted order regardless of the order
+    // in which their documentation has been generated
+    for (int i = 0; i < reportGrammars.size (); i++)
+    {
+      createReportLink (sink, reportSourceDirs.get (i), reportGrammars.get (i).getGrammarFile (), reportPaths.get (i));
+    }
+
     createReportFooter (sink);
     sink.flush ();
     sink.close ();
   }
 
+  /**
+   * Runs JJDoc for all grammar files whose documentation is out of date, i.e.
+   * generated from a different version of the grammar file, according to
+   * {@link #staleDetection}, or with different options. Depending on the
+   * configured parallelism, the grammar files are documented concurrently with
+   * the log output of each grammar being buffered and emitted in the order of
+   * the grammar files. All grammar files are documented even if some of them
+   * fail.
+   *
+   * @param grammarInfos
+   *        The grammar infos describing the grammar files to document, must
+   *        not be <code>null</code>.
+   * @param outputPaths
+   *        The paths to the documentation files relative to the JJDoc output
+   *        directory, must not be <code>null</code>.
+   * @throws MavenReportException
+   *         If JJDoc failed for any grammar file. The failures of further
+   *         grammar files are attached as suppressed exceptions.
+   */
+  private void _generateDocumentation (final List <GrammarInfo> grammarInfos,
+                                       final List <String> outputPaths) throws MavenReportException
+  {
+    final boolean hashStaleDetection = _isHashStaleDetection ();
+    final GrammarIndex index = GrammarIndex.load (_getIndexFile (), null);
+    final String optionsDigest = DigestUtils.digest (_getOptionsFingerprint ());
+
+    final List <GrammarTaskRunner.Task> tasks = new ArrayList <> ();
+    final List <File> staleGrammars = new ArrayList <> ();
+    for (int i = 0; i < grammarInfos.size (); i++)
+    {
+      final File grammarFile = grammarInfos.get (i).getGrammarFile ();
+      final String outputPath = outputPaths.get (i);
+      final File outputFile = new File (getJJDocOutputDirectory (), outputPath);
+      final GrammarIndex.Entry entry = index.get (outputPath);
+      final String contentDigest = _getContentDigest (grammarFile);
+      if (entry != null &&
+          entry.hasOptions (optionsDigest, _getPluginVersion ()) &&
+          entry.getOutputFiles ().contains (outputFile.getAbsoluteFile ()) &&
+          outputFile.exists () &&
+          (hashStaleDetection ? entry.hasContent (contentDigest)
+                              : outputFile.lastModified () >= grammarFile.lastModified ()))
+      {
+        getLog ().debug ("Skipping up-to-date documentation: " + outputFile);
+        continue;
+      }
+
+      staleGrammars.add (grammarFile);
+      tasks.add (log -> {
+        final long generationTime = System.currentTimeMillis ();
+        final JJDoc jjdoc = newJJDoc ();
+        jjdoc.setLog (log);
+        jjdoc.setInputFile (grammarFile);
+        jjdoc.setOutputFile (outputFile);
+        try
+        {
+          jjdoc.run ();
+        }
+        catch (final Exception e)
+        {
+          throw new MavenReportException ("Failed to create BNF documentation: " + grammarFile, e);
+        }
+        index.put (outputPath,
+                   contentDigest,
+                   optionsDigest,
+                   _getPluginVersion (),
+                   Collections.singletonList (outputFile.getAbsoluteFile ()),
+                   generationTime);
+      });
+    }
+    getLog ().debug ("Documenting " + tasks.size () + " of " + grammarInfos.size () + " grammars");
+
+    final List <Exception> results;
+    try
+    {
+      results = GrammarTaskRunner.run (tasks, GrammarTaskRunner.getEffectiveParallelism (this.parallelism), getLog ());
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread ().interrupt ();
+      throw new MavenReportException ("Interrupted while creating BNF documentation", e);
+    }
+
+    index.retain (outputPaths);
+    try
+    {
+      index.save ();
+    }
+    catch (final IOException e)
+    {
+      getLog ().warn ("Failed to save documentation index: " + _getIndexFile (), e);
+    }
+
+    final List <Exception> failures = new ArrayList <> ();
+    final List <File> failedGrammars = new ArrayList <> ();
+    for (int i = 0; i < tasks.size (); i++)
+    {
+      if (results.get (i) != null)
+      {
+        failures.add (results.get (i));
+        failedGrammars.add (staleGrammars.get (i));
+      }
+    }
+    if (failures.size () == 1)
+    {
+      if (failures.get (0) instanceof MavenReportException)
+        throw (MavenReportException) failures.get (0);
+      throw new MavenReportException ("Failed to create BNF documentation: " + failedGrammars.get (0), failures.get (0));
+    }
+    if (failures.size () > 1)
+    {
+      final MavenReportException ex = new MavenReportException (GrammarTaskRunner.getFailureMessage (tasks.size (),
+                                                                                                     failedGrammars,
+                                                                                                     failures),
+                                                                failures.get (0));
+      for (int i = 1; i < failures.size (); i++)
+        ex.addSuppressed (failures.get (i));
+      throw ex;
+    }
+  }
+
+  /**
+   * Determines whether out-of-date documentation is detected by the contents
+   * of the grammar files.
+   *
+   * @return <code>true</code> for content based detection, <code>false</code>
+   *         for timestamp checking.
+   * @throws MavenReportException
+   *         If the configured strategy is not supported.
+   */
+  private boolean _isHashStaleDetection () throws MavenReportException
+  {
+    if (this.staleDetection == null || "timestamp".equals (this.staleDetection))
+      return false;
+    if (!"hash".equals (this.staleDetection))
+      throw new MavenReportException ("Unsupported stale detection: " + this.staleDetection);
+    return true;
+  }
+
+  /**
+   * Gets the digest of a grammar file recorded in the documentation index.
+   *
+   * @param grammarFile
+   *        The grammar file, must not be <code>null</code>.
+   * @return The digest or an empty string if the grammar file could not be
+   *         read, never <code>null</code>.
+   */
+  private String _getContentDigest (final File grammarFile)
+  {
+    try
+    {
+      return DigestUtils.digest (grammarFile);
+    }
+    catch (final IOException e)
+    {
+      getLog ().debug ("Failed to digest grammar file: " + grammarFile, e);
+      return "";
+    }
+  }
+
+  /**
+   * Gets the file of the documentation index which records the options each
+   * documentation file has been generated with. Every JJDoc output directory
+   * has an index of its own.
+   *
+   * @return The absolute path to the index file, never <code>null</code>.
+   */
+  private File _getIndexFile ()
+  {
+    final String key = getJJDocOutputDirectory ().getAbsolutePath ();
+    final String name = getClass ().getSimpleName () + "-" + DigestUtils.digest (key).substring (0, 16) + ".idx";
+    return new File (new File (this.project.getBuild ().getDirectory (), "javacc-state"), name);
+  }
+
+  /**
+   * Gets a string representation of the options affecting the generated
+   * documentation.
+   *
+   * @return The options fingerprint, never <code>null</code>.
+   */
+  private String _getOptionsFingerprint ()
+  {
+    return Arrays.asList (this.grammarEncoding,
+                          this.outputEncoding,
+                          this.cssHref,
+                          this.text,
+                          this.bnf,
+                          Boolean.valueOf (this.oneTable))
+                 .toString ();
+  }
+
+  private String _getPluginVersion ()
+  {
+    return this.pluginVersion != null ? this.pluginVersion : "";
+  }
+
   /**
    * The JJDoc output file will have a <code>.html</code> or <code>.txt</code>
    * extension depending on the value of the parameters {@link #text} and
@@ -489,6 +737,7 @@ public class JJDocMojo extends AbstractMavenReport
   {
     final JJDoc jjdoc = new JJDoc ();
     jjdoc.setLog (getLog ());
+    jjdoc.setIsolated (this.isolateTools);
     jjdoc.setGrammarEncoding (this.grammarEncoding);
     jjdoc.setOutputEncoding (this.outputEncoding);
     jjdoc.setCssHref (this.cssHref);
@@ -422,6 +422,9 @@ class JJTree extends AbstractToolFacade
       this.outputDirectory.mkdirs ();
     }
 
+    if (isIsolated ())
+      return invokeIsolated ("com.helger.pgcc.jjtree.JJTree", "main", true, args);
+
     LOCK.lock ();
     try
     {
@@ -289,6 +289,17 @@ public class JJTreeJavaCCMojo extends AbstractJavaCCMojo
     return this.interimDirectory;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected String getOptionsFingerprint (final GrammarInfo grammarInfo)
+  {
+    final JJTree jjtree = newJJTree ();
+    jjtree.setNodePackage (grammarInfo.resolvePackageName (this.nodePackage));
+    return jjtree.toString () + super.getOptionsFingerprint (grammarInfo);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -319,18 +330,20 @@ public class JJTreeJavaCCMojo extends AbstractJavaCCMojo
     // setup output directory of tree node files (*.java) generated by JJTree
     final String nodePackageName = grammarInfo.resolvePackageName (this.nodePackage);
 
-    // generate final grammar file
-    final JJTree jjtree = newJJTree ();
-    jjtree.setInputFile (jjtFile);
-    jjtree.setOutputDirectory (jjDirectory);
-    jjtree.setNodePackage (nodePackageName);
-    jjtree.run ();
-
-    // generate parser files
-    final JavaCC javacc = newJavaCC ();
-    javacc.setInputFile (jjtree.getOutputFile ());
-    javacc.setOutputDirectory (parserDirectory);
-    javacc.run ();
+    generate (grammarInfo, tempDirectory, () -> {
+      // generate final grammar file
+      final JJTree jjtree = newJJTree ();
+      jjtree.setInputFile (jjtFile);
+      jjtree.setOutputDirectory (jjDirectory);
+      jjtree.setNodePackage (nodePackageName);
+      jjtree.run ();
+
+      // generate parser files
+      final JavaCC javacc = newJavaCC ();
+      javacc.setInputFile (jjtree.getOutputFile ());
+      javacc.setOutputDirectory (parserDirectory);
+      javacc.run ();
+    });
 
     // copy output from JJTree
     copyGrammarOutput (getInterimDirectory (),
@@ -364,6 +377,8 @@ public class JJTreeJavaCCMojo extends AbstractJavaCCMojo
   {
     final JJTree jjtree = new JJTree ();
     jjtree.setLog (getLog ());
+    jjtree.setTimings (getTimings ());
+    jjtree.setIsolated (isIsolateTools ());
     jjtree.setGrammarEncoding (getGrammarEncoding ());
     jjtree.setOutputEncoding (getOutputEncoding ());
     jjtree.setJdkVersion (getJdkVersion ());
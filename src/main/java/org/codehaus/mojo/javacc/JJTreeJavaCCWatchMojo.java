@@ -0,0 +1,62 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Processes the decorated grammar files (<code>*.jjt</code>) like the goal
+ * <code>jjtree-javacc</code> and keeps watching the source directory,
+ * regenerating the parser whenever a grammar file is created or modified.
+ * Only the grammar files that changed are processed, without the startup
+ * cost of a Maven build. This goal accepts the same parameters as the goal
+ * <code>jjtree-javacc</code> and runs until the build is interrupted.
+ *
+ * @goal jjtree-javacc-watch
+ * @since 5.0.1
+ */
+public class JJTreeJavaCCWatchMojo extends JJTreeJavaCCMojo
+{
+  /**
+   * The time in milliseconds to wait for further changes before the changed
+   * grammar files are processed. A burst of changes, e.g. saving several
+   * files at once, is thereby processed at once. Default value is
+   * <code>200</code>.
+   *
+   * @parameter property=watchDebounce default-value="200"
+   */
+  private long watchDebounce;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected boolean isWatch ()
+  {
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected long getWatchDebounce ()
+  {
+    return this.watchDebounce;
+  }
+}
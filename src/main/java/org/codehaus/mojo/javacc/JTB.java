@@ -21,6 +21,7 @@ package org.codehaus.mojo.javacc;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -124,6 +125,38 @@ class JTB extends AbstractToolFacade
    */
   private Boolean printer;
 
+  /**
+   * The pool of worker JVMs to run JTB in instead of a fresh JVM, may be
+   * <code>null</code>.
+   */
+  private JTBWorkerPool workerPool;
+
+  /**
+   * The dedicated worker JVM to run JTB in, may be <code>null</code>.
+   */
+  private JTBWorker worker;
+
+  /**
+   * The executable of the forked JVM, may be <code>null</code>.
+   */
+  private String jvmExecutable;
+
+  /**
+   * The options of the forked JVM, may be <code>null</code>.
+   */
+  private String [] jvmArgs;
+
+  /**
+   * The directory for class data sharing archives, may be <code>null</code>.
+   */
+  private File sharedArchiveDirectory;
+
+  /**
+   * The directory for the files passing the class path to the forked JVM, may
+   * be <code>null</code>.
+   */
+  private File classPathFileDirectory;
+
   public JTB ()
   {}
 
@@ -407,6 +440,83 @@ class JTB extends AbstractToolFacade
     this.printer = value;
   }
 
+  /**
+   * Sets the pool of long-lived worker JVMs to run JTB in. The workers are
+   * reused for later invocations. If a worker crashes, JTB is run in a fresh
+   * JVM.
+   *
+   * @param value
+   *        The pool, may be <code>null</code> to fork a fresh JVM for this
+   *        invocation.
+   */
+  public void setWorkerPool (final JTBWorkerPool value)
+  {
+    this.workerPool = value;
+  }
+
+  /**
+   * Sets a dedicated worker JVM to run JTB in. The worker is shared by all
+   * invocations it is passed to, which are serialized. Unlike the pooled
+   * workers, the worker is not released after the invocation. If the worker
+   * crashes, JTB is run in a fresh JVM.
+   *
+   * @param value
+   *        The worker, may be <code>null</code> to not use a dedicated worker.
+   */
+  public void setWorker (final JTBWorker value)
+  {
+    this.worker = value;
+  }
+
+  /**
+   * Sets the executable of the JVM forked to run JTB.
+   *
+   * @param value
+   *        The path to the JVM executable, may be <code>null</code> to use the
+   *        executable of the current JVM.
+   */
+  public void setJvm (final String value)
+  {
+    this.jvmExecutable = value;
+  }
+
+  /**
+   * Sets the options of the JVM forked to run JTB, e.g. <code>-Xmx1g</code>.
+   *
+   * @param value
+   *        The JVM options, may be <code>null</code>.
+   */
+  public void setJvmArgs (final String [] value)
+  {
+    this.jvmArgs = value;
+  }
+
+  /**
+   * Sets the directory for the class data sharing archives of the JVM forked to
+   * run JTB.
+   *
+   * @param value
+   *        The directory, may be <code>null</code> to not use class data
+   *        sharing archives.
+   */
+  public void setSharedArchiveDirectory (final File value)
+  {
+    this.sharedArchiveDirectory = value;
+  }
+
+  /**
+   * Sets the directory for the file passing the class path to the JVM forked
+   * to run JTB.
+   *
+   * @param value
+   *        The directory, may be <code>null</code> to pass the class path on
+   *        the command line.
+   */
+  public void setClassPathFileDirectory (final File value)
+  {
+    this.classPathFileDirectory = value;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -424,25 +534,119 @@ class JTB extends AbstractToolFacade
       }
     }
 
-    // fork JTB because of its lack to re-initialize its static parser
-    final ForkedJvm jvm = new ForkedJvmPGCC ();
-    jvm.setMainClass (EDU.purdue.jtb.JTB.class);
-    jvm.addArguments (args);
-    jvm.setSystemOut (new MojoLogStreamConsumer (false));
-    jvm.setSystemErr (new MojoLogStreamConsumer (true));
-    if (getLog ().isDebugEnabled ())
+    if (this.worker != null)
     {
-      getLog ().debug ("Forking: " + jvm);
+      synchronized (this.worker)
+      {
+        try
+        {
+          final int exitcode = this.worker.run (args, new MojoLogStreamConsumer (false), new MojoLogStreamConsumer (true));
+          moveJavaFiles (this.worker.getWorkingDirectory ());
+          return ESuccess.valueOf (exitcode == 0);
+        }
+        catch (final IOException e)
+        {
+          getLog ().debug ("JTB worker failed, running JTB in a fresh JVM: " + e.getMessage ());
+        }
+      }
+      return _fork (args);
     }
-    final int exitcode = jvm.run ();
-    if (getLog ().isDebugEnabled ())
+
+    final JTBWorkerPool pool = this.workerPool;
+    if (pool != null && pool.isSupported ())
     {
-      getLog ().debug ("Finished forking");
+      JTBWorker worker = null;
+      int exitcode = -1;
+      try
+      {
+        worker = pool.acquire ();
+        exitcode = worker.run (args, new MojoLogStreamConsumer (false), new MojoLogStreamConsumer (true));
+      }
+      catch (final IOException e)
+      {
+        getLog ().debug ("JTB worker failed, running JTB in a fresh JVM: " + e.getMessage ());
+        if (worker != null)
+          worker.close ();
+        worker = null;
+      }
+
+      if (worker != null)
+      {
+        try
+        {
+          moveJavaFiles (worker.getWorkingDirectory ());
+        }
+        catch (final Exception e)
+        {
+          // files left behind in the working directory would be mistaken for
+          // output of the next invocation
+          worker.close ();
+          throw e;
+        }
+        pool.release (worker);
+        return ESuccess.valueOf (exitcode == 0);
+      }
+
+      final ESuccess result = _fork (args);
+      if (result.isSuccess ())
+      {
+        getLog ().debug ("JTB worker is not usable, running JTB in a fresh JVM from now on");
+        pool.setUnsupported ();
+      }
+      return result;
     }
 
-    moveJavaFiles ();
+    return _fork (args);
+  }
 
-    return ESuccess.valueOf (exitcode == 0);
+  /**
+   * Runs JTB in a fresh JVM, using a working directory of its own.
+   *
+   * @param args
+   *        The command line arguments for JTB, must not be <code>null</code>.
+   * @return The result of JTB, never <code>null</code>.
+   * @throws Exception
+   *         If the JVM could not be forked.
+   */
+  private ESuccess _fork (final String [] args) throws Exception
+  {
+    // JTB writes the syntax tree and visitor files relative to its working
+    // directory, so concurrent invocations must not share it
+    File workingDirectory = null;
+    if (this.outputDirectory != null)
+      workingDirectory = Files.createTempDirectory (this.outputDirectory.toPath (), "jtb").toFile ();
+    try
+    {
+      // fork JTB because of its lack to re-initialize its static parser
+      final ForkedJvm jvm = new ForkedJvmPGCC ();
+      jvm.setExecutable (this.jvmExecutable);
+      jvm.addJvmArguments (this.jvmArgs);
+      jvm.setSharedArchiveDirectory (this.sharedArchiveDirectory);
+      jvm.setClassPathFileDirectory (this.classPathFileDirectory);
+      jvm.setMainClass (EDU.purdue.jtb.JTB.class);
+      jvm.addArguments (args);
+      jvm.setWorkingDirectory (workingDirectory);
+      jvm.setSystemOut (new MojoLogStreamConsumer (false));
+      jvm.setSystemErr (new MojoLogStreamConsumer (true));
+      if (getLog ().isDebugEnabled ())
+      {
+        getLog ().debug ("Forking: " + jvm);
+      }
+      final int exitcode = jvm.run ();
+      if (getLog ().isDebugEnabled ())
+      {
+        getLog ().debug ("Finished forking");
+      }
+
+      moveJavaFiles (workingDirectory != null ? workingDirectory : new File ("").getAbsoluteFile ());
+
+      return ESuccess.valueOf (exitcode == 0);
+    }
+    finally
+    {
+      if (workingDirectory != null)
+        FileUtils.deleteDirectory (workingDirectory);
+    }
   }
 
   /**
@@ -544,16 +748,19 @@ class JTB extends AbstractToolFacade
    * represents the parent package of the configured node/visitor packages which
    * does not meet our needs.
    *
+   * @param workingDirectory
+   *        The absolute path to the working directory JTB was run in, must not
+   *        be <code>null</code>.
    * @throws IOException
    *         If the move failed.
    */
-  private void moveJavaFiles () throws IOException
+  private void moveJavaFiles (final File workingDirectory) throws IOException
   {
-    final File nodeSrcDir = new File (getLastPackageName (getEffectiveNodePackageName ())).getAbsoluteFile ();
+    final File nodeSrcDir = new File (workingDirectory, getLastPackageName (getEffectiveNodePackageName ()));
     final File nodeDstDir = getEffectiveNodeDirectory ();
     moveDirectory (nodeSrcDir, nodeDstDir);
 
-    final File visitorSrcDir = new File (getLastPackageName (getEffectiveVisitorPackageName ())).getAbsoluteFile ();
+    final File visitorSrcDir = new File (workingDirectory, getLastPackageName (getEffectiveVisitorPackageName ()));
     final File visitorDstDir = getEffectiveVisitorDirectory ();
     moveDirectory (visitorSrcDir, visitorDstDir);
   }
@@ -20,9 +20,14 @@ package org.codehaus.mojo.javacc;
  */
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.StringUtils;
 
 /**
  * Preprocesses ordinary grammar files (<code>*.jtb</code>) with JTB and passes
@@ -41,6 +46,12 @@ import org.apache.maven.plugin.MojoFailureException;
  */
 public class JTBJavaCCMojo extends AbstractJavaCCMojo
 {
+  /**
+   * The options for the JVM forked to run JTB if {@link #jvmArgs} is not
+   * specified, favoring fast startup over peak performance.
+   */
+  private static final String [] DEFAULT_JVM_ARGS = { "-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC", "-Xshare:auto" };
+
   /**
    * This option is short for <code>nodePackageName</code> =
    * <code>&lt;packageName&gt;.syntaxtree</code> and
@@ -207,6 +218,121 @@ public class JTBJavaCCMojo extends AbstractJavaCCMojo
    */
   private int staleMillis;
 
+  /**
+   * Controls how the JVM running JTB is forked. JTB cannot re-initialize its
+   * static parser and therefore never runs within the Maven JVM. Supported
+   * values are:
+   * <ul>
+   * <li><code>worker</code>: JTB runs in worker JVMs that are started once
+   * and reused for all grammars of the execution, one per grammar processed
+   * concurrently. A crashed worker is replaced by a fresh JVM. The workers
+   * terminate once all grammars have been processed.</li>
+   * <li><code>batch</code>: a single JVM is forked per execution and
+   * processes all grammars in sequence, each in a fresh class loader. The JVM
+   * terminates once all grammars have been processed. JTB is run for one
+   * grammar at a time even if <code>parallelism</code> allows several grammars to
+   * be processed concurrently, use <code>worker</code> to run JTB in
+   * parallel.</li>
+   * <li><code>perGrammar</code>: a fresh JVM is forked for every grammar.</li>
+   * </ul>
+   * Default value is <code>worker</code>.
+   *
+   * @parameter property=jtbForkMode default-value="worker"
+   * @since 5.0.1
+   */
+  private String forkMode;
+
+  /**
+   * The options for the JVM forked to run JTB, e.g. <code>-Xss4m</code>. If
+   * not specified, a preset tuned for the short-lived JVMs running JTB is used
+   * which limits the JIT to the C1 compiler, uses the serial garbage collector
+   * and enables class data sharing where available. Specify an empty list to
+   * run the JVM with its defaults.
+   *
+   * @parameter
+   * @since 5.0.1
+   */
+  private String [] jvmArgs;
+
+  /**
+   * The maximum heap size of the JVM forked to run JTB, e.g.
+   * <code>512m</code>. Large grammars may need more than the default heap of
+   * the JVM.
+   *
+   * @parameter property=jtbMaxmem
+   * @since 5.0.1
+   */
+  private String maxmem;
+
+  /**
+   * The path to the executable of the JVM forked to run JTB. Defaults to the
+   * executable of the JVM running Maven.
+   *
+   * @parameter property=jtbJvm
+   * @since 5.0.1
+   */
+  private String jvm;
+
+  /**
+   * Whether the JVMs forked per grammar to run JTB share the classes they load
+   * via an application class data sharing archive. The archive is created by
+   * the first forked JVM and speeds up the startup of all later ones. This
+   * only applies to the fork mode <code>perGrammar</code> and to the fresh
+   * JVMs replacing a crashed worker; the long-lived JVMs of the other fork
+   * modes load JTB into a class loader of their own for every grammar, which
+   * an archive does not cover. This requires Java 13 or higher and is silently
+   * skipped otherwise or if a custom {@link #jvm} is configured.
+   *
+   * @parameter property=jtbClassDataSharing default-value="true"
+   * @since 5.0.1
+   */
+  private boolean classDataSharing;
+
+  /**
+   * The directory for the class data sharing archives of the JVMs forked to run
+   * JTB. Archives are keyed by the JVM, its options and class path.
+   *
+   * @parameter property=jtbClassDataSharingDirectory
+   *            default-value="${project.build.directory}/javacc-cds"
+   * @since 5.0.1
+   */
+  private File classDataSharingDirectory;
+
+  /**
+   * The directory for the files passing the class path to the JVMs forked to
+   * run JTB. The directory is private to the build, unlike the temporary
+   * directory shared by all users of the machine.
+   *
+   * @parameter default-value="${project.build.directory}/javacc-classpath"
+   * @readonly
+   */
+  private File classPathFileDirectory;
+
+  /**
+   * The worker JVMs of this execution if the fork mode is <code>worker</code>,
+   * <code>null</code> until they are needed. Guarded by
+   * {@link #batchWorkerLock}.
+   */
+  private JTBWorkerPool workerPool;
+
+  /**
+   * The JVM processing all grammars of this execution if the fork mode is
+   * <code>batch</code>, <code>null</code> until it is needed. Guarded by
+   * {@link #batchWorkerLock}.
+   */
+  private JTBWorker batchWorker;
+
+  /**
+   * Whether the JVM for the fork mode <code>batch</code> failed to start.
+   * Guarded by {@link #batchWorkerLock}.
+   */
+  private boolean batchWorkerFailed;
+
+  /**
+   * The lock guarding {@link #batchWorker} and {@link #workerPool}.
+   */
+  private final Object batchWorkerLock = new Object ();
+
   /**
    * {@inheritDoc}
    */
@@ -266,6 +392,18 @@ public class JTBJavaCCMojo extends AbstractJavaCCMojo
     return this.interimDirectory;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected String getOptionsFingerprint (final GrammarInfo grammarInfo)
+  {
+    final JTB jtb = newJTB ();
+    jtb.setNodePackageName (grammarInfo.resolvePackageName (getNodePackageName ()));
+    jtb.setVisitorPackageName (grammarInfo.resolvePackageName (getVisitorPackageName ()));
+    return jtb.toString () + super.getOptionsFingerprint (grammarInfo);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -300,21 +438,29 @@ public class JTBJavaCCMojo extends AbstractJavaCCMojo
     // setup output directory of parser file (*.java) generated by JavaCC
     final File parserDirectory = new File (tempDirectory, "parser");
 
-    // generate final grammar file and the node/visitor files
-    final JTB jtb = newJTB ();
-    jtb.setInputFile (jtbFile);
-    jtb.setOutputDirectory (jjDirectory);
-    jtb.setNodeDirectory (nodeDirectory);
-    jtb.setVisitorDirectory (visitorDirectory);
-    jtb.setNodePackageName (nodePackage);
-    jtb.setVisitorPackageName (visitorPackage);
-    jtb.run ();
-
-    // generate parser files
-    final JavaCC javacc = newJavaCC ();
-    javacc.setInputFile (jtb.getOutputFile ());
-    javacc.setOutputDirectory (parserDirectory);
-    javacc.run ();
+    final boolean batch = _isBatch ();
+    final boolean useWorker = _isUseWorker ();
+    generate (grammarInfo, tempDirectory, () -> {
+      // generate final grammar file and the node/visitor files
+      final JTB jtb = newJTB ();
+      if (useWorker)
+        jtb.setWorkerPool (_getWorkerPool ());
+      if (batch)
+        jtb.setWorker (_getBatchWorker ());
+      jtb.setInputFile (jtbFile);
+      jtb.setOutputDirectory (jjDirectory);
+      jtb.setNodeDirectory (nodeDirectory);
+      jtb.setVisitorDirectory (visitorDirectory);
+      jtb.setNodePackageName (nodePackage);
+      jtb.setVisitorPackageName (visitorPackage);
+      jtb.run ();
+
+      // generate parser files
+      final JavaCC javacc = newJavaCC ();
+      javacc.setInputFile (jtb.getOutputFile ());
+      javacc.setOutputDirectory (parserDirectory);
+      javacc.run ();
+    });
 
     // copy tree node files from JTB
     copyGrammarOutput (getInterimDirectory (), nodePackage, nodeDirectory, "!Node*");
@@ -382,6 +528,119 @@ public class JTBJavaCCMojo extends AbstractJavaCCMojo
       }
   }
 
+  /**
+   * Determines whether JTB runs in reusable worker JVMs.
+   *
+   * @return <code>true</code> if JTB runs in worker JVMs, <code>false</code>
+   *         if a fresh JVM is forked for every grammar.
+   * @throws MojoExecutionException
+   *         If the configured fork mode is not supported.
+   */
+  private boolean _isUseWorker () throws MojoExecutionException
+  {
+    if (this.forkMode == null || "worker".equals (this.forkMode))
+      return true;
+    if ("perGrammar".equals (this.forkMode) || "batch".equals (this.forkMode))
+      return false;
+    throw new MojoExecutionException ("Unsupported JTB fork mode: " + this.forkMode);
+  }
+
+  private boolean _isBatch ()
+  {
+    return "batch".equals (this.forkMode);
+  }
+
+  /**
+   * Gets the JVM processing all grammars of this execution, starting it on
+   * first use.
+   *
+   * @return The worker or <code>null</code> if it could not be started, in
+   *         which case JTB is forked per grammar.
+   */
+  private JTBWorker _getBatchWorker ()
+  {
+    synchronized (this.batchWorkerLock)
+    {
+      if (this.batchWorker == null && !this.batchWorkerFailed)
+      {
+        try
+        {
+          this.batchWorker = JTBWorker.start (this.jvm,
+                                              _getJvmArgs (),
+                                              this.classPathFileDirectory,
+                                              getTempDirectory ());
+        }
+        catch (final IOException e)
+        {
+          getLog ().warn ("Failed to start JTB batch JVM, forking per grammar: " + e.getMessage ());
+          this.batchWorkerFailed = true;
+        }
+      }
+      return this.batchWorker;
+    }
+  }
+
+  /**
+   * Gets the worker JVMs of this execution, creating the pool on first use.
+   * The working directories of the workers reside in the scratch area of this
+   * execution.
+   *
+   * @return The pool, never <code>null</code>.
+   */
+  private JTBWorkerPool _getWorkerPool ()
+  {
+    synchronized (this.batchWorkerLock)
+    {
+      if (this.workerPool == null)
+        this.workerPool = new JTBWorkerPool (this.jvm,
+                                             _getJvmArgs (),
+                                             this.classPathFileDirectory,
+                                             getTempDirectory ());
+      return this.workerPool;
+    }
+  }
+
+  /**
+   * Gets the effective options for the JVM forked to run JTB.
+   *
+   * @return The JVM options, never <code>null</code>.
+   */
+  private String [] _getJvmArgs ()
+  {
+    final List <String> args = new ArrayList <> ();
+    args.addAll (Arrays.asList (this.jvmArgs != null ? this.jvmArgs : DEFAULT_JVM_ARGS));
+    if (StringUtils.isNotEmpty (this.maxmem))
+      args.add ("-Xmx" + this.maxmem);
+    return args.toArray (new String [args.size ()]);
+  }
+
+  private File _getSharedArchiveDirectory ()
+  {
+    return this.classDataSharing ? this.classDataSharingDirectory : null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void afterProcessGrammars ()
+  {
+    synchronized (this.batchWorkerLock)
+    {
+      if (this.batchWorker != null)
+      {
+        this.batchWorker.close ();
+        this.batchWorker = null;
+      }
+      this.batchWorkerFailed = false;
+      if (this.workerPool != null)
+      {
+        this.workerPool.close ();
+        this.workerPool = null;
+      }
+    }
+  }
+
   /**
    * Creates a new facade to invoke JTB. Most options for the invocation are
    * derived from the current values of the corresponding mojo parameters. The
@@ -394,6 +653,7 @@ public class JTBJavaCCMojo extends AbstractJavaCCMojo
   {
     final JTB jtb = new JTB ();
     jtb.setLog (getLog ());
+    jtb.setTimings (getTimings ());
     jtb.setDescriptiveFieldNames (this.descriptiveFieldNames);
     jtb.setJavadocFriendlyComments (this.javadocFriendlyComments);
     jtb.setNodeParentClass (this.nodeParentClass);
@@ -402,6 +662,10 @@ public class JTBJavaCCMojo extends AbstractJavaCCMojo
     jtb.setScheme (this.scheme);
     jtb.setSpecialTokens (this.specialTokens);
     jtb.setSupressErrorChecking (this.supressErrorChecking);
+    jtb.setJvm (this.jvm);
+    jtb.setJvmArgs (_getJvmArgs ());
+    jtb.setSharedArchiveDirectory (_getSharedArchiveDirectory ());
+    jtb.setClassPathFileDirectory (this.classPathFileDirectory);
     return jtb;
   }
 }
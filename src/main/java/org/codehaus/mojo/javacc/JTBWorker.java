@@ -0,0 +1,281 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * A long-lived JVM running {@link JTBWorkerMain} which processes JTB requests
+ * one at a time. Starting a JVM per grammar is expensive, so workers are
+ * reused for the grammars of a mojo execution, see {@link JTBWorkerPool}.
+ * Every worker has a working directory of its own because JTB writes the
+ * syntax tree and visitor files relative to the current working directory.
+ */
+final class JTBWorker
+{
+  /**
+   * The forked JVM.
+   */
+  private final Process process;
+
+  /**
+   * The writer for requests.
+   */
+  private final PrintWriter requests;
+
+  /**
+   * The reader for responses.
+   */
+  private final BufferedReader responses;
+
+  /**
+   * The working directory of the forked JVM.
+   */
+  private final File workingDirectory;
+
+  /**
+   * Whether the worker can still process requests.
+   */
+  private boolean alive = true;
+
+  /**
+   * The lines the JVM wrote to <code>System.err</code> which have not been
+   * passed on yet. Guarded by itself.
+   */
+  private final List <String> diagnostics = new ArrayList <> ();
+
+  private JTBWorker (final String executable,
+                     final String [] jvmArgs,
+                     final File classPathFileDirectory,
+                     final File workingDirectoryRoot) throws IOException
+  {
+    Files.createDirectories (workingDirectoryRoot.toPath ());
+    this.workingDirectory = Files.createTempDirectory (workingDirectoryRoot.toPath (), "jtb-worker").toFile ();
+
+    // no class data sharing, JTB is loaded by a class loader of its own for
+    // every request which the archive would not cover
+    final ForkedJvm jvm = new ForkedJvmPGCC ();
+    jvm.setExecutable (executable);
+    jvm.addJvmArguments (jvmArgs);
+    jvm.setClassPathFileDirectory (classPathFileDirectory);
+    jvm.setMainClass (JTBWorkerMain.class);
+    jvm.addClassPathEntry (EDU.purdue.jtb.JTB.class);
+    jvm.setWorkingDirectory (this.workingDirectory);
+    try
+    {
+      this.process = jvm.start ();
+    }
+    catch (final Exception e)
+    {
+      FileUtils.deleteDirectory (this.workingDirectory);
+      throw new IOException ("Failed to start JTB worker: " + jvm, e);
+    }
+    this.requests = new PrintWriter (new OutputStreamWriter (this.process.getOutputStream (), StandardCharsets.UTF_8));
+    this.responses = new BufferedReader (new InputStreamReader (this.process.getInputStream (), StandardCharsets.UTF_8));
+
+    // the worker only writes diagnostics of the JVM itself to System.err,
+    // which are passed on along with the response of the current request
+    final Thread drain = new Thread ("jtb-worker-stderr")
+    {
+      @Override
+      public void run ()
+      {
+        try (final BufferedReader reader = new BufferedReader (new InputStreamReader (JTBWorker.this.process.getErrorStream ())))
+        {
+          String line;
+          while ((line = reader.readLine ()) != null)
+          {
+            synchronized (JTBWorker.this.diagnostics)
+            {
+              JTBWorker.this.diagnostics.add (line);
+            }
+          }
+        }
+        catch (final IOException e)
+        {
+          // worker terminated
+        }
+      }
+    };
+    drain.setDaemon (true);
+    drain.start ();
+  }
+
+  /**
+   * Starts a new worker. The caller is responsible to {@link #close()} the
+   * worker.
+   *
+   * @param executable
+   *        The JVM executable, may be <code>null</code> to use the executable
+   *        of the current JVM.
+   * @param jvmArgs
+   *        The options for the JVM, may be <code>null</code>.
+   * @param classPathFileDirectory
+   *        The directory for the file passing the class path to the JVM, may
+   *        be <code>null</code> to pass the class path on the command line.
+   * @param workingDirectoryRoot
+   *        The directory below which the working directory of the worker is
+   *        created, must not be <code>null</code>.
+   * @return The worker, never <code>null</code>.
+   * @throws IOException
+   *         If the worker could not be started.
+   */
+  public static JTBWorker start (final String executable,
+                                 final String [] jvmArgs,
+                                 final File classPathFileDirectory,
+                                 final File workingDirectoryRoot) throws IOException
+  {
+    return new JTBWorker (executable, jvmArgs, classPathFileDirectory, workingDirectoryRoot);
+  }
+
+  /**
+   * Gets the working directory of the worker. JTB writes the syntax tree and
+   * visitor files into sub directories of this directory.
+   *
+   * @return The absolute path to the working directory, never
+   *         <code>null</code>.
+   */
+  public File getWorkingDirectory ()
+  {
+    return this.workingDirectory;
+  }
+
+  boolean isAlive ()
+  {
+    if (!this.alive)
+      return false;
+    try
+    {
+      this.process.exitValue ();
+      this.alive = false;
+    }
+    catch (final IllegalThreadStateException e)
+    {
+      // still running
+    }
+    return this.alive;
+  }
+
+  /**
+   * Runs JTB with the specified arguments.
+   *
+   * @param args
+   *        The command line arguments for JTB, must not be <code>null</code>.
+   * @param systemOut
+   *        The consumer for the lines JTB wrote to <code>System.out</code>,
+   *        must not be <code>null</code>.
+   * @param systemErr
+   *        The consumer for the lines JTB wrote to <code>System.err</code>,
+   *        must not be <code>null</code>. Diagnostics of the JVM itself are
+   *        passed to this consumer as well.
+   * @return The exit code of JTB.
+   * @throws IOException
+   *         If the worker terminated before completing the request.
+   */
+  public int run (final String [] args, final StreamConsumer systemOut, final StreamConsumer systemErr) throws IOException
+  {
+    if (!isAlive ())
+      throw new IOException ("JTB worker is not running");
+    try
+    {
+      JTBWorkerMain.writeRequest (this.requests, args);
+      if (this.requests.checkError ())
+        throw new IOException ("Failed to send request to JTB worker");
+
+      String line;
+      while ((line = this.responses.readLine ()) != null)
+      {
+        if (line.startsWith (JTBWorkerMain.OUT))
+          systemOut.consumeLine (line.substring (JTBWorkerMain.OUT.length ()));
+        else
+          if (line.startsWith (JTBWorkerMain.ERR))
+            systemErr.consumeLine (line.substring (JTBWorkerMain.ERR.length ()));
+          else
+            if (line.startsWith (JTBWorkerMain.EXIT))
+              return Integer.parseInt (line.substring (JTBWorkerMain.EXIT.length ()).trim ());
+      }
+      throw new IOException ("JTB worker terminated unexpectedly");
+    }
+    catch (final IOException | RuntimeException e)
+    {
+      this.alive = false;
+      throw e;
+    }
+    finally
+    {
+      _passDiagnostics (systemErr);
+    }
+  }
+
+  private void _passDiagnostics (final StreamConsumer systemErr)
+  {
+    final List <String> lines;
+    synchronized (this.diagnostics)
+    {
+      lines = new ArrayList <> (this.diagnostics);
+      this.diagnostics.clear ();
+    }
+    for (final String line : lines)
+      systemErr.consumeLine (line);
+  }
+
+  /**
+   * Stops the worker and deletes its working directory.
+   */
+  public void close ()
+  {
+    this.alive = false;
+    // the worker terminates once its input is closed
+    this.requests.close ();
+    try
+    {
+      if (!this.process.waitFor (10, TimeUnit.SECONDS))
+        this.process.destroy ();
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread ().interrupt ();
+      this.process.destroy ();
+    }
+    IOUtil.close (this.responses);
+    try
+    {
+      FileUtils.deleteDirectory (this.workingDirectory);
+    }
+    catch (final IOException e)
+    {
+      // best effort
+    }
+  }
+}
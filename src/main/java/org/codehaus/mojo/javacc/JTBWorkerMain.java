@@ -0,0 +1,226 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The driver running inside a forked JVM to process JTB requests. JTB keeps
+ * its parser in static fields that cannot be re-initialized, so every request
+ * loads JTB in a fresh class loader.<br/>
+ * <br/>
+ * The driver reads requests from <code>System.in</code> and writes responses
+ * to <code>System.out</code>, both encoded in UTF-8. A request consists of a
+ * line with the number of arguments followed by one line per argument. The
+ * response consists of the lines written by JTB to <code>System.out</code>
+ * (prefixed with {@link #OUT}) and <code>System.err</code> (prefixed with
+ * {@link #ERR}), terminated by a line with the exit code (prefixed with
+ * {@link #EXIT}). The driver terminates when its input is closed.<br/>
+ * <br/>
+ * <strong>Note:</strong> This class runs in the forked JVM and must therefore
+ * only depend on the Java runtime.
+ */
+public final class JTBWorkerMain
+{
+  /**
+   * The prefix of response lines written by JTB to <code>System.out</code>.
+   */
+  static final String OUT = "O ";
+
+  /**
+   * The prefix of response lines written by JTB to <code>System.err</code>.
+   */
+  static final String ERR = "E ";
+
+  /**
+   * The prefix of the response line with the exit code of a request.
+   */
+  static final String EXIT = "X ";
+
+  /**
+   * The qualified name of the JTB main class.
+   */
+  private static final String JTB_CLASS = "EDU.purdue.jtb.JTB";
+
+  private JTBWorkerMain ()
+  {}
+
+  public static void main (final String [] args) throws Exception
+  {
+    final PrintWriter response = new PrintWriter (new OutputStreamWriter (System.out, StandardCharsets.UTF_8), false);
+    final BufferedReader requests = new BufferedReader (new InputStreamReader (System.in, StandardCharsets.UTF_8));
+    final URL [] classPath = _getClassPath ();
+
+    // keep stray output from corrupting the responses
+    System.setOut (System.err);
+
+    while (true)
+    {
+      final String [] jtbArgs = readRequest (requests);
+      if (jtbArgs == null)
+        break;
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream ();
+      final ByteArrayOutputStream err = new ByteArrayOutputStream ();
+      final int exitcode = _runJTB (classPath, jtbArgs, out, err);
+
+      _writeLines (response, OUT, out);
+      _writeLines (response, ERR, err);
+      response.println (EXIT + exitcode);
+      response.flush ();
+    }
+  }
+
+  /**
+   * Reads the next request.
+   *
+   * @param reader
+   *        The reader to read the request from, must not be <code>null</code>.
+   * @return The JTB arguments of the request or <code>null</code> if the
+   *         input has been closed.
+   * @throws IOException
+   *         If the request could not be read.
+   */
+  static String [] readRequest (final BufferedReader reader) throws IOException
+  {
+    final String header = reader.readLine ();
+    if (header == null)
+      return null;
+    final int count = Integer.parseInt (header.trim ());
+    final String [] args = new String [count];
+    for (int i = 0; i < count; i++)
+    {
+      args[i] = reader.readLine ();
+      if (args[i] == null)
+        return null;
+    }
+    return args;
+  }
+
+  /**
+   * Writes a request.
+   *
+   * @param writer
+   *        The writer to write the request to, must not be <code>null</code>.
+   * @param args
+   *        The JTB arguments of the request, must not be <code>null</code>.
+   */
+  static void writeRequest (final PrintWriter writer, final String [] args)
+  {
+    writer.println (args.length);
+    for (final String arg : args)
+    {
+      if (arg.indexOf ('\n') >= 0 || arg.indexOf ('\r') >= 0)
+        throw new IllegalArgumentException ("JTB argument must not contain line breaks: " + arg);
+      writer.println (arg);
+    }
+    writer.flush ();
+  }
+
+  private static URL [] _getClassPath () throws IOException
+  {
+    final List <URL> urls = new ArrayList <> ();
+    for (final String entry : System.getProperty ("java.class.path", "").split (File.pathSeparator))
+    {
+      if (entry.length () > 0)
+        urls.add (new File (entry).toURI ().toURL ());
+    }
+    return urls.toArray (new URL [urls.size ()]);
+  }
+
+  private static int _runJTB (final URL [] classPath,
+                              final String [] args,
+                              final ByteArrayOutputStream out,
+                              final ByteArrayOutputStream err)
+  {
+    final PrintStream sysOut = System.out;
+    final PrintStream sysErr = System.err;
+    final PrintStream capturedOut = _newPrintStream (out);
+    final PrintStream capturedErr = _newPrintStream (err);
+    System.setOut (capturedOut);
+    System.setErr (capturedErr);
+    try (final URLClassLoader loader = new URLClassLoader (classPath, ClassLoader.getSystemClassLoader ().getParent ()))
+    {
+      final Method main = loader.loadClass (JTB_CLASS).getMethod ("main", String [].class);
+      main.invoke (null, (Object) args);
+      return 0;
+    }
+    catch (final InvocationTargetException e)
+    {
+      e.getCause ().printStackTrace (capturedErr);
+      return 1;
+    }
+    catch (final Exception e)
+    {
+      e.printStackTrace (capturedErr);
+      return 1;
+    }
+    finally
+    {
+      capturedOut.flush ();
+      capturedErr.flush ();
+      System.setOut (sysOut);
+      System.setErr (sysErr);
+    }
+  }
+
+  private static PrintStream _newPrintStream (final ByteArrayOutputStream buffer)
+  {
+    try
+    {
+      return new PrintStream (buffer, true, StandardCharsets.UTF_8.name ());
+    }
+    catch (final IOException e)
+    {
+      throw new IllegalStateException (e);
+    }
+  }
+
+  private static void _writeLines (final PrintWriter writer, final String prefix, final ByteArrayOutputStream buffer)
+  {
+    try
+    {
+      final BufferedReader reader = new BufferedReader (new StringReader (new String (buffer.toByteArray (),
+                                                                                      StandardCharsets.UTF_8)));
+      String line;
+      while ((line = reader.readLine ()) != null)
+        writer.println (prefix + line);
+    }
+    catch (final IOException e)
+    {
+      throw new IllegalStateException (e);
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The JTB worker JVMs of a mojo execution. A worker is only ever used by one
+ * invocation at a time and is returned to the pool afterwards, i.e. the number
+ * of workers is bounded by the number of grammars processed concurrently. The
+ * pool is closed once the grammars of the execution have been processed, so
+ * no JVM outlives the execution, even in long-lived hosts like an IDE.
+ */
+final class JTBWorkerPool
+{
+  /**
+   * The JVM executable of the workers, may be <code>null</code>.
+   */
+  private final String executable;
+
+  /**
+   * The options for the JVMs of the workers, may be <code>null</code>.
+   */
+  private final String [] jvmArgs;
+
+  /**
+   * The directory for the files passing the class path to the workers, may be
+   * <code>null</code>.
+   */
+  private final File classPathFileDirectory;
+
+  /**
+   * The directory below which the working directories of the workers are
+   * created.
+   */
+  private final File workingDirectoryRoot;
+
+  /**
+   * The workers currently not in use.
+   */
+  private final Queue <JTBWorker> idleWorkers = new ConcurrentLinkedQueue <> ();
+
+  /**
+   * Set once a worker crashed on a request which succeeded in a fresh JVM, i.e.
+   * if JTB terminates the JVM on its own. Workers are not used afterwards.
+   */
+  private volatile boolean unsupported;
+
+  /**
+   * Whether the pool has been closed.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Creates a new pool.
+   *
+   * @param executable
+   *        The JVM executable of the workers, may be <code>null</code> to use
+   *        the executable of the current JVM.
+   * @param jvmArgs
+   *        The options for the JVMs of the workers, may be <code>null</code>.
+   * @param classPathFileDirectory
+   *        The directory for the files passing the class path to the workers,
+   *        may be <code>null</code> to pass the class path on the command line.
+   * @param workingDirectoryRoot
+   *        The directory below which the working directories of the workers
+   *        are created, must not be <code>null</code>.
+   */
+  public JTBWorkerPool (final String executable,
+                        final String [] jvmArgs,
+                        final File classPathFileDirectory,
+                        final File workingDirectoryRoot)
+  {
+    this.executable = executable;
+    this.jvmArgs = jvmArgs;
+    this.classPathFileDirectory = classPathFileDirectory;
+    this.workingDirectoryRoot = workingDirectoryRoot;
+  }
+
+  /**
+   * Takes an idle worker from the pool or starts a new one. The caller has
+   * exclusive use of the worker until it is handed back via
+   * {@link #release(JTBWorker)}.
+   *
+   * @return The worker, never <code>null</code>.
+   * @throws IOException
+   *         If a new worker could not be started or the pool is closed.
+   */
+  public JTBWorker acquire () throws IOException
+  {
+    if (this.closed)
+      throw new IOException ("JTB worker pool is closed");
+    JTBWorker worker;
+    while ((worker = this.idleWorkers.poll ()) != null)
+    {
+      if (worker.isAlive ())
+        return worker;
+      worker.close ();
+    }
+    return JTBWorker.start (this.executable,
+                            this.jvmArgs,
+                            this.classPathFileDirectory,
+                            this.workingDirectoryRoot);
+  }
+
+  /**
+   * Hands a worker previously obtained from {@link #acquire()} back to the
+   * pool. Workers that crashed or are released after the pool was closed are
+   * stopped.
+   *
+   * @param worker
+   *        The worker to release, may be <code>null</code>.
+   */
+  public void release (final JTBWorker worker)
+  {
+    if (worker != null)
+    {
+      if (worker.isAlive () && !this.closed)
+      {
+        this.idleWorkers.offer (worker);
+        // the pool may have been closed meanwhile
+        if (this.closed && this.idleWorkers.remove (worker))
+          worker.close ();
+      }
+      else
+        worker.close ();
+    }
+  }
+
+  /**
+   * Determines whether workers can be used.
+   *
+   * @return <code>false</code> once {@link #setUnsupported()} has been called.
+   */
+  public boolean isSupported ()
+  {
+    return !this.unsupported;
+  }
+
+  /**
+   * Stops using workers for the remainder of the execution.
+   */
+  public void setUnsupported ()
+  {
+    this.unsupported = true;
+  }
+
+  /**
+   * Stops all idle workers. Workers released afterwards are stopped as well.
+   */
+  public void close ()
+  {
+    this.closed = true;
+    JTBWorker worker;
+    while ((worker = this.idleWorkers.poll ()) != null)
+      worker.close ();
+  }
+}
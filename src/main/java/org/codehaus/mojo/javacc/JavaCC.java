@@ -557,6 +557,9 @@ class JavaCC extends AbstractToolFacade
       }
     }
 
+    if (isIsolated ())
+      return invokeIsolated ("com.helger.pgcc.parser.Main", "mainProgram", false, args);
+
     LOCK.lock ();
     try
     {
@@ -156,10 +156,12 @@ public class JavaCCMojo extends AbstractJavaCCMojo
     final File parserDirectory = new File (tempDirectory, "parser");
 
     // generate parser files
-    final JavaCC javacc = newJavaCC ();
-    javacc.setInputFile (jjFile);
-    javacc.setOutputDirectory (parserDirectory);
-    javacc.run ();
+    generate (grammarInfo, tempDirectory, () -> {
+      final JavaCC javacc = newJavaCC ();
+      javacc.setInputFile (jjFile);
+      javacc.setOutputDirectory (parserDirectory);
+      javacc.run ();
+    });
 
     // copy parser files from JavaCC
     copyGrammarOutput (getOutputDirectory (), grammarInfo.getParserPackage (), parserDirectory, grammarInfo.getParserName () + "*");
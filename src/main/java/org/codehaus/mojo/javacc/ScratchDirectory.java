@@ -0,0 +1,317 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * The scratch area of a mojo execution. Every grammar gets a subdirectory of
+ * its own which no other grammar uses at the same time. A subdirectory given
+ * back via {@link #recycle(File)} is handed out again and only cleared then,
+ * by moving its contents aside. Once the grammars have been processed, the
+ * whole scratch area is moved aside as well. Everything moved aside is
+ * deleted by background threads, keeping the deletion off the critical path.
+ * Scratch areas left behind by an earlier build that was terminated before
+ * the deletion completed are deleted when the scratch area is used next.
+ */
+final class ScratchDirectory
+{
+  /**
+   * The infix of the names of scratch areas awaiting deletion.
+   */
+  private static final String TRASH = ".trash-";
+
+  /**
+   * The root of the scratch area.
+   */
+  private final File root;
+
+  /**
+   * The counter used to name the subdirectories.
+   */
+  private final AtomicInteger counter = new AtomicInteger ();
+
+  /**
+   * The subdirectories given back for reuse, guarded by <code>this</code>.
+   */
+  private final Deque <File> recycled = new ArrayDeque <> ();
+
+  /**
+   * Whether the root has been prepared for use, guarded by <code>this</code>.
+   */
+  private boolean prepared;
+
+  /**
+   * The threads deleting scratch areas that have not completed yet, guarded by
+   * <code>this</code>. A thread removes itself once it has completed.
+   */
+  private final List <Thread> cleanups = new ArrayList <> ();
+
+  /**
+   * Creates a new scratch area.
+   *
+   * @param root
+   *        The root of the scratch area, must not be <code>null</code>. The
+   *        root is reserved for this scratch area, i.e. existing contents are
+   *        deleted.
+   */
+  public ScratchDirectory (final File root)
+  {
+    if (root == null)
+      throw new IllegalArgumentException ("root is null");
+    this.root = root.getAbsoluteFile ();
+  }
+
+  /**
+   * Gets the root of the scratch area.
+   *
+   * @return The absolute path to the root, never <code>null</code>.
+   */
+  public File getRoot ()
+  {
+    return this.root;
+  }
+
+  /**
+   * Gets an empty subdirectory of the scratch area which is not in use. This is
+   * a recycled subdirectory if there is one, otherwise a new subdirectory which
+   * is not created.
+   *
+   * @return The absolute path to the subdirectory, never <code>null</code>.
+   */
+  public File newDirectory ()
+  {
+    final File directory;
+    synchronized (this)
+    {
+      if (!this.prepared)
+      {
+        // contents left behind by an earlier build must not be mistaken for
+        // output of this one
+        _moveToTrash ();
+        _deleteInBackground (_getTrash ());
+        this.prepared = true;
+      }
+      directory = this.recycled.poll ();
+    }
+    if (directory == null)
+      return new File (this.root, "g" + this.counter.incrementAndGet ());
+    _clear (directory);
+    return directory;
+  }
+
+  /**
+   * Gives back a subdirectory obtained from {@link #newDirectory()} which is no
+   * longer in use. Its contents are kept until it is handed out again.
+   *
+   * @param directory
+   *        The subdirectory to give back, must not be <code>null</code>.
+   */
+  public synchronized void recycle (final File directory)
+  {
+    final File dir = directory.getAbsoluteFile ();
+    if (this.prepared && this.root.equals (dir.getParentFile ()) && !this.recycled.contains (dir))
+      this.recycled.push (dir);
+  }
+
+  /**
+   * Deletes the scratch area in a background thread. The scratch area may be
+   * used again afterwards, starting out empty.
+   *
+   * @return The thread deleting the scratch area or <code>null</code> if the
+   *         scratch area has not been used.
+   */
+  public synchronized Thread release ()
+  {
+    if (!this.prepared)
+      return null;
+    this.prepared = false;
+    this.recycled.clear ();
+    final File trash = _moveToTrash ();
+    if (trash == null)
+      return null;
+    final List <File> trashes = new ArrayList <> ();
+    trashes.add (trash);
+    return _deleteInBackground (trashes);
+  }
+
+  /**
+   * Moves the root aside so it can be deleted without blocking the next use of
+   * the scratch area.
+   *
+   * @return The moved directory or <code>null</code> if the root does not
+   *         exist.
+   */
+  private File _moveToTrash ()
+  {
+    if (!this.root.exists ())
+      return null;
+    final File trash = new File (this.root.getParentFile (), this.root.getName () + TRASH + UUID.randomUUID ());
+    try
+    {
+      Files.move (this.root.toPath (), trash.toPath ());
+      return trash;
+    }
+    catch (final IOException e)
+    {
+      // delete in place, this must not leave files behind for the next use
+      try
+      {
+        FileUtils.deleteDirectory (this.root);
+      }
+      catch (final IOException e2)
+      {
+        // best effort
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Empties a recycled subdirectory by moving its contents aside, deleting them
+   * in the background.
+   *
+   * @param directory
+   *        The subdirectory to empty, must not be <code>null</code>.
+   */
+  private void _clear (final File directory)
+  {
+    final File [] children = directory.listFiles ();
+    if (children == null || children.length <= 0)
+      return;
+    final File trash = new File (this.root.getParentFile (), this.root.getName () + TRASH + UUID.randomUUID ());
+    final List <File> trashes = new ArrayList <> ();
+    trashes.add (trash);
+    try
+    {
+      Files.createDirectories (trash.toPath ());
+      for (final File child : children)
+        Files.move (child.toPath (), new File (trash, child.getName ()).toPath ());
+    }
+    catch (final IOException e)
+    {
+      // delete in place, the next grammar must start out empty
+      for (final File child : directory.listFiles ())
+      {
+        try
+        {
+          FileUtils.forceDelete (child);
+        }
+        catch (final IOException e2)
+        {
+          // best effort
+        }
+      }
+    }
+    synchronized (this)
+    {
+      _deleteInBackground (trashes);
+    }
+  }
+
+  /**
+   * Gets the scratch areas of this root awaiting deletion.
+   *
+   * @return The directories awaiting deletion, never <code>null</code>.
+   */
+  private List <File> _getTrash ()
+  {
+    final List <File> trashes = new ArrayList <> ();
+    final File [] siblings = this.root.getParentFile ().listFiles ();
+    if (siblings != null)
+    {
+      final String prefix = this.root.getName () + TRASH;
+      for (final File sibling : siblings)
+      {
+        if (sibling.getName ().startsWith (prefix))
+          trashes.add (sibling);
+      }
+    }
+    return trashes;
+  }
+
+  /**
+   * Waits until the background threads started so far have deleted the
+   * scratch areas moved aside.
+   *
+   * @throws InterruptedException
+   *         If the calling thread was interrupted while waiting.
+   */
+  public void awaitCleanup () throws InterruptedException
+  {
+    final List <Thread> threads;
+    synchronized (this)
+    {
+      threads = new ArrayList <> (this.cleanups);
+    }
+    for (final Thread thread : threads)
+      thread.join ();
+  }
+
+  private Thread _deleteInBackground (final List <File> directories)
+  {
+    if (directories.isEmpty ())
+      return null;
+    final Thread thread = new Thread ("javacc-scratch-cleanup")
+    {
+      @Override
+      public void run ()
+      {
+        try
+        {
+          for (final File directory : directories)
+          {
+            try
+            {
+              FileUtils.deleteDirectory (directory);
+            }
+            catch (final IOException e)
+            {
+              // retried by the next build
+            }
+          }
+        }
+        finally
+        {
+          synchronized (ScratchDirectory.this)
+          {
+            ScratchDirectory.this.cleanups.remove (this);
+          }
+        }
+      }
+    };
+    // an unfinished deletion must not keep the JVM alive, it is retried by the
+    // next build
+    thread.setDaemon (true);
+    this.cleanups.add (thread);
+    thread.start ();
+    return thread;
+  }
+}
@@ -0,0 +1,195 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.helger.commons.id.IHasID;
+import com.helger.security.messagedigest.EMessageDigestAlgorithm;
+
+/**
+ * A pool of class loaders that each load their own copy of the parser
+ * generator. The parser generator keeps its state in static fields, so every
+ * concurrent invocation needs a class loader of its own. A class loader is
+ * only ever used by one invocation at a time and is returned to the pool
+ * afterwards, i.e. the number of pooled class loaders is bounded by the number
+ * of concurrent invocations.
+ */
+final class ToolClassLoaderPool
+{
+  /**
+   * The packages which are loaded child-first, i.e. which are isolated from
+   * the plugin class loader.
+   */
+  private static final String [] ISOLATED_PACKAGES = { "com.helger." };
+
+  private static final ToolClassLoaderPool INSTANCE = new ToolClassLoaderPool ();
+
+  /**
+   * The class path for the isolated class loaders, empty if it could not be
+   * determined.
+   */
+  private final URL [] classPath;
+
+  /**
+   * The class loaders currently not in use.
+   */
+  private final Queue <ClassLoader> idleLoaders = new ConcurrentLinkedQueue <> ();
+
+  private ToolClassLoaderPool ()
+  {
+    this.classPath = _determineClassPath (com.helger.pgcc.parser.Main.class, IHasID.class, EMessageDigestAlgorithm.class);
+  }
+
+  /**
+   * Gets the class loader pool shared by all tool invocations.
+   *
+   * @return The class loader pool, never <code>null</code>.
+   */
+  public static ToolClassLoaderPool getInstance ()
+  {
+    return INSTANCE;
+  }
+
+  private static URL [] _determineClassPath (final Class <?>... types)
+  {
+    final Set <URL> urls = new LinkedHashSet <> ();
+    for (final Class <?> type : types)
+    {
+      final String resource = type.getName ().replace ('.', '/') + ".class";
+      final ClassLoader loader = type.getClassLoader ();
+      final URL url = loader != null ? loader.getResource (resource) : ClassLoader.getSystemResource (resource);
+      final File root = UrlUtils.getResourceRoot (url, resource);
+      if (root == null)
+        return new URL [0];
+      try
+      {
+        urls.add (root.toURI ().toURL ());
+      }
+      catch (final MalformedURLException e)
+      {
+        return new URL [0];
+      }
+    }
+    return urls.toArray (new URL [urls.size ()]);
+  }
+
+  /**
+   * Determines whether isolated class loaders can be created, i.e. whether the
+   * location of the parser generator is known.
+   *
+   * @return <code>true</code> if isolated class loaders are available,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isAvailable ()
+  {
+    return this.classPath.length > 0;
+  }
+
+  /**
+   * Takes a class loader from the pool, creating a new one if no idle class
+   * loader is available. The caller has exclusive use of the class loader until
+   * it is handed back via {@link #release(ClassLoader)}.
+   *
+   * @return The class loader, never <code>null</code>.
+   */
+  public ClassLoader borrow ()
+  {
+    final ClassLoader loader = this.idleLoaders.poll ();
+    if (loader != null)
+      return loader;
+    return new ChildFirstClassLoader (this.classPath, ToolClassLoaderPool.class.getClassLoader ());
+  }
+
+  /**
+   * Hands a class loader previously obtained from {@link #borrow()} back to the
+   * pool.
+   *
+   * @param loader
+   *        The class loader to release, may be <code>null</code>.
+   */
+  public void release (final ClassLoader loader)
+  {
+    if (loader != null)
+      this.idleLoaders.offer (loader);
+  }
+
+  /**
+   * A class loader that loads the isolated packages from its own class path
+   * before consulting its parent.
+   */
+  private static final class ChildFirstClassLoader extends URLClassLoader
+  {
+    ChildFirstClassLoader (final URL [] urls, final ClassLoader parent)
+    {
+      super (urls, parent);
+    }
+
+    private static boolean _isIsolated (final String name)
+    {
+      for (final String prefix : ISOLATED_PACKAGES)
+        if (name.startsWith (prefix))
+          return true;
+      return false;
+    }
+
+    @Override
+    protected Class <?> loadClass (final String name, final boolean resolve) throws ClassNotFoundException
+    {
+      if (!_isIsolated (name))
+        return super.loadClass (name, resolve);
+
+      synchronized (getClassLoadingLock (name))
+      {
+        Class <?> type = findLoadedClass (name);
+        if (type == null)
+        {
+          try
+          {
+            type = findClass (name);
+          }
+          catch (final ClassNotFoundException e)
+          {
+            return super.loadClass (name, resolve);
+          }
+        }
+        if (resolve)
+          resolveClass (type);
+        return type;
+      }
+    }
+
+    @Override
+    public URL getResource (final String name)
+    {
+      final URL url = findResource (name);
+      if (url != null)
+        return url;
+      return super.getResource (name);
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Routes the output which the parser generator writes to
+ * <code>System.out</code> and <code>System.err</code> into the logger of the
+ * grammar being processed. The parser generator runs in the thread of the
+ * grammar, so while at least one routing is active the system streams are
+ * replaced by streams that dispatch each write to the logger registered for
+ * the writing thread. Threads without a registered logger, and loggers which
+ * themselves write to the system streams, write to the original streams. The
+ * original streams are restored once the last routing ends.
+ */
+final class ToolOutput implements AutoCloseable
+{
+  private static final ThreadLocal <LineBuffer> OUT = new ThreadLocal <> ();
+  private static final ThreadLocal <LineBuffer> ERR = new ThreadLocal <> ();
+
+  private static int s_nCaptures;
+  private static PrintStream s_aOriginalOut;
+  private static PrintStream s_aOriginalErr;
+  private static PrintStream s_aInstalledOut;
+  private static PrintStream s_aInstalledErr;
+
+  private final LineBuffer out;
+  private final LineBuffer err;
+
+  private ToolOutput (final Log log)
+  {
+    this.out = new LineBuffer (log, false);
+    this.err = new LineBuffer (log, true);
+    OUT.set (this.out);
+    ERR.set (this.err);
+  }
+
+  /**
+   * Starts routing the system streams of the calling thread into the
+   * specified logger. Lines written to <code>System.out</code> are logged at
+   * info level, lines written to <code>System.err</code> at error level. The
+   * routing ends when the returned object is closed.
+   *
+   * @param log
+   *        The logger, must not be <code>null</code>.
+   * @return The routing, never <code>null</code>.
+   */
+  public static ToolOutput capture (final Log log)
+  {
+    _install ();
+    return new ToolOutput (log);
+  }
+
+  private static synchronized void _install ()
+  {
+    if (s_nCaptures++ == 0)
+    {
+      s_aOriginalOut = System.out;
+      s_aOriginalErr = System.err;
+      // the dispatchers keep working if the tools keep references to them
+      s_aInstalledOut = new PrintStream (new Dispatcher (OUT, s_aOriginalOut), true);
+      s_aInstalledErr = new PrintStream (new Dispatcher (ERR, s_aOriginalErr), true);
+      System.setOut (s_aInstalledOut);
+      System.setErr (s_aInstalledErr);
+    }
+  }
+
+  private static synchronized void _uninstall ()
+  {
+    if (--s_nCaptures == 0)
+    {
+      // streams replaced by someone else in the meantime are left alone
+      if (System.out == s_aInstalledOut)
+        System.setOut (s_aOriginalOut);
+      if (System.err == s_aInstalledErr)
+        System.setErr (s_aOriginalErr);
+      s_aOriginalOut = null;
+      s_aOriginalErr = null;
+      s_aInstalledOut = null;
+      s_aInstalledErr = null;
+    }
+  }
+
+  /**
+   * Logs incomplete lines, ends the routing for the calling thread and
+   * restores the original system streams if no other routing is active.
+   */
+  @Override
+  public void close ()
+  {
+    OUT.remove ();
+    ERR.remove ();
+    try
+    {
+      this.out.flush ();
+      this.err.flush ();
+    }
+    finally
+    {
+      _uninstall ();
+    }
+  }
+
+  /**
+   * The stream replacing a system stream.
+   */
+  private static final class Dispatcher extends OutputStream
+  {
+    private final ThreadLocal <LineBuffer> buffers;
+    private final PrintStream fallback;
+
+    Dispatcher (final ThreadLocal <LineBuffer> buffers, final PrintStream fallback)
+    {
+      this.buffers = buffers;
+      this.fallback = fallback;
+    }
+
+    private LineBuffer _getBuffer ()
+    {
+      final LineBuffer buffer = this.buffers.get ();
+      // a logger writing to the system streams must not re-enter its buffer
+      return buffer != null && !buffer.logging ? buffer : null;
+    }
+
+    @Override
+    public void write (final int b)
+    {
+      final LineBuffer buffer = _getBuffer ();
+      if (buffer != null)
+        buffer.write (b);
+      else
+        this.fallback.write (b);
+    }
+
+    @Override
+    public void write (final byte [] b, final int off, final int len)
+    {
+      final LineBuffer buffer = _getBuffer ();
+      if (buffer != null)
+      {
+        for (int i = off; i < off + len; i++)
+          buffer.write (b[i]);
+      }
+      else
+        this.fallback.write (b, off, len);
+    }
+
+    @Override
+    public void flush ()
+    {
+      if (_getBuffer () == null)
+        this.fallback.flush ();
+    }
+  }
+
+  /**
+   * Collects the bytes written by a thread and logs each completed line.
+   */
+  private static final class LineBuffer
+  {
+    private final Log log;
+    private final boolean error;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream ();
+
+    /**
+     * Set while the logger is called, writes to the system streams go to the
+     * original streams meanwhile.
+     */
+    boolean logging;
+
+    LineBuffer (final Log log, final boolean error)
+    {
+      this.log = log;
+      this.error = error;
+    }
+
+    void write (final int b)
+    {
+      if (b == '\n')
+        flush ();
+      else
+        this.line.write (b);
+    }
+
+    void flush ()
+    {
+      String text = new String (this.line.toByteArray (), Charset.defaultCharset ());
+      this.line.reset ();
+      if (text.endsWith ("\r"))
+        text = text.substring (0, text.length () - 1);
+      if (text.length () == 0)
+        return;
+      this.logging = true;
+      try
+      {
+        if (this.error)
+          this.log.error (text);
+        else
+          this.log.info (text);
+      }
+      finally
+      {
+        this.logging = false;
+      }
+    }
+  }
+}
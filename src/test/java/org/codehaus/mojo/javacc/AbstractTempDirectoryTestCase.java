@@ -0,0 +1,55 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import org.codehaus.plexus.util.FileUtils;
+
+import junit.framework.TestCase;
+
+/**
+ * Base class for tests working on files. Every test gets an empty directory of
+ * its own below <code>target/test-work</code>, which is deleted after the
+ * test.
+ */
+public abstract class AbstractTempDirectoryTestCase extends TestCase
+{
+  /**
+   * The absolute path to the directory of the current test.
+   */
+  protected File tempDir;
+
+  @Override
+  protected void setUp () throws Exception
+  {
+    final File workDir = new File (System.getProperty ("basedir", "."), "target/test-work");
+    this.tempDir = new File (new File (workDir, getClass ().getSimpleName ()), getName ()).getAbsoluteFile ();
+    // start out empty, even if an earlier run was killed
+    FileUtils.deleteDirectory (this.tempDir);
+    this.tempDir.mkdirs ();
+  }
+
+  @Override
+  protected void tearDown () throws Exception
+  {
+    FileUtils.deleteDirectory (this.tempDir);
+  }
+}
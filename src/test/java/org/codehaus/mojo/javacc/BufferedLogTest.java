@@ -0,0 +1,69 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>BufferedLog</code>.
+ */
+public class BufferedLogTest extends TestCase
+{
+  public void testFlushKeepsOrder () throws Exception
+  {
+    final PrintStream out = System.out;
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream ();
+    System.setOut (new PrintStream (buffer, true));
+    try
+    {
+      final BufferedLog log = new BufferedLog (new SystemStreamLog ());
+      log.info ("first");
+      log.warn ("second");
+      log.info ("third");
+      assertEquals (0, buffer.size ());
+
+      log.flush ();
+      final String output = buffer.toString ();
+      assertTrue (output.indexOf ("first") >= 0);
+      assertTrue (output.indexOf ("first") < output.indexOf ("second"));
+      assertTrue (output.indexOf ("second") < output.indexOf ("third"));
+
+      buffer.reset ();
+      log.flush ();
+      assertEquals (0, buffer.size ());
+    }
+    finally
+    {
+      System.setOut (out);
+    }
+  }
+
+  public void testNullContentSafe () throws Exception
+  {
+    final BufferedLog log = new BufferedLog (new SystemStreamLog ());
+    log.error (new Exception ("test"));
+    log.flush ();
+  }
+}
@@ -0,0 +1,117 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>BuildTimings</code>.
+ */
+public class BuildTimingsTest extends TestCase
+{
+  public void testRecordAttributesToCurrentGrammar () throws Exception
+  {
+    final BuildTimings timings = new BuildTimings ();
+    timings.add ("scan", System.nanoTime ());
+    timings.setCurrentGrammar ("org/Parser.jj");
+    timings.add ("javacc", System.nanoTime ());
+    timings.add ("copy", System.nanoTime ());
+    timings.add ("copy", System.nanoTime ());
+
+    final Thread other = new Thread ( () -> timings.add ("cleanup", System.nanoTime ()));
+    other.start ();
+    other.join ();
+
+    timings.setCurrentGrammar (null);
+    timings.add ("index-save", System.nanoTime ());
+
+    assertEquals (3, timings.getTimings (BuildTimings.BUILD).size ());
+    assertNotNull (timings.getTimings (BuildTimings.BUILD).get ("cleanup"));
+    assertNotNull (timings.getTimings (BuildTimings.BUILD).get ("index-save"));
+    assertEquals (2, timings.getTimings ("org/Parser.jj").size ());
+    assertEquals (2, timings.getTimings ("org/Parser.jj").get ("copy").getCount ());
+    assertTrue (timings.getTimings ("org/Parser.jj").get ("javacc").getNanos () >= 0);
+
+    // build-wide phases come first
+    final List <BuildTimings.Timing> all = timings.getTimings ();
+    assertEquals (5, all.size ());
+    assertEquals ("scan", all.get (0).getPhase ());
+    assertEquals ("org/Parser.jj", all.get (4).getGrammar ());
+  }
+
+  public void testFormatSummary ()
+  {
+    final BuildTimings timings = new BuildTimings ();
+    timings.add (BuildTimings.BUILD, "scan", 2000000, 1);
+    timings.add ("Fast.jj", BuildTimings.TOTAL, 1000000, 1);
+    timings.add ("Fast.jj", "javacc", 500000, 1);
+    timings.add ("Slow.jj", BuildTimings.TOTAL, 9000000, 1);
+    timings.add ("Slow.jj", "jjtree", 3000000, 1);
+    timings.add ("Other.jj", BuildTimings.TOTAL, 5000000, 1);
+
+    final List <String> lines = timings.formatSummary (2);
+    assertEquals (5, lines.size ());
+    assertEquals ("Build: scan=2.0 ms", lines.get (0));
+    assertTrue (lines.get (1).startsWith ("Grammar"));
+    assertTrue (lines.get (1).indexOf ("total") < lines.get (1).indexOf ("javacc"));
+    assertTrue (lines.get (2).startsWith ("Slow.jj"));
+    assertTrue (lines.get (2).contains ("9.0"));
+    assertTrue (lines.get (3).startsWith ("Other.jj"));
+    assertTrue (lines.get (3).trim ().endsWith ("-"));
+    assertEquals ("... and 1 more grammars", lines.get (4));
+  }
+
+  public void testWriteJsonAndCsv () throws Exception
+  {
+    final BuildTimings timings = new BuildTimings ();
+    timings.add (BuildTimings.BUILD, "scan", 42, 1);
+    timings.add ("dir,with \"quotes\"/Parser.jj", "javacc", 7, 2);
+
+    final File dir = File.createTempFile ("build-timings", "");
+    dir.delete ();
+    try
+    {
+      final File json = new File (dir, "sub/timings.json");
+      timings.writeJson (json, "JavaCCMojo");
+      assertEquals ("[\n" +
+                    "  {\"mojo\": \"JavaCCMojo\", \"grammar\": \"\", \"phase\": \"scan\", \"count\": 1, \"nanos\": 42},\n" +
+                    "  {\"mojo\": \"JavaCCMojo\", \"grammar\": \"dir,with \\\"quotes\\\"/Parser.jj\", \"phase\": \"javacc\", \"count\": 2, \"nanos\": 7}\n" +
+                    "]\n",
+                    FileUtils.fileRead (json, "UTF-8"));
+
+      final File csv = new File (dir, "sub/timings.csv");
+      timings.writeCsv (csv, "JavaCCMojo");
+      assertEquals ("mojo,grammar,phase,count,nanos\n" +
+                    "JavaCCMojo,,scan,1,42\n" +
+                    "JavaCCMojo,\"dir,with \"\"quotes\"\"/Parser.jj\",javacc,2,7\n",
+                    FileUtils.fileRead (csv, "UTF-8"));
+    }
+    finally
+    {
+      FileUtils.deleteDirectory (dir);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Tests <code>ClassDataSharing</code>.
+ */
+public class ClassDataSharingTest extends AbstractTempDirectoryTestCase
+{
+  private boolean _isJava13 ()
+  {
+    return ClassDataSharing.getFeatureVersion (System.getProperty ("java.specification.version")) >= 13;
+  }
+
+  private File _newJar (final Class <?> type) throws Exception
+  {
+    final File jar = new File (this.tempDir, "main.jar");
+    final String resource = type.getName ().replace ('.', '/') + ".class";
+    try (final JarOutputStream out = new JarOutputStream (new FileOutputStream (jar));
+         final InputStream in = type.getClassLoader ().getResourceAsStream (resource))
+    {
+      out.putNextEntry (new JarEntry (resource));
+      IOUtil.copy (in, out);
+      out.closeEntry ();
+    }
+    return jar;
+  }
+
+  public void testGetFeatureVersion ()
+  {
+    assertEquals (8, ClassDataSharing.getFeatureVersion ("1.8"));
+    assertEquals (11, ClassDataSharing.getFeatureVersion ("11"));
+    assertEquals (17, ClassDataSharing.getFeatureVersion ("17.0"));
+    assertEquals (0, ClassDataSharing.getFeatureVersion ("x"));
+    assertEquals (0, ClassDataSharing.getFeatureVersion (null));
+  }
+
+  public void testIsSupported () throws Exception
+  {
+    final String java = ForkedJvm.getDefaultExecutable ();
+    final String jar = _newJar (JTBWorkerMain.class).getAbsolutePath ();
+    final String dir = this.tempDir.getAbsolutePath ();
+    assertEquals (_isJava13 (),
+                  ClassDataSharing.isSupported (java, Collections.<String> emptyList (), Arrays.asList (jar)));
+    assertFalse (ClassDataSharing.isSupported ("custom-java", Collections.<String> emptyList (), Arrays.asList (jar)));
+    assertFalse (ClassDataSharing.isSupported (java, Collections.<String> emptyList (), Arrays.asList (jar, dir)));
+    assertFalse (ClassDataSharing.isSupported (java, Arrays.asList ("-Xshare:off"), Arrays.asList (jar)));
+    assertFalse (ClassDataSharing.isSupported (java, Collections.<String> emptyList (), Collections.<String> emptyList ()));
+  }
+
+  public void testPrepareLocksDump () throws Exception
+  {
+    final ClassDataSharing first = ClassDataSharing.prepare (this.tempDir, "key");
+    assertTrue (first.getJvmArguments ()[0].startsWith ("-XX:ArchiveClassesAtExit="));
+
+    // another JVM neither dumps nor uses the archive while it is being dumped
+    final ClassDataSharing second = ClassDataSharing.prepare (this.tempDir, "key");
+    assertEquals (0, second.getJvmArguments ().length);
+
+    FileUtils.fileWrite (new File (this.tempDir, "key.tmp"), "archive");
+    first.complete (true);
+    second.complete (true);
+    assertTrue (new File (this.tempDir, "key.jsa").isFile ());
+
+    final ClassDataSharing third = ClassDataSharing.prepare (this.tempDir, "key");
+    assertTrue (third.getJvmArguments ()[0].startsWith ("-XX:SharedArchiveFile="));
+  }
+
+  public void testFailedDumpIsDiscarded () throws Exception
+  {
+    final ClassDataSharing first = ClassDataSharing.prepare (this.tempDir, "key");
+    FileUtils.fileWrite (new File (this.tempDir, "key.tmp"), "archive");
+    first.complete (false);
+    assertFalse (new File (this.tempDir, "key.jsa").exists ());
+    assertFalse (new File (this.tempDir, "key.tmp").exists ());
+
+    // the lock is released, so the next JVM dumps the archive
+    final ClassDataSharing second = ClassDataSharing.prepare (this.tempDir, "key");
+    assertTrue (second.getJvmArguments ()[0].startsWith ("-XX:ArchiveClassesAtExit="));
+    second.complete (false);
+  }
+
+  public void testAbandonedLockFileIsIgnored () throws Exception
+  {
+    // left behind by a build that was killed while dumping the archive
+    FileUtils.fileWrite (new File (this.tempDir, "key.lock"), "");
+    FileUtils.fileWrite (new File (this.tempDir, "key.tmp"), "partial");
+    final ClassDataSharing sharing = ClassDataSharing.prepare (this.tempDir, "key");
+    assertTrue (sharing.getJvmArguments ()[0].startsWith ("-XX:ArchiveClassesAtExit="));
+    assertFalse (new File (this.tempDir, "key.tmp").exists ());
+    sharing.complete (false);
+  }
+
+  public void testForkedJvm () throws Exception
+  {
+    if (!_isJava13 ())
+      return;
+
+    final File archiveDir = new File (this.tempDir, "cds");
+    final File jar = _newJar (JTBWorkerMain.class);
+    for (int i = 0; i < 2; i++)
+    {
+      final ForkedJvm jvm = new ForkedJvm ();
+      jvm.setSharedArchiveDirectory (archiveDir);
+      // resolve the main class from the JAR rather than the test classes
+      final ClassLoader loader = Thread.currentThread ().getContextClassLoader ();
+      try (final URLClassLoader jarLoader = new URLClassLoader (new URL [] { jar.toURI ().toURL () }, null))
+      {
+        Thread.currentThread ().setContextClassLoader (jarLoader);
+        jvm.setMainClass (JTBWorkerMain.class.getName ());
+      }
+      finally
+      {
+        Thread.currentThread ().setContextClassLoader (loader);
+      }
+      final Process process = jvm.start ();
+      if (i > 0)
+        assertTrue (jvm.toString ().indexOf ("-XX:SharedArchiveFile=") >= 0);
+      // the worker terminates once its input is closed
+      process.getOutputStream ().close ();
+      final int exitcode = process.waitFor ();
+      jvm.completeSharedArchive (exitcode == 0);
+      assertEquals (0, exitcode);
+      assertEquals (1, archiveDir.list ((d, n) -> n.endsWith (".jsa")).length);
+    }
+  }
+}
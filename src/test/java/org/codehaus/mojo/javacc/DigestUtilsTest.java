@@ -0,0 +1,52 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.net.URI;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>DigestUtils</code>.
+ */
+public class DigestUtilsTest extends TestCase
+{
+  public void testDigest () throws Exception
+  {
+    final String digest = DigestUtils.digest ("");
+    assertEquals ("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", digest);
+    assertEquals (DigestUtils.digest (getGrammar ("Parser1.jj")), DigestUtils.digest (getGrammar ("Parser1.jj")));
+    assertFalse (DigestUtils.digest (getGrammar ("Parser1.jj")).equals (DigestUtils.digest (getGrammar ("Parser2.jj"))));
+  }
+
+  public void testKey ()
+  {
+    assertEquals (DigestUtils.key ("a", "b"), DigestUtils.key ("a", "b"));
+    assertFalse (DigestUtils.key ("a", "b").equals (DigestUtils.key ("ab", "")));
+    assertFalse (DigestUtils.key ("a", "b").equals (DigestUtils.key ("a", "b", null)));
+    assertEquals (DigestUtils.key ("a", null), DigestUtils.key ("a", ""));
+  }
+
+  private File getGrammar (final String resource) throws Exception
+  {
+    return new File (new URI (getClass ().getResource ('/' + resource).toString ()));
+  }
+}
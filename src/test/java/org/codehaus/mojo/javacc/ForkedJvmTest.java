@@ -21,6 +21,7 @@ package org.codehaus.mojo.javacc;
 
 import java.io.File;
 
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.cli.CommandLineUtils.StringStreamConsumer;
 
 import junit.framework.TestCase;
@@ -57,6 +58,24 @@ public class ForkedJvmTest extends TestCase
     jvm.setWorkingDirectory (null);
     jvm.setSystemOut (null);
     jvm.setSystemErr (null);
+    jvm.setExecutable (null);
+    jvm.addJvmArgument (null);
+    jvm.addJvmArguments (null);
+    jvm.addJvmArguments (new String [] { null, "" });
+    assertEquals (new ForkedJvm ().toString (), jvm.toString ());
+  }
+
+  public void testJvmArgumentsPrecedeMainClass () throws Exception
+  {
+    final ForkedJvm jvm = new ForkedJvm ();
+    jvm.setExecutable ("custom-java");
+    jvm.addJvmArgument ("-Xmx64m");
+    jvm.setMainClass (MainStub.class);
+    jvm.addArgument ("-Xarg");
+    final String cmd = jvm.toString ();
+    assertTrue (cmd.indexOf ("custom-java") < cmd.indexOf ("-Xmx64m"));
+    assertTrue (cmd.indexOf ("-Xmx64m") < cmd.indexOf (MainStub.class.getName ()));
+    assertTrue (cmd.indexOf (MainStub.class.getName ()) < cmd.indexOf ("-Xarg"));
   }
 
   public void testSetMainClass () throws Exception
@@ -74,6 +93,84 @@ public class ForkedJvmTest extends TestCase
     assertEquals (cmd1, cmd2);
   }
 
+  public void testClassPathFile () throws Exception
+  {
+    final ForkedJvm inline = new ForkedJvm ();
+    inline.setClassPathFileDirectory (null);
+    inline.setMainClass (MainStub.class);
+    assertTrue (inline.toString ().indexOf ("-cp") >= 0);
+
+    final ForkedJvm jvm = new ForkedJvm ();
+    jvm.setClassPathFileDirectory (new File ("target/javacc-classpath"));
+    jvm.setMainClass (MainStub.class);
+    final String cmd = jvm.toString ();
+    if (ClassDataSharing.getFeatureVersion (System.getProperty ("java.specification.version")) >= 9)
+      assertTrue (cmd.indexOf (".args") >= 0);
+    else
+      assertTrue (cmd.indexOf (".jar") >= 0);
+  }
+
+  public void testCorruptClassPathFileIsReplaced () throws Exception
+  {
+    final File dir = File.createTempFile ("forked-jvm", "");
+    dir.delete ();
+    try
+    {
+      final StringStreamConsumer stdout = new StringStreamConsumer ();
+      final ForkedJvm jvm = new ForkedJvm ();
+      jvm.setClassPathFileDirectory (dir);
+      jvm.setSystemOut (stdout);
+      jvm.setSystemErr (new StringStreamConsumer ());
+      jvm.setMainClass (MainStub.class);
+      jvm.addArgument ("verified");
+      assertEquals (27, jvm.run ());
+
+      // a file of the same name with a different class path is not trusted
+      final File classPathFile = dir.listFiles ()[0];
+      FileUtils.fileWrite (classPathFile, "-cp\n\"" + dir + "\"\n");
+      assertEquals (27, jvm.run ());
+      assertEquals ("verified", stdout.getOutput ().trim ().split ("(\r\n)|(\r)|(\n)")[0]);
+      if (classPathFile.getName ().endsWith (".args"))
+        assertTrue (FileUtils.fileRead (classPathFile).indexOf ("test-classes") >= 0);
+    }
+    finally
+    {
+      FileUtils.deleteDirectory (dir);
+    }
+  }
+
+  public void testForkWithPathingJar () throws Exception
+  {
+    final File dir = File.createTempFile ("forked-jvm", "");
+    dir.delete ();
+    try
+    {
+      final StringStreamConsumer stdout = new StringStreamConsumer ();
+      final ForkedJvm jvm = new ForkedJvm ();
+      // a different executable path makes the JVM version unknown
+      jvm.setExecutable (System.getProperty ("java.home") +
+                         File.separator +
+                         "bin" +
+                         File.separator +
+                         "." +
+                         File.separator +
+                         "java");
+      jvm.setClassPathFileDirectory (dir);
+      jvm.setSystemOut (stdout);
+      jvm.setSystemErr (new StringStreamConsumer ());
+      jvm.setMainClass (MainStub.class);
+      jvm.addArgument ("pathing");
+      assertTrue (jvm.toString ().indexOf (".jar") >= 0);
+      assertEquals (27, jvm.run ());
+      assertEquals ("pathing", stdout.getOutput ().trim ());
+      assertEquals (1, dir.list ().length);
+    }
+    finally
+    {
+      FileUtils.deleteDirectory (dir);
+    }
+  }
+
   public void testFork () throws Exception
   {
     final File workDir = new File (System.getProperty ("user.home")).getCanonicalFile ();
@@ -87,6 +184,7 @@ public class ForkedJvmTest extends TestCase
     jvm.setWorkingDirectory (workDir);
     jvm.setSystemOut (stdout);
     jvm.setSystemErr (stderr);
+    jvm.addJvmArguments (new String [] { "-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC", "-Xshare:auto" });
     jvm.setMainClass (MainStub.class);
     jvm.addArgument (nonce);
     jvm.addArguments (new String [] { "arg1", "arg2" });
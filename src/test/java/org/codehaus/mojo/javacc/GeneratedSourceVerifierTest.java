@@ -0,0 +1,138 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests <code>GeneratedSourceVerifier</code>.
+ */
+public class GeneratedSourceVerifierTest extends AbstractTempDirectoryTestCase
+{
+  private File grammarFile;
+
+  private File outputDir;
+
+  private File sourceRoot;
+
+  private GeneratedSourceVerifier verifier;
+
+  @Override
+  protected void setUp () throws Exception
+  {
+    super.setUp ();
+    this.grammarFile = new File (this.tempDir, "Parser.jj");
+    this.outputDir = new File (this.tempDir, "generated");
+    this.sourceRoot = new File (this.tempDir, "src");
+    new File (this.outputDir, "org").mkdirs ();
+    new File (this.sourceRoot, "org").mkdirs ();
+    // the grammar is encoded differently than the generated files
+    FileUtils.fileWrite (this.grammarFile,
+                         "ISO-8859-1",
+                         "PARSER_BEGIN(Parser)\n" +
+                         "package org;\n" +
+                         "public class Parser {}\n" +
+                         "PARSER_END(Parser)\n" +
+                         "void Start() : {}\n" +
+                         "{\n" +
+                         "  { int count = undefinedHelper(); } // Gr\u00f6\u00dfe\n" +
+                         "}\n");
+    this.verifier = new GeneratedSourceVerifier (Collections.<File> emptyList (),
+                                                 Arrays.asList (this.outputDir, this.sourceRoot),
+                                                 StandardCharsets.UTF_8,
+                                                 StandardCharsets.ISO_8859_1,
+                                                 null,
+                                                 null,
+                                                 null);
+  }
+
+  private File _write (final File root, final String name, final String content) throws Exception
+  {
+    final File file = new File (root, "org/" + name);
+    FileUtils.fileWrite (file, "UTF-8", content);
+    return file;
+  }
+
+  public void testValidSources () throws Exception
+  {
+    assertTrue (this.verifier.isAvailable ());
+    // references a customized file from another source root
+    final File parser = _write (this.outputDir, "Parser.java", "package org;\npublic class Parser { Token token; }\n");
+    _write (this.sourceRoot, "Token.java", "package org;\npublic class Token {}\n");
+    assertEquals (Collections.emptyList (), this.verifier.verify (this.grammarFile, Arrays.asList (parser)));
+    assertFalse (new File (this.outputDir, "org/Parser.class").exists ());
+    assertFalse (new File (this.sourceRoot, "org/Token.class").exists ());
+  }
+
+  public void testErrorsMappedToGrammar () throws Exception
+  {
+    final File parser = _write (this.outputDir,
+                                "Parser.java",
+                                "package org;\n" +
+                                "public class Parser {\n" +
+                                "  void Start() {\n" +
+                                "    { int count = undefinedHelper(); } // Gr\u00f6\u00dfe\n" +
+                                "  }\n" +
+                                "  void other() { undefinedOther(); }\n" +
+                                "}\n");
+    final List <GeneratedSourceVerifier.Problem> problems = this.verifier.verify (this.grammarFile,
+                                                                                  Arrays.asList (parser, this.grammarFile));
+    assertEquals (2, problems.size ());
+    assertEquals (this.grammarFile, problems.get (0).getFile ());
+    assertEquals (7, problems.get (0).getLine ());
+    assertTrue (problems.get (0).getMessage ().contains ("Parser.java:4"));
+    assertEquals (parser, problems.get (1).getFile ());
+    assertEquals (6, problems.get (1).getLine ());
+  }
+
+  public void testLanguageLevel () throws Exception
+  {
+    if (ClassDataSharing.getFeatureVersion (System.getProperty ("java.specification.version")) < 10)
+      return;
+    final File parser = _write (this.outputDir, "Parser.java", "package org;\npublic class Parser { void m () { var x = 1; } }\n");
+    assertEquals (Collections.emptyList (), this.verifier.verify (this.grammarFile, Arrays.asList (parser)));
+
+    final GeneratedSourceVerifier verifier8 = new GeneratedSourceVerifier (Collections.<File> emptyList (),
+                                                                           Arrays.asList (this.outputDir),
+                                                                           StandardCharsets.UTF_8,
+                                                                           StandardCharsets.ISO_8859_1,
+                                                                           null,
+                                                                           "1.8",
+                                                                           "1.8");
+    assertEquals (1, verifier8.verify (this.grammarFile, Arrays.asList (parser)).size ());
+
+    // a level the compiler no longer supports falls back to its default
+    final GeneratedSourceVerifier verifier1 = new GeneratedSourceVerifier (Collections.<File> emptyList (),
+                                                                           Arrays.asList (this.outputDir),
+                                                                           StandardCharsets.UTF_8,
+                                                                           StandardCharsets.ISO_8859_1,
+                                                                           "1",
+                                                                           null,
+                                                                           null);
+    assertEquals (Collections.emptyList (), verifier1.verify (this.grammarFile, Arrays.asList (parser)));
+  }
+}
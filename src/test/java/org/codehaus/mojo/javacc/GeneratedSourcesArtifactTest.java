@@ -0,0 +1,118 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests <code>GeneratedSourcesArtifact</code>.
+ */
+public class GeneratedSourcesArtifactTest extends AbstractTempDirectoryTestCase
+{
+  private static void _write (final File file, final String content) throws Exception
+  {
+    file.getParentFile ().mkdirs ();
+    FileUtils.fileWrite (file, content);
+  }
+
+  public void testGetClassifier () throws Exception
+  {
+    final String key = DigestUtils.key ("grammar");
+    final GrammarInfo grammarInfo = new GrammarInfo (this.tempDir.getAbsoluteFile (),
+                                                     "MyParser.jj",
+                                                     new GrammarHeader ("org.Example", "MyParser"));
+    assertEquals ("javacc-org.example.myparser-" + key.substring (0, 16),
+                  GeneratedSourcesArtifact.getClassifier (grammarInfo, key));
+    assertEquals ("javacc-org.example.myparser", GeneratedSourcesArtifact.getStableClassifier (grammarInfo));
+
+    // parsers of the same name in different packages are distinguished
+    final GrammarInfo other = new GrammarInfo (this.tempDir.getAbsoluteFile (),
+                                               "other/MyParser.jj",
+                                               new GrammarHeader ("", "MyParser"));
+    assertEquals ("javacc-myparser-abc", GeneratedSourcesArtifact.getClassifier (other, "abc"));
+    assertEquals ("javacc-myparser", GeneratedSourcesArtifact.getStableClassifier (other));
+  }
+
+  public void testPackAndUnpack () throws Exception
+  {
+    final File output = new File (this.tempDir, "output");
+    _write (new File (output, "parser/Parser.java"), "class Parser {}");
+    _write (new File (output, "parser/node/Node.java"), "class Node {}");
+    _write (new File (output, "Parser.jj"), "interim");
+
+    final File archive = new File (this.tempDir, "artifacts/javacc-parser-0.zip");
+    assertEquals (2, GeneratedSourcesArtifact.pack (output, "**/*.java", archive, "0123"));
+    assertTrue (archive.isFile ());
+    assertEquals ("0123", GeneratedSourcesArtifact.getKey (archive));
+    // no temporary files are left behind
+    assertEquals (1, archive.getParentFile ().list ().length);
+
+    final File restored = new File (this.tempDir, "restored");
+    assertEquals (2, GeneratedSourcesArtifact.unpack (archive, restored));
+    assertEquals ("class Parser {}", FileUtils.fileRead (new File (restored, "parser/Parser.java")));
+    assertEquals ("class Node {}", FileUtils.fileRead (new File (restored, "parser/node/Node.java")));
+    assertFalse (new File (restored, "Parser.jj").exists ());
+  }
+
+  public void testPackIsReproducible () throws Exception
+  {
+    final File output = new File (this.tempDir, "output");
+    _write (new File (output, "parser/Parser.java"), "class Parser {}");
+
+    final File first = new File (this.tempDir, "first.zip");
+    GeneratedSourcesArtifact.pack (output, "**/*.java", first, "0123");
+    new File (output, "parser/Parser.java").setLastModified (System.currentTimeMillis () - 60000);
+    final File second = new File (this.tempDir, "second.zip");
+    GeneratedSourcesArtifact.pack (output, "**/*.java", second, "0123");
+
+    assertTrue (Arrays.equals (Files.readAllBytes (first.toPath ()), Files.readAllBytes (second.toPath ())));
+  }
+
+  public void testUnpackRejectsEntriesOutsideTarget () throws Exception
+  {
+    final File archive = new File (this.tempDir, "evil.zip");
+    try (final ZipOutputStream zip = new ZipOutputStream (new FileOutputStream (archive)))
+    {
+      zip.putNextEntry (new ZipEntry ("../Evil.java"));
+      zip.write ('x');
+      zip.closeEntry ();
+    }
+
+    try
+    {
+      GeneratedSourcesArtifact.unpack (archive, new File (this.tempDir, "restored"));
+      fail ("Missing IOException");
+    }
+    catch (final IOException e)
+    {
+      // expected
+    }
+    assertFalse (new File (this.tempDir, "Evil.java").exists ());
+  }
+}
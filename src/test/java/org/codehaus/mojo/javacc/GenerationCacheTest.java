@@ -0,0 +1,130 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests <code>GenerationCache</code>.
+ */
+public class GenerationCacheTest extends AbstractTempDirectoryTestCase
+{
+  private File cacheDir;
+
+  @Override
+  protected void setUp () throws Exception
+  {
+    super.setUp ();
+    this.cacheDir = new File (this.tempDir, "cache");
+  }
+
+  private File _newOutput (final String name, final int size) throws Exception
+  {
+    final File output = new File (this.tempDir, name);
+    new File (output, "parser").mkdirs ();
+    final StringBuilder content = new StringBuilder ();
+    for (int i = 0; i < size; i++)
+      content.append ('x');
+    FileUtils.fileWrite (new File (output, "parser/Parser.java"), content.toString ());
+    FileUtils.fileWrite (new File (output, "Parser.jj"), name);
+    return output;
+  }
+
+  public void testStoreAndRestore () throws Exception
+  {
+    final GenerationCache cache = new GenerationCache (this.cacheDir, 0, 0);
+    final String key = DigestUtils.key ("grammar");
+    final File restored = new File (this.tempDir, "restored");
+    assertFalse (cache.restore (key, restored));
+
+    cache.store (key, _newOutput ("first", 10));
+    // the first stored entry wins
+    cache.store (key, _newOutput ("second", 10));
+
+    assertTrue (cache.restore (key, restored));
+    assertEquals ("first", FileUtils.fileRead (new File (restored, "Parser.jj")));
+    assertEquals (10, new File (restored, "parser/Parser.java").length ());
+    // no scratch directories are left behind
+    assertEquals (0, new File (this.cacheDir, "tmp").list ().length);
+  }
+
+  public void testIncompleteRestoreCleansTarget () throws Exception
+  {
+    final GenerationCache cache = new GenerationCache (this.cacheDir, 0, 0);
+    final String key = DigestUtils.key ("grammar");
+    cache.store (key, _newOutput ("first", 10));
+
+    // a file in place of the package directory makes the copy fail midway
+    final File restored = new File (this.tempDir, "restored");
+    restored.mkdirs ();
+    FileUtils.fileWrite (new File (restored, "parser"), "in the way");
+    assertFalse (cache.restore (key, restored));
+    assertEquals (0, restored.list ().length);
+  }
+
+  public void testStoreIncludes () throws Exception
+  {
+    final GenerationCache cache = new GenerationCache (this.cacheDir, 0, 0);
+    final String key = DigestUtils.key ("sources");
+    cache.store (key, _newOutput ("first", 10), "**/*.java");
+
+    final File restored = new File (this.tempDir, "restored");
+    assertTrue (cache.restore (key, restored));
+    assertTrue (new File (restored, "parser/Parser.java").isFile ());
+    assertFalse (new File (restored, "Parser.jj").exists ());
+  }
+
+  public void testEvictBySize () throws Exception
+  {
+    final GenerationCache cache = new GenerationCache (this.cacheDir, 2500, 0);
+    final String [] keys = { DigestUtils.key ("a"), DigestUtils.key ("b"), DigestUtils.key ("c") };
+    for (int i = 0; i < keys.length; i++)
+    {
+      cache.store (keys[i], _newOutput ("out" + i, 1000));
+      final File entry = new File (new File (this.cacheDir, keys[i].substring (0, 2)), keys[i]);
+      entry.setLastModified (System.currentTimeMillis () - (keys.length - i) * 60000L);
+    }
+    // using an entry makes it the most recently used one
+    assertTrue (cache.restore (keys[0], new File (this.tempDir, "restored")));
+
+    assertEquals (1, cache.evict ());
+    assertTrue (cache.restore (keys[0], new File (this.tempDir, "r0")));
+    assertFalse (cache.restore (keys[1], new File (this.tempDir, "r1")));
+    assertTrue (cache.restore (keys[2], new File (this.tempDir, "r2")));
+  }
+
+  public void testEvictByAge () throws Exception
+  {
+    final GenerationCache cache = new GenerationCache (this.cacheDir, 0, 60000);
+    final String oldKey = DigestUtils.key ("old");
+    final String newKey = DigestUtils.key ("new");
+    cache.store (oldKey, _newOutput ("old", 10));
+    cache.store (newKey, _newOutput ("new", 10));
+    new File (new File (this.cacheDir, oldKey.substring (0, 2)), oldKey).setLastModified (System.currentTimeMillis () -
+                                                                                          120000);
+
+    assertEquals (1, cache.evict ());
+    assertFalse (cache.restore (oldKey, new File (this.tempDir, "r1")));
+    assertTrue (cache.restore (newKey, new File (this.tempDir, "r2")));
+  }
+}
@@ -0,0 +1,128 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>GrammarHeader</code>.
+ */
+public class GrammarHeaderTest extends TestCase
+{
+  public void testPlainHeader () throws Exception
+  {
+    final GrammarHeader header = _read ("options { STATIC = false; }\n" +
+                                        "PARSER_BEGIN ( MyParser )\n" +
+                                        "package org.example . parser;\n" +
+                                        "public class MyParser {}\n" +
+                                        "PARSER_END(MyParser)\n");
+    assertEquals ("org.example.parser", header.getPackageName ());
+    assertEquals ("MyParser", header.getParserName ());
+  }
+
+  public void testDefaultPackage () throws Exception
+  {
+    final GrammarHeader header = _read ("PARSER_BEGIN(MyParser)\n" +
+                                        "public class MyParser {}\n" +
+                                        "PARSER_END(MyParser)\n" +
+                                        "TOKEN_MGR_DECLS : { void package_() {} }\n");
+    assertEquals ("", header.getPackageName ());
+    assertEquals ("MyParser", header.getParserName ());
+  }
+
+  public void testMissingHeader () throws Exception
+  {
+    final GrammarHeader header = _read ("void Input() : {} { <EOF> }");
+    assertEquals ("", header.getPackageName ());
+    assertEquals ("", header.getParserName ());
+  }
+
+  public void testSkipsCommentsAndLiterals () throws Exception
+  {
+    final GrammarHeader header = _read ("// PARSER_BEGIN(Wrong1)\n" +
+                                        "/* package wrong.one; PARSER_BEGIN(Wrong2) */\n" +
+                                        "/** package wrong.two; **/\n" +
+                                        "PARSER_BEGIN(MyParser)\n" +
+                                        "// package wrong.three;\n" +
+                                        "package org.example;\n" +
+                                        "class MyParser { String s = \"package wrong.four; \\\" PARSER_END\"; char c = '\"'; }\n" +
+                                        "PARSER_END(MyParser)\n");
+    assertEquals ("org.example", header.getPackageName ());
+    assertEquals ("MyParser", header.getParserName ());
+  }
+
+  public void testLargeGrammarReadPartially () throws Exception
+  {
+    final String head = "PARSER_BEGIN(SqlParser)\npackage org.example.sql;\npublic class SqlParser {}\nPARSER_END(SqlParser)\n";
+    final CountingReader reader = new CountingReader (head, 64 * 1024 * 1024);
+    final GrammarHeader header = GrammarHeader.read (reader);
+    assertEquals ("org.example.sql", header.getPackageName ());
+    assertEquals ("SqlParser", header.getParserName ());
+    assertTrue (reader.count < head.length () + 1);
+  }
+
+  private static GrammarHeader _read (final String grammar) throws IOException
+  {
+    return GrammarHeader.read (new StringReader (grammar));
+  }
+
+  /**
+   * Provides a grammar header followed by a huge body of productions and
+   * counts the characters consumed.
+   */
+  private static final class CountingReader extends Reader
+  {
+    private static final String BODY = "void Rule() : {} { \"select\" <IDENTIFIER> }\n";
+
+    private final String head;
+    private final long length;
+    long count;
+
+    CountingReader (final String head, final long length)
+    {
+      this.head = head;
+      this.length = length;
+    }
+
+    @Override
+    public int read (final char [] buffer, final int offset, final int len)
+    {
+      if (this.count >= this.length)
+        return -1;
+      final int n = (int) Math.min (len, this.length - this.count);
+      for (int i = 0; i < n; i++)
+      {
+        final long pos = this.count + i;
+        buffer[offset + i] = pos < this.head.length () ? this.head.charAt ((int) pos)
+                                                       : BODY.charAt ((int) ((pos - this.head.length ()) % BODY.length ()));
+      }
+      this.count += n;
+      return n;
+    }
+
+    @Override
+    public void close ()
+    {}
+  }
+}
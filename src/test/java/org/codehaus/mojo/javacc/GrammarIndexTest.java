@@ -0,0 +1,248 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests <code>GrammarIndex</code>.
+ */
+public class GrammarIndexTest extends AbstractTempDirectoryTestCase
+{
+  public void testSaveAndLoad () throws Exception
+  {
+    final File indexFile = new File (this.tempDir, "state/test.idx");
+    final GrammarIndex index = new GrammarIndex (indexFile, this.tempDir);
+    final File outputFile = new File (this.tempDir, "out/org/Parser.java");
+    index.put ("org/Parser.jj", "c1", "o1", "1.0", Arrays.asList (outputFile), 42);
+    index.putCustomSources ("org/Parser.jj", Collections.singletonMap ("Token.java", "t1"));
+    index.putCustomSources ("Other.jj", Collections.singletonMap ("Token.java", "t2"));
+    index.save ();
+    assertTrue (indexFile.isFile ());
+
+    final GrammarIndex loaded = GrammarIndex.load (indexFile, this.tempDir);
+    assertNotNull (loaded.get ("org/Parser.jj"));
+    assertNotNull (loaded.get ("org\\Parser.jj"));
+    assertTrue (loaded.get ("org/Parser.jj").hasContent ("c1"));
+    assertFalse (loaded.get ("org/Parser.jj").hasContent ("c2"));
+    assertTrue (loaded.get ("org/Parser.jj").hasOptions ("o1", "1.0"));
+    assertFalse (loaded.get ("org/Parser.jj").hasOptions ("o2", "1.0"));
+    assertFalse (loaded.get ("org/Parser.jj").hasOptions ("o1", "1.1"));
+    assertEquals (Arrays.asList (outputFile), loaded.get ("org/Parser.jj").getOutputFiles ());
+    assertEquals (42, loaded.get ("org/Parser.jj").getGenerationTime ());
+    assertEquals (Collections.singletonMap ("Token.java", "t1"), loaded.get ("org/Parser.jj").getCustomSources ());
+    assertNull (loaded.get ("Other.jj"));
+
+    // paths of the generated files are relative to the base directory
+    final File movedDir = new File (this.tempDir, "moved");
+    final GrammarIndex moved = GrammarIndex.load (indexFile, movedDir);
+    assertEquals (Arrays.asList (new File (movedDir, "out/org/Parser.java")), moved.get ("org/Parser.jj").getOutputFiles ());
+  }
+
+  public void testLoadMissingOrCorrupt () throws Exception
+  {
+    final File indexFile = new File (this.tempDir, "test.idx");
+    assertNull (GrammarIndex.load (indexFile, null).get ("Parser.jj"));
+
+    try (final FileOutputStream out = new FileOutputStream (indexFile))
+    {
+      out.write (new byte [] { 'J', 'J', 'I', 'X', 0, 0 });
+    }
+    assertNull (GrammarIndex.load (indexFile, null).get ("Parser.jj"));
+  }
+
+  public void testScannerContentMode () throws Exception
+  {
+    final File outputDir = new File (this.tempDir, "out");
+    final GrammarIndex index = new GrammarIndex (new File (this.tempDir, "test.idx"), this.tempDir);
+    final GrammarDirectoryScanner scanner = _newScanner (outputDir, index, "options");
+    scanner.setCheckContents (true);
+    scanner.scan ();
+    assertEquals (1, scanner.getIncludedGrammars ().length);
+
+    // record the state and create the parser file with an old timestamp
+    final GrammarInfo grammarInfo = scanner.getIncludedGrammars ()[0];
+    assertNotNull (scanner.getContentDigest (grammarInfo));
+    _record (index, scanner, grammarInfo);
+    final File parserFile = new File (outputDir, grammarInfo.getParserFile ());
+    _touch (parserFile);
+    parserFile.setLastModified (0);
+    scanner.scan ();
+    assertEquals (0, scanner.getIncludedGrammars ().length);
+
+    scanner.setOptionsFingerprint (g -> "other options");
+    scanner.scan ();
+    assertEquals (1, scanner.getIncludedGrammars ().length);
+
+    scanner.setOptionsFingerprint (g -> "options");
+    parserFile.delete ();
+    scanner.scan ();
+    assertEquals (1, scanner.getIncludedGrammars ().length);
+  }
+
+  public void testScannerTimestampMode () throws Exception
+  {
+    final File outputDir = new File (this.tempDir, "out");
+    final GrammarIndex index = new GrammarIndex (new File (this.tempDir, "test.idx"), this.tempDir);
+    final GrammarDirectoryScanner scanner = _newScanner (outputDir, index, "options");
+    scanner.scan ();
+    assertEquals (1, scanner.getIncludedGrammars ().length);
+
+    // unknown grammars are stale even with an up-to-date parser file
+    final GrammarInfo grammarInfo = scanner.getIncludedGrammars ()[0];
+    assertNull (scanner.getContentDigest (grammarInfo));
+    final File parserFile = new File (outputDir, grammarInfo.getParserFile ());
+    _touch (parserFile);
+    scanner.scan ();
+    assertEquals (1, scanner.getIncludedGrammars ().length);
+
+    _record (index, scanner, grammarInfo);
+    scanner.scan ();
+    assertEquals (0, scanner.getIncludedGrammars ().length);
+
+    scanner.setOptionsFingerprint (g -> "other options");
+    scanner.scan ();
+    assertEquals (1, scanner.getIncludedGrammars ().length);
+
+    // unchanged output files keep their timestamps, the generation time counts
+    scanner.setOptionsFingerprint (g -> "options");
+    parserFile.setLastModified (0);
+    scanner.scan ();
+    assertEquals (0, scanner.getIncludedGrammars ().length);
+
+    index.put (grammarInfo.getRelativeGrammarFile (),
+               "",
+               scanner.getOptionsDigest (grammarInfo),
+               "1.0",
+               Collections.<File> emptyList (),
+               0);
+    scanner.scan ();
+    assertEquals (1, scanner.getIncludedGrammars ().length);
+  }
+
+  public void testScannerManifest () throws Exception
+  {
+    final File outputDir = new File (this.tempDir, "out");
+    final GrammarIndex index = new GrammarIndex (new File (this.tempDir, "test.idx"), this.tempDir);
+    final GrammarDirectoryScanner scanner = _newScanner (outputDir, index, "options");
+    scanner.setCheckContents (true);
+    scanner.scan ();
+
+    final GrammarInfo grammarInfo = scanner.getIncludedGrammars ()[0];
+    final File parserFile = new File (outputDir, grammarInfo.getParserFile ());
+    final File tokenManagerFile = new File (parserFile.getParentFile (), grammarInfo.getParserName () + "TokenManager.java");
+    _touch (parserFile);
+    _touch (tokenManagerFile);
+    index.put (grammarInfo.getRelativeGrammarFile (),
+               scanner.getContentDigest (grammarInfo),
+               scanner.getOptionsDigest (grammarInfo),
+               "1.0",
+               Arrays.asList (parserFile, tokenManagerFile),
+               System.currentTimeMillis ());
+    scanner.scan ();
+    assertEquals (0, scanner.getIncludedGrammars ().length);
+
+    tokenManagerFile.delete ();
+    scanner.scan ();
+    assertEquals (1, scanner.getIncludedGrammars ().length);
+  }
+
+  public void testHeaderCache () throws Exception
+  {
+    final File indexFile = new File (this.tempDir, "test.idx");
+    final GrammarIndex index = new GrammarIndex (indexFile, this.tempDir);
+    index.putHeader ("Parser.jj", 10, 20, null, new GrammarHeader ("org.example", "MyParser"));
+    index.putHeader ("Other.jj", 10, 20, "c1", new GrammarHeader ("", ""));
+    index.save ();
+
+    final GrammarIndex loaded = GrammarIndex.load (indexFile, this.tempDir);
+    final GrammarHeader header = loaded.getHeader ("Parser.jj", 10, 20, null);
+    assertEquals ("org.example", header.getPackageName ());
+    assertEquals ("MyParser", header.getParserName ());
+    assertNull (loaded.getHeader ("Parser.jj", 11, 20, null));
+    assertNull (loaded.getHeader ("Parser.jj", 10, 21, null));
+    assertNotNull (loaded.getHeader ("Other.jj", 11, 21, "c1"));
+    assertNull (loaded.getHeader ("Other.jj", 10, 20, "c2"));
+
+    loaded.retain (Arrays.asList ("Other.jj"));
+    assertNull (loaded.getHeader ("Parser.jj", 10, 20, null));
+  }
+
+  public void testScannerUsesCachedHeader () throws Exception
+  {
+    final File outputDir = new File (this.tempDir, "out");
+    final GrammarIndex index = new GrammarIndex (new File (this.tempDir, "test.idx"), this.tempDir);
+    final GrammarDirectoryScanner scanner = _newScanner (outputDir, index, "options");
+    final File grammarFile = getGrammar ("Parser2.jj");
+    index.putHeader ("Parser2.jj",
+                     grammarFile.length (),
+                     grammarFile.lastModified (),
+                     null,
+                     new GrammarHeader ("org.cached", "CachedParser"));
+    scanner.scan ();
+    assertEquals ("org.cached", scanner.getIncludedGrammars ()[0].getParserPackage ());
+    assertEquals ("CachedParser", scanner.getIncludedGrammars ()[0].getParserName ());
+
+    // the cached header is ignored once the contents are checked
+    scanner.setCheckContents (true);
+    scanner.scan ();
+    assertEquals ("", scanner.getIncludedGrammars ()[0].getParserPackage ());
+    assertEquals ("SimpleParser", scanner.getIncludedGrammars ()[0].getParserName ());
+  }
+
+  private GrammarDirectoryScanner _newScanner (final File outputDir, final GrammarIndex index, final String options) throws Exception
+  {
+    final GrammarDirectoryScanner scanner = new GrammarDirectoryScanner ();
+    scanner.setSourceDirectory (getGrammar ("Parser2.jj").getParentFile ());
+    scanner.setIncludes (new String [] { "Parser2.jj" });
+    scanner.setOutputDirectory (outputDir);
+    scanner.setGrammarIndex (index, "1.0");
+    scanner.setOptionsFingerprint (g -> options);
+    return scanner;
+  }
+
+  private static void _record (final GrammarIndex index,
+                               final GrammarDirectoryScanner scanner,
+                               final GrammarInfo grammarInfo) throws IOException
+  {
+    index.put (grammarInfo.getRelativeGrammarFile (),
+               DigestUtils.digest (grammarInfo.getGrammarFile ()),
+               scanner.getOptionsDigest (grammarInfo),
+               "1.0",
+               Collections.<File> emptyList (),
+               System.currentTimeMillis ());
+  }
+
+  private static void _touch (final File file) throws IOException
+  {
+    file.getParentFile ().mkdirs ();
+    new FileOutputStream (file).close ();
+  }
+
+  private File getGrammar (final String resource) throws Exception
+  {
+    return new File (new URI (getClass ().getResource ('/' + resource).toString ()));
+  }
+}
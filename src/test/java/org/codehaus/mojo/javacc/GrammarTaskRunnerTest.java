@@ -0,0 +1,89 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>GrammarTaskRunner</code>.
+ */
+public class GrammarTaskRunnerTest extends TestCase
+{
+  private List <GrammarTaskRunner.Task> _newTasks ()
+  {
+    final List <GrammarTaskRunner.Task> tasks = new ArrayList <> ();
+    for (int i = 0; i < 4; i++)
+    {
+      final int index = i;
+      tasks.add (log -> {
+        log.info ("task " + index);
+        if (index % 2 == 1)
+          throw new IOException ("failed " + index);
+      });
+    }
+    return tasks;
+  }
+
+  private void _assertResults (final int parallelism) throws Exception
+  {
+    final JavaCCMojoTest.RecordingLog log = new JavaCCMojoTest.RecordingLog ();
+    final List <Exception> failures = GrammarTaskRunner.run (_newTasks (), parallelism, log);
+    assertEquals (4, failures.size ());
+    assertNull (failures.get (0));
+    assertEquals ("failed 1", failures.get (1).getMessage ());
+    assertNull (failures.get (2));
+    assertEquals ("failed 3", failures.get (3).getMessage ());
+
+    // the output is emitted in the order of the tasks
+    int last = -1;
+    for (int i = 0; i < 4; i++)
+    {
+      final int index = log.indexOf ("task " + i, 0);
+      assertTrue (log.messages.toString (), index > last);
+      last = index;
+    }
+  }
+
+  public void testSequential () throws Exception
+  {
+    _assertResults (1);
+  }
+
+  public void testConcurrent () throws Exception
+  {
+    _assertResults (3);
+  }
+
+  public void testGetFailureMessage ()
+  {
+    final String message = GrammarTaskRunner.getFailureMessage (3,
+                                                                Arrays.asList (new File ("A.jj"),
+                                                                               new File ("B.jj")),
+                                                                Arrays.<Exception> asList (new IOException ("a"),
+                                                                                           new IOException ("b")));
+    assertEquals ("2 of 3 grammars failed:\n  A.jj: a\n  B.jj: b", message);
+  }
+}
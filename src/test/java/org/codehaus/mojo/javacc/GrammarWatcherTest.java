@@ -0,0 +1,95 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests <code>GrammarWatcher</code>.
+ */
+public class GrammarWatcherTest extends AbstractTempDirectoryTestCase
+{
+  private ExecutorService executor;
+
+  @Override
+  protected void setUp () throws Exception
+  {
+    super.setUp ();
+    new File (this.tempDir, "org").mkdirs ();
+    this.executor = Executors.newSingleThreadExecutor ();
+  }
+
+  @Override
+  protected void tearDown () throws Exception
+  {
+    this.executor.shutdownNow ();
+    super.tearDown ();
+  }
+
+  public void testIsIncluded () throws Exception
+  {
+    try (final GrammarWatcher watcher = new GrammarWatcher (this.tempDir,
+                                                            new String [] { "**/*.jj", "extra/" },
+                                                            new String [] { "**/Excluded*" },
+                                                            0))
+    {
+      assertTrue (watcher.isIncluded ("Parser.jj"));
+      assertTrue (watcher.isIncluded ("org" + File.separator + "Parser.jj"));
+      assertTrue (watcher.isIncluded ("extra" + File.separator + "Any.txt"));
+      assertFalse (watcher.isIncluded ("org" + File.separator + "Parser.jjt"));
+      assertFalse (watcher.isIncluded ("org" + File.separator + "Excluded.jj"));
+    }
+  }
+
+  public void testAwaitChangesCoalescesBurst () throws Exception
+  {
+    try (final GrammarWatcher watcher = new GrammarWatcher (this.tempDir, new String [] { "**/*.jj" }, null, 500))
+    {
+      final Future <Set <String>> changes = this.executor.submit (watcher::awaitChanges);
+
+      FileUtils.fileWrite (new File (this.tempDir, "org/Ignored.txt"), "noise");
+      FileUtils.fileWrite (new File (this.tempDir, "org/A.jj"), "a");
+      // files in a new sub directory are picked up as well
+      final File subDir = new File (this.tempDir, "org/sub");
+      subDir.mkdirs ();
+      FileUtils.fileWrite (new File (subDir, "B.jj"), "b");
+      FileUtils.fileWrite (new File (this.tempDir, "org/A.jj"), "a2");
+
+      final String subPath = "org" + File.separator + "sub" + File.separator;
+      final Set <String> expected = new TreeSet <> (Arrays.asList ("org" + File.separator + "A.jj", subPath + "B.jj"));
+      assertEquals (expected, changes.get (10, TimeUnit.SECONDS));
+
+      // changes in the new sub directory are reported subsequently
+      final Future <Set <String>> next = this.executor.submit (watcher::awaitChanges);
+      FileUtils.fileWrite (new File (subDir, "C.jj"), "c");
+      assertEquals (new TreeSet <> (Arrays.asList (subPath + "C.jj")), next.get (10, TimeUnit.SECONDS));
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests <code>JTBJavaCCMojo</code>.
+ */
+public class JTBJavaCCMojoTest extends AbstractTempDirectoryTestCase
+{
+  public void testBatchModeProcessesAllGrammars () throws Exception
+  {
+    final File sourceDirectory = new File (this.tempDir, "src/main/jtb");
+    sourceDirectory.mkdirs ();
+    final String grammar = FileUtils.fileRead (new File ("src/test/resources/SubScheme.jtb"));
+    FileUtils.fileWrite (new File (sourceDirectory, "SubScheme.jtb"), grammar);
+    FileUtils.fileWrite (new File (sourceDirectory, "OtherScheme.jtb"),
+                         grammar.replace ("SubScheme", "OtherScheme").replace ("package org;", "package other;")
+                                .replace ("import org.", "import other."));
+
+    final JTBJavaCCMojo mojo = new JTBJavaCCMojo ();
+    JavaCCMojoTest.configure (mojo, this.tempDir);
+    JavaCCMojoTest.setParameter (mojo, "sourceDirectory", sourceDirectory);
+    JavaCCMojoTest.setParameter (mojo, "interimDirectory", new File (this.tempDir, "target/generated-sources/jtb"));
+    final File outputDirectory = new File (this.tempDir, "target/generated-sources/javacc");
+    JavaCCMojoTest.setParameter (mojo, "outputDirectory", outputDirectory);
+    JavaCCMojoTest.setParameter (mojo, "forkMode", "batch");
+    JavaCCMojoTest.setParameter (mojo, "classDataSharing", Boolean.FALSE);
+    // the grammars are submitted concurrently and serialized by the batch JVM
+    JavaCCMojoTest.setParameter (mojo, "parallelism", Integer.valueOf (2));
+    final JavaCCMojoTest.RecordingLog log = new JavaCCMojoTest.RecordingLog ();
+    mojo.setLog (log);
+
+    mojo.execute ();
+
+    assertTrue (log.messages.toString (), log.indexOf ("Processed 2 grammars", 0) >= 0);
+    assertEquals (log.messages.toString (), -1, log.indexOf ("forking per grammar", 0));
+    assertTrue (new File (outputDirectory, "org/SubScheme.java").isFile ());
+    assertTrue (new File (outputDirectory, "other/OtherScheme.java").isFile ());
+  }
+}
@@ -0,0 +1,61 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>JTBWorkerMain</code>.
+ */
+public class JTBWorkerMainTest extends TestCase
+{
+  public void testRequestRoundTrip () throws Exception
+  {
+    final String [] args = { "-o", "Grammar.jj", "", "with space" };
+    final StringWriter buffer = new StringWriter ();
+    final PrintWriter writer = new PrintWriter (buffer);
+    JTBWorkerMain.writeRequest (writer, args);
+    JTBWorkerMain.writeRequest (writer, new String [0]);
+
+    final BufferedReader reader = new BufferedReader (new StringReader (buffer.toString ()));
+    assertEquals (Arrays.asList (args), Arrays.asList (JTBWorkerMain.readRequest (reader)));
+    assertEquals (0, JTBWorkerMain.readRequest (reader).length);
+    assertNull (JTBWorkerMain.readRequest (reader));
+  }
+
+  public void testLineBreakRejected ()
+  {
+    try
+    {
+      JTBWorkerMain.writeRequest (new PrintWriter (new StringWriter ()), new String [] { "a\nb" });
+      fail ("Argument with line break accepted");
+    }
+    catch (final IllegalArgumentException e)
+    {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,287 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+/**
+ * Tests <code>JavaCCMojo</code>.
+ */
+public class JavaCCMojoTest extends AbstractTempDirectoryTestCase
+{
+  /**
+   * Sets a mojo parameter the way Maven injects it.
+   */
+  static void setParameter (final Object mojo, final String name, final Object value) throws Exception
+  {
+    for (Class <?> type = mojo.getClass (); type != null; type = type.getSuperclass ())
+    {
+      try
+      {
+        final Field field = type.getDeclaredField (name);
+        field.setAccessible (true);
+        field.set (mojo, value);
+        return;
+      }
+      catch (final NoSuchFieldException e)
+      {
+        // try super class
+      }
+    }
+    throw new NoSuchFieldException (name);
+  }
+
+  /**
+   * Creates a mojo for the project in the temporary directory with the
+   * defaults Maven would inject.
+   */
+  static void configure (final AbstractJavaCCMojo mojo, final File basedir) throws Exception
+  {
+    final Model model = new Model ();
+    model.setBuild (new Build ());
+    model.getBuild ().setDirectory (new File (basedir, "target").getAbsolutePath ());
+    final MavenProject project = new MavenProject (model);
+    project.setFile (new File (basedir, "pom.xml"));
+    setParameter (mojo, "project", project);
+    setParameter (mojo, "isolateTools", Boolean.TRUE);
+    setParameter (mojo, "staleDetection", "timestamp");
+    setParameter (mojo, "skipUnchangedOutput", Boolean.TRUE);
+    setParameter (mojo, "grammarEncoding", "UTF-8");
+    setParameter (mojo, "outputEncoding", "UTF-8");
+  }
+
+  private void _writeBrokenGrammar (final File sourceDirectory, final String name) throws Exception
+  {
+    // the production lacks its closing brace
+    final String grammar = "PARSER_BEGIN(" + name + ")\n" +
+                           "public class " + name + " {}\n" +
+                           "PARSER_END(" + name + ")\n" +
+                           "void Input() : {} { <EOF>\n";
+    FileUtils.fileWrite (new File (sourceDirectory, name + ".jj"), grammar);
+  }
+
+  public void testParallelFailuresAreAggregated () throws Exception
+  {
+    final File sourceDirectory = new File (this.tempDir, "src/main/javacc");
+    sourceDirectory.mkdirs ();
+    _writeBrokenGrammar (sourceDirectory, "Broken1");
+    _writeBrokenGrammar (sourceDirectory, "Broken2");
+
+    final JavaCCMojo mojo = new JavaCCMojo ();
+    configure (mojo, this.tempDir);
+    setParameter (mojo, "sourceDirectory", sourceDirectory);
+    setParameter (mojo, "outputDirectory", new File (this.tempDir, "target/generated-sources/javacc"));
+    setParameter (mojo, "parallelism", Integer.valueOf (2));
+    final RecordingLog log = new RecordingLog ();
+    mojo.setLog (log);
+
+    try
+    {
+      mojo.execute ();
+      fail ("broken grammars processed");
+    }
+    catch (final MojoFailureException e)
+    {
+      assertTrue (e.getMessage (), e.getMessage ().startsWith ("2 of 2 grammars failed"));
+      assertTrue (e.getMessage ().indexOf ("Broken1.jj") > 0);
+      assertTrue (e.getMessage ().indexOf ("Broken2.jj") > 0);
+      assertNotNull (e.getCause ());
+      assertEquals (1, e.getSuppressed ().length);
+    }
+
+    // the output of the parser generator ends up in the log of its grammar,
+    // and the log of one grammar is not interleaved with the other
+    final int start = log.indexOf ("Processing 2 grammars", 0);
+    assertTrue (log.messages.toString (), start >= 0);
+    final int first1 = log.indexOf ("Reading from file " + new File (sourceDirectory, "Broken1.jj"), start);
+    final int first2 = log.indexOf ("Reading from file " + new File (sourceDirectory, "Broken2.jj"), start);
+    assertTrue (log.messages.toString (), first1 >= 0);
+    assertTrue (log.messages.toString (), first2 >= 0);
+    if (first1 < first2)
+      assertEquals (log.messages.toString (), -1, log.indexOf ("Broken1.jj", first2));
+    else
+      assertEquals (log.messages.toString (), -1, log.indexOf ("Broken2.jj", first1));
+  }
+
+  private JavaCCMojo _newMojo (final File sourceDirectory, final RecordingLog log) throws Exception
+  {
+    final JavaCCMojo mojo = new JavaCCMojo ();
+    configure (mojo, this.tempDir);
+    setParameter (mojo, "sourceDirectory", sourceDirectory);
+    setParameter (mojo, "outputDirectory", new File (this.tempDir, "target/generated-sources/javacc"));
+    mojo.setLog (log);
+    return mojo;
+  }
+
+  public void testUnchangedGrammarIsSkipped () throws Exception
+  {
+    final File sourceDirectory = new File (this.tempDir, "src/main/javacc");
+    FileUtils.copyFile (new File ("src/test/resources/Parser2.jj"), new File (sourceDirectory, "Parser2.jj"));
+
+    RecordingLog log = new RecordingLog ();
+    _newMojo (sourceDirectory, log).execute ();
+    assertTrue (log.messages.toString (), log.indexOf ("Processed 1 grammar", 0) >= 0);
+    // the scratch area has been moved aside for deletion before the mojo
+    // returned
+    for (final String name : new File (this.tempDir, "target/javacc-scratch").list ())
+      assertTrue (name, name.contains (".trash-"));
+
+    // the output directory exists now, the grammar index must still be found
+    log = new RecordingLog ();
+    _newMojo (sourceDirectory, log).execute ();
+    assertTrue (log.messages.toString (), log.indexOf ("Skipping - all parsers are up to date", 0) >= 0);
+  }
+
+  public void testIncrementalBuildHonorsOptionChanges () throws Exception
+  {
+    final File sourceDirectory = new File (this.tempDir, "src/main/javacc");
+    final File grammarFile = new File (sourceDirectory, "Parser2.jj");
+    FileUtils.copyFile (new File ("src/test/resources/Parser2.jj"), grammarFile);
+
+    RecordingLog log = new RecordingLog ();
+    _newMojo (sourceDirectory, log).execute ();
+    assertTrue (log.messages.toString (), log.indexOf ("Processed 1 grammar", 0) >= 0);
+
+    // a touched grammar without changes reported by the IDE is skipped
+    grammarFile.setLastModified (System.currentTimeMillis () + 5000);
+    log = new RecordingLog ();
+    JavaCCMojo mojo = _newMojo (sourceDirectory, log);
+    setParameter (mojo, "buildContext", new UnchangedBuildContext ());
+    mojo.execute ();
+    assertTrue (log.messages.toString (), log.indexOf ("Skipping - all parsers are up to date", 0) >= 0);
+
+    // a changed option regenerates although no file changed
+    log = new RecordingLog ();
+    mojo = _newMojo (sourceDirectory, log);
+    setParameter (mojo, "buildContext", new UnchangedBuildContext ());
+    setParameter (mojo, "debugParser", Boolean.TRUE);
+    mojo.execute ();
+    assertTrue (log.messages.toString (), log.indexOf ("Processed 1 grammar", 0) >= 0);
+  }
+
+  public void testChangedCustomSourcesAreCopied () throws Exception
+  {
+    final File sourceDirectory = new File (this.tempDir, "src/main/javacc");
+    final File outputDirectory = new File (this.tempDir, "target/generated-sources/javacc");
+    FileUtils.copyFile (new File ("src/test/resources/Parser2.jj"), new File (sourceDirectory, "Parser2.jj"));
+    final File token = new File (sourceDirectory, "Token.java");
+    FileUtils.fileWrite (token, "public class Token {}\n");
+    FileUtils.fileWrite (new File (sourceDirectory, "Helper.java"), "class Helper {}\n");
+
+    _newMojo (sourceDirectory, new RecordingLog ()).execute ();
+    assertEquals ("public class Token {}\n", FileUtils.fileRead (new File (outputDirectory, "Token.java")));
+    assertEquals ("class Helper {}\n", FileUtils.fileRead (new File (outputDirectory, "Helper.java")));
+
+    // only the changed custom source is copied again
+    FileUtils.fileWrite (new File (outputDirectory, "Helper.java"), "class Helper { int marker; }\n");
+    FileUtils.fileWrite (token, "public class Token { int kind; }\n");
+    token.setLastModified (System.currentTimeMillis () + 5000);
+    final RecordingLog log = new RecordingLog ();
+    _newMojo (sourceDirectory, log).execute ();
+    assertTrue (log.messages.toString (), log.indexOf ("Skipping - all parsers are up to date", 0) >= 0);
+    assertEquals ("public class Token { int kind; }\n", FileUtils.fileRead (new File (outputDirectory, "Token.java")));
+    assertEquals ("class Helper { int marker; }\n", FileUtils.fileRead (new File (outputDirectory, "Helper.java")));
+  }
+
+  /**
+   * The build context of an incremental IDE build without changed files.
+   */
+  static final class UnchangedBuildContext extends DefaultBuildContext
+  {
+    @Override
+    public boolean isIncremental ()
+    {
+      return true;
+    }
+
+    @Override
+    public boolean hasDelta (final File file)
+    {
+      return false;
+    }
+
+    @Override
+    public boolean hasDelta (final String relpath)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * A logger recording all messages.
+   */
+  static final class RecordingLog extends SystemStreamLog
+  {
+    final List <String> messages = Collections.synchronizedList (new ArrayList <> ());
+
+    int indexOf (final String text, final int start)
+    {
+      synchronized (this.messages)
+      {
+        for (int i = start; i < this.messages.size (); i++)
+          if (this.messages.get (i).indexOf (text) >= 0)
+            return i;
+      }
+      return -1;
+    }
+
+    @Override
+    public boolean isDebugEnabled ()
+    {
+      return true;
+    }
+
+    @Override
+    public void debug (final CharSequence content)
+    {
+      this.messages.add (String.valueOf (content));
+    }
+
+    @Override
+    public void info (final CharSequence content)
+    {
+      this.messages.add (String.valueOf (content));
+    }
+
+    @Override
+    public void warn (final CharSequence content)
+    {
+      this.messages.add (String.valueOf (content));
+    }
+
+    @Override
+    public void error (final CharSequence content)
+    {
+      this.messages.add (String.valueOf (content));
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Tests <code>ScratchDirectory</code>.
+ */
+public class ScratchDirectoryTest extends AbstractTempDirectoryTestCase
+{
+  private static void _write (final File file, final String content) throws Exception
+  {
+    file.getParentFile ().mkdirs ();
+    FileUtils.fileWrite (file, content);
+  }
+
+  public void testNewDirectoryIsUnique () throws Exception
+  {
+    final ScratchDirectory scratch = new ScratchDirectory (new File (this.tempDir, "scratch"));
+    final File dir1 = scratch.newDirectory ();
+    final File dir2 = scratch.newDirectory ();
+    assertFalse (dir1.equals (dir2));
+    assertEquals (scratch.getRoot (), dir1.getParentFile ());
+    assertTrue (dir1.isAbsolute ());
+  }
+
+  public void testRecycledDirectoryIsReused () throws Exception
+  {
+    final ScratchDirectory scratch = new ScratchDirectory (new File (this.tempDir, "scratch"));
+    final File dir1 = scratch.newDirectory ();
+    _write (new File (dir1, "org/Parser.java"), "class Parser {}");
+    scratch.recycle (dir1);
+
+    // the recycled directory is handed out once, starting out empty
+    final File dir2 = scratch.newDirectory ();
+    assertEquals (dir1, dir2);
+    assertTrue (dir2.isDirectory ());
+    assertEquals (0, dir2.list ().length);
+    assertFalse (dir1.equals (scratch.newDirectory ()));
+
+    // the contents moved aside are deleted in the background
+    scratch.awaitCleanup ();
+    assertEquals (1, this.tempDir.list ().length);
+  }
+
+  public void testReleaseDeletesInBackground () throws Exception
+  {
+    final ScratchDirectory scratch = new ScratchDirectory (new File (this.tempDir, "scratch"));
+    assertNull (scratch.release ());
+
+    final File dir = scratch.newDirectory ();
+    _write (new File (dir, "Parser.java"), "class Parser {}");
+    final Thread cleanup = scratch.release ();
+    assertNotNull (cleanup);
+    assertTrue (cleanup.isDaemon ());
+    // the scratch area is moved aside right away
+    assertFalse (scratch.getRoot ().exists ());
+    cleanup.join ();
+    assertEquals (0, this.tempDir.list ().length);
+
+    // the scratch area can be used again
+    final File reused = scratch.newDirectory ();
+    assertFalse (reused.exists ());
+  }
+
+  public void testLeftoversAreDeleted () throws Exception
+  {
+    final File root = new File (this.tempDir, "scratch");
+    _write (new File (root, "g1/Stale.java"), "class Stale {}");
+    _write (new File (this.tempDir, "scratch.trash-old/g1/Old.java"), "class Old {}");
+    _write (new File (this.tempDir, "other/Keep.java"), "class Keep {}");
+
+    final ScratchDirectory scratch = new ScratchDirectory (root);
+    final File dir = scratch.newDirectory ();
+    assertFalse (new File (dir, "Stale.java").exists ());
+
+    scratch.awaitCleanup ();
+    assertEquals (1, this.tempDir.list ().length);
+    assertTrue (new File (this.tempDir, "other/Keep.java").isFile ());
+  }
+}
@@ -0,0 +1,69 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>ToolClassLoaderPool</code>.
+ */
+public class ToolClassLoaderPoolTest extends TestCase
+{
+  public void testIsolation () throws Exception
+  {
+    final ToolClassLoaderPool pool = ToolClassLoaderPool.getInstance ();
+    assertTrue (pool.isAvailable ());
+
+    final ClassLoader loader1 = pool.borrow ();
+    final ClassLoader loader2 = pool.borrow ();
+    try
+    {
+      assertNotSame (loader1, loader2);
+
+      final String name = com.helger.pgcc.parser.Main.class.getName ();
+      final Class <?> type1 = Class.forName (name, false, loader1);
+      final Class <?> type2 = Class.forName (name, false, loader2);
+      assertNotSame (com.helger.pgcc.parser.Main.class, type1);
+      assertNotSame (type1, type2);
+
+      // non-isolated classes are shared with the plugin
+      assertSame (String.class, Class.forName (String.class.getName (), false, loader1));
+    }
+    finally
+    {
+      pool.release (loader1);
+      pool.release (loader2);
+    }
+  }
+
+  public void testReuse () throws Exception
+  {
+    final ToolClassLoaderPool pool = ToolClassLoaderPool.getInstance ();
+    final ClassLoader loader = pool.borrow ();
+    pool.release (loader);
+
+    // the pool is shared, so any idle class loader may be handed out
+    final ClassLoader reused = pool.borrow ();
+    pool.release (reused);
+    assertNotNull (reused);
+    assertNotSame (getClass ().getClassLoader (), reused);
+  }
+}
@@ -0,0 +1,69 @@
+package org.codehaus.mojo.javacc;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests <code>ToolOutput</code>.
+ */
+public class ToolOutputTest extends TestCase
+{
+  public void testLoggerWritingToSystemOut () throws Exception
+  {
+    final PrintStream original = System.out;
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+    final PrintStream stream = new PrintStream (bytes, true, "UTF-8");
+    System.setOut (stream);
+    try
+    {
+      // the default logger of the tool facades prints to System.out
+      try (final ToolOutput output = ToolOutput.capture (new SystemStreamLog ()))
+      {
+        assertNotSame (stream, System.out);
+        System.out.println ("generated");
+      }
+      assertSame (stream, System.out);
+      assertEquals ("[info] generated" + System.lineSeparator (), bytes.toString ("UTF-8"));
+    }
+    finally
+    {
+      System.setOut (original);
+    }
+  }
+
+  public void testRecordingLogger () throws Exception
+  {
+    final JavaCCMojoTest.RecordingLog log = new JavaCCMojoTest.RecordingLog ();
+    final PrintStream original = System.err;
+    try (final ToolOutput output = ToolOutput.capture (log))
+    {
+      System.err.print ("first\r\nsec");
+      System.err.print ("ond");
+    }
+    assertSame (original, System.err);
+    assertEquals ("[first, second]", log.messages.toString ());
+  }
+}